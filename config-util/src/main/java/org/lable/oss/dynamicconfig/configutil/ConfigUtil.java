@@ -16,11 +16,16 @@
 package org.lable.oss.dynamicconfig.configutil;
 
 import org.apache.commons.configuration.Configuration;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
 
 import java.util.*;
 
 /**
  * Static convenience methods for working with {@link Configuration} instances.
+ * <p>
+ * Child names are escaped as they would be in a key, so a child named {@code with.dot} is returned as
+ * {@code with..dot}. The returned collections keep the order of the keys, and cannot be modified.
  */
 public class ConfigUtil {
     ConfigUtil() {
@@ -29,14 +34,20 @@ public class ConfigUtil {
 
     /**
      * Get a map of configuration nodes mapped to the names of the children of the parent parameter.
+     * <p>
+     * For configurations managed by this library, the map is read from the current snapshot of the configuration (see
+     * {@link CompactConfiguration#childMap(String)}); it is computed once per version of the configuration.
      *
      * @param config Configuration object, may be a subset of the configuration tree.
      * @param parent Path to the parent node.
-     * @return A map of all the children for the parent configuration node passed.
+     * @return An immutable map of all the children for the parent configuration node passed.
      */
     public static Map<String, Configuration> childMap(Configuration config, String parent) {
         if (config == null) throw new IllegalArgumentException("Parameter config may not be null.");
 
+        CompactConfiguration compact = compactOf(config);
+        if (compact != null) return compact.childMap(parent);
+
         if (parent != null && !parent.isEmpty()) {
             config = config.subset(parent);
         }
@@ -45,19 +56,19 @@ public class ConfigUtil {
         Map<String, Configuration> map = new LinkedHashMap<>();
         while (keys.hasNext()) {
             String key = keys.next();
-            key = key.split("\\.", 2)[0];
+            key = firstPart(key);
             if (!map.containsKey(key)) {
                 map.put(key, config.subset(key));
             }
         }
-        return map;
+        return Collections.unmodifiableMap(map);
     }
 
     /**
      * Get a map of configuration nodes mapped to the names of the children of the root configuration node.
      *
      * @param config Configuration object, may be a subset of the configuration tree.
-     * @return A map of all the children for the parent configuration node passed.
+     * @return An immutable map of all the children for the parent configuration node passed.
      */
     public static Map<String, Configuration> childMap(Configuration config) {
         return childMap(config, null);
@@ -65,26 +76,30 @@ public class ConfigUtil {
 
     /**
      * Get the list of child keys for a configuration node.
+     * <p>
+     * For configurations managed by this library, the set is read from the current snapshot of the configuration (see
+     * {@link CompactConfiguration#childKeys(String)}); it is computed once per version of the configuration.
      *
      * @param config Configuration object, may be a subset of the configuration tree.
      * @param parent Path to the parent node.
-     * @return A string array containing the names of the children.
+     * @return An immutable set containing the names of the children.
      */
     public static Set<String> childKeys(Configuration config, String parent) {
         if (config == null) throw new IllegalArgumentException("Parameter config may not be null.");
 
+        CompactConfiguration compact = compactOf(config);
+        if (compact != null) return compact.childKeys(parent);
+
         if (parent != null && !parent.isEmpty()) {
             config = config.subset(parent);
         }
 
-        Iterator keys = config.getKeys();
-        Set<String> list = new HashSet<>();
+        Iterator<String> keys = config.getKeys();
+        Set<String> set = new LinkedHashSet<>();
         while (keys.hasNext()) {
-            String key = (String) keys.next();
-            key = key.split("\\.", 2)[0];
-            list.add(key);
+            set.add(firstPart(keys.next()));
         }
-        return list;
+        return Collections.unmodifiableSet(set);
     }
 
 
@@ -92,9 +107,33 @@ public class ConfigUtil {
      * Get the list of child keys for a configuration node.
      *
      * @param config Configuration object, may be a subset of the configuration tree.
-     * @return A string array containing the names of the children.
+     * @return An immutable set containing the names of the children.
      */
     public static Set<String> childKeys(Configuration config) {
         return childKeys(config, null);
     }
+
+    static CompactConfiguration compactOf(Configuration config) {
+        if (config instanceof CompactConfiguration) return (CompactConfiguration) config;
+        if (config instanceof SnapshotSource) return ((SnapshotSource) config).snapshot();
+        return null;
+    }
+
+    /**
+     * Get the first part of a key, leaving escaped dots ({@code ..}) as they are.
+     *
+     * @param key Configuration key.
+     * @return The escaped name of its first node.
+     */
+    static String firstPart(String key) {
+        int i = 0;
+        while ((i = key.indexOf('.', i)) >= 0) {
+            if (i + 1 < key.length() && key.charAt(i + 1) == '.') {
+                i += 2;
+            } else {
+                return key.substring(0, i);
+            }
+        }
+        return key;
+    }
 }
@@ -18,12 +18,15 @@ package org.lable.oss.dynamicconfig.configutil;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
 
 import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.lable.oss.dynamicconfig.configutil.ConfigUtil.childKeys;
 import static org.lable.oss.dynamicconfig.configutil.ConfigUtil.childMap;
 
@@ -133,6 +136,57 @@ public class ConfigUtilTest {
     }
 
 
+    @Test
+    public void testCompactConfiguration() {
+        HierarchicalConfiguration input = new HierarchicalConfiguration();
+        input.addProperty("prop1", "XXX");
+        input.addProperty("prop2.l1", "XXX");
+        input.addProperty("prop2.l2", "XXX");
+        CompactConfiguration compact = CompactConfiguration.of(input);
+
+        final Set<String> keys = childKeys(compact, "prop2");
+        final Map<String, Configuration> map = childMap(compact);
+
+        assertThat(keys.size(), is(2));
+        assertThat(keys.contains("l1"), is(true));
+        assertThat(childKeys(compact, "prop2"), is(sameInstance(keys)));
+        assertThat(map.size(), is(2));
+        assertThat(map.get("prop2").getString("l2"), is("XXX"));
+        assertThat(childMap(compact), is(sameInstance(map)));
+    }
+
+    @Test
+    public void testEscapedNamesAreTheSameForAllConfigurations() {
+        HierarchicalConfiguration input = new HierarchicalConfiguration();
+        input.addProperty("plain.l1", "XXX");
+        input.addProperty("with..dot.l1", "XXX");
+        input.addProperty("with..dot.l2", "XXX");
+        CompactConfiguration compact = CompactConfiguration.of(input);
+
+        assertThat(childKeys(input), contains("plain", "with..dot"));
+        assertThat(childKeys(compact), contains("plain", "with..dot"));
+        assertThat(childMap(input).keySet(), contains("plain", "with..dot"));
+        assertThat(childMap(compact).keySet(), contains("plain", "with..dot"));
+        assertThat(childMap(input).get("with..dot").getString("l2"), is("XXX"));
+        assertThat(childMap(compact).get("with..dot").getString("l2"), is("XXX"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testChildKeysCannotBeModified() {
+        Configuration input = new HierarchicalConfiguration();
+        input.addProperty("prop1", "XXX");
+
+        childKeys(input).add("prop2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testChildMapCannotBeModified() {
+        Configuration input = new HierarchicalConfiguration();
+        input.addProperty("prop1", "XXX");
+
+        childMap(input).remove("prop1");
+    }
+
     @Test
     public void codeCoverageTest() {
         new ConfigUtil();
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.UnmodifiableHierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates a {@link HierarchicalConfigurationDeserializer} with a bounded, JVM-wide cache of parse results, keyed by
+ * the deserializer used and a digest of the input. Identical content, such as an include file shared by several
+ * configuration trees, an unchanged value re-put in the configuration source, or a configuration part re-read by
+ * {@link ConfigurationManager#reload()}, is then only parsed once.
+ * <p>
+ * Cached configurations are shared, and therefore returned as {@link UnmodifiableHierarchicalConfiguration}. Include
+ * references are copied for every call, because the configuration loader modifies them.
+ */
+public class CachingDeserializer implements HierarchicalConfigurationDeserializer {
+    private static final Logger logger = LoggerFactory.getLogger(CachingDeserializer.class);
+
+    static final ParseCache CACHE = new ParseCache();
+
+    private final HierarchicalConfigurationDeserializer delegate;
+
+    /**
+     * Construct a new CachingDeserializer.
+     *
+     * @param delegate   Deserializer that parses input not found in the cache.
+     * @param maxEntries Maximum number of parse results kept. The cache is shared by all instances of this class; its
+     *                   capacity is the largest value passed by any of them.
+     */
+    public CachingDeserializer(HierarchicalConfigurationDeserializer delegate, int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("Cache size must be at least 1.");
+
+        this.delegate = delegate;
+        CACHE.ensureCapacity(maxEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConfigurationResult deserialize(InputStream input) throws ConfigurationException {
+        byte[] bytes;
+        try {
+            bytes = input.readAllBytes();
+        } catch (IOException e) {
+            throw new ConfigurationException("Failed to read configuration input.", e);
+        }
+
+        String key = delegate.getClass().getName() + ":" + SnapshotStore.versionOf(bytes);
+        CachedResult cached = CACHE.get(key);
+        if (cached == null) {
+            ConfigurationResult result = delegate.deserialize(new ByteArrayInputStream(bytes));
+            cached = new CachedResult(
+                    new UnmodifiableHierarchicalConfiguration(result.getConfiguration()),
+                    copy(result.getIncludeReferences())
+            );
+            CACHE.put(key, cached);
+        } else {
+            logger.debug("Parse result cache hit ({} bytes).", bytes.length);
+        }
+
+        return new ConfigurationResult(cached.configuration, copy(cached.includeReferences));
+    }
+
+    @Override
+    public String defaultConfigName() {
+        return delegate.defaultConfigName();
+    }
+
+    @Override
+    public boolean handles(String name) {
+        return delegate.handles(name);
+    }
+
+    static List<IncludeReference> copy(List<IncludeReference> includeReferences) {
+        List<IncludeReference> copy = new ArrayList<>(includeReferences.size());
+        for (IncludeReference reference : includeReferences) {
+            copy.add(new IncludeReference(reference.getConfigPath(), reference.getName()));
+        }
+        return copy;
+    }
+
+    static class CachedResult {
+        final UnmodifiableHierarchicalConfiguration configuration;
+        final List<IncludeReference> includeReferences;
+
+        CachedResult(UnmodifiableHierarchicalConfiguration configuration, List<IncludeReference> includeReferences) {
+            this.configuration = configuration;
+            this.includeReferences = includeReferences;
+        }
+    }
+
+    /**
+     * Least-recently-used cache of parse results.
+     */
+    static class ParseCache {
+        private int capacity = 0;
+        private final Map<String, CachedResult> entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        synchronized void ensureCapacity(int capacity) {
+            this.capacity = Math.max(this.capacity, capacity);
+        }
+
+        synchronized CachedResult get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CachedResult result) {
+            entries.put(key, result);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -17,6 +17,8 @@ package org.lable.oss.dynamicconfig.core;
 
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 
+import java.util.Map;
+
 /**
  * Callback for a changed configuration tree.
  */
@@ -29,4 +31,35 @@ public interface ConfigChangeListener {
      * @param name                    Name of the configuration part.
      */
     void changed(ConfigurationConnection configurationConnection, String name);
-}
\ No newline at end of file
+
+    /**
+     * Called when a single value in a configuration part is mutated. Only configuration connections that can
+     * report such fine-grained changes call this method (see
+     * {@link org.lable.oss.dynamicconfig.core.spi.StructuredConfigurationConnection}). By default, this is treated
+     * as a change of the whole configuration part.
+     *
+     * @param configurationConnection Configuration connection.
+     * @param name                    Name of the configuration part.
+     * @param key                     Key of the mutated value, relative to the configuration part.
+     * @param value                   New value, or {@code null} if the value was removed.
+     */
+    default void valueChanged(ConfigurationConnection configurationConnection, String name, String key, Object value) {
+        changed(configurationConnection, name);
+    }
+
+    /**
+     * Called when several values in a configuration part are mutated at once. Only configuration connections that
+     * can report such fine-grained changes call this method. The changes should be applied together, so readers never
+     * see only some of them. By default, each value is passed to
+     * {@link #valueChanged(ConfigurationConnection, String, String, Object)} in turn.
+     *
+     * @param configurationConnection Configuration connection.
+     * @param name                    Name of the configuration part.
+     * @param values                  New values by key, relative to the configuration part. A value is {@code null}
+     *                                if it was removed.
+     */
+    default void valuesChanged(ConfigurationConnection configurationConnection, String name,
+                               Map<String, Object> values) {
+        values.forEach((key, value) -> valueChanged(configurationConnection, name, key, value));
+    }
+}
@@ -18,6 +18,10 @@ package org.lable.oss.dynamicconfig.core;
 import org.apache.commons.configuration.CombinedConfiguration;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.apache.commons.configuration.tree.ViewNode;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.UnmodifiableHierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.DeferredNode;
 
 import java.time.Instant;
 import java.util.*;
@@ -32,6 +36,10 @@ public class ConfigurationComposition {
     Map<String, ConfigReference> allReferences;
     ConfigReference root;
     HierarchicalConfiguration defaultConfiguration;
+    // Configuration key prefixes to retain; empty to retain everything.
+    List<String> prefixes = Collections.emptyList();
+    // Whether the raw source of each configuration part is retained; only needed for the local snapshot.
+    boolean retainSources = false;
 
     /**
      * Internal name used for the special default configuration that can be provided hard-coded.
@@ -65,6 +73,35 @@ public class ConfigurationComposition {
         this.root = null;
     }
 
+    /**
+     * Only retain the configuration keys under these prefixes. Configuration parts are pruned when they are loaded,
+     * and parts included entirely outside these prefixes are not loaded at all.
+     *
+     * @param prefixes Configuration key prefixes, such as {@code db} or {@code http.client}. Pass an empty collection
+     *                 to retain everything.
+     */
+    public synchronized void setPrefixes(Collection<String> prefixes) {
+        this.prefixes = withoutCoveredKeys(prefixes.stream()
+                .map(String::trim)
+                .filter(prefix -> !prefix.isEmpty())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Retain the raw source of each configuration part as it is loaded, so {@link #getSources()} can provide it to
+     * {@link SnapshotStore}. Off by default, in which case configuration parts are deserialized straight from the
+     * stream provided by their connection.
+     *
+     * @param retainSources True to retain the raw sources.
+     */
+    public synchronized void setRetainSources(boolean retainSources) {
+        this.retainSources = retainSources;
+    }
+
+    boolean retainsSources() {
+        return retainSources;
+    }
+
     /**
      * Mark a configuration reference as root of this composition.
      *
@@ -115,10 +152,92 @@ public class ConfigurationComposition {
 
     synchronized void setConfigurationOnReference(ConfigReference reference,
                                                          HierarchicalConfiguration configuration) {
+        setConfigurationOnReference(reference, configuration, null);
+    }
+
+    /**
+     * Set the configuration of a configuration part, and retain the raw source it was deserialized from.
+     *
+     * @param reference     Configuration reference.
+     * @param configuration Configuration.
+     * @param source        Raw source of the configuration part, or {@code null} if not available or not retained.
+     */
+    synchronized void setConfigurationOnReference(ConfigReference reference,
+                                                  HierarchicalConfiguration configuration,
+                                                  byte[] source) {
+        if (!prefixes.isEmpty()) {
+            Set<String> mountPaths = mountPaths(reference);
+            configuration = prune(mountPaths, configuration);
+            reference.prunedFor = mountPaths;
+        }
         reference.setConfiguration(configuration);
+        reference.source = source;
+        reference.markTimeOfUpdate();
+    }
+
+    /**
+     * Update a single value in a configuration part in place.
+     *
+     * @param reference Configuration reference.
+     * @param key       Configuration key, relative to the configuration part.
+     * @param value     New value, or {@code null} to remove the key (and anything below it).
+     */
+    synchronized void setValueOnReference(ConfigReference reference, String key, Object value) {
+        if (reference.prunedFor != null &&
+                reference.prunedFor.stream().noneMatch(path -> isRetained(combinePath(path, key)))) {
+            // Outside the configured prefixes.
+            return;
+        }
+        if (reference.configuration instanceof UnmodifiableHierarchicalConfiguration) {
+            // Shared with others; modify a copy instead.
+            HierarchicalConfiguration copy = new HierarchicalConfiguration(reference.configuration);
+            copy.setDelimiterParsingDisabled(reference.configuration.isDelimiterParsingDisabled());
+            reference.configuration = copy;
+        }
+        if (value == null) {
+            reference.configuration.clearTree(key);
+        } else {
+            reference.configuration.setProperty(key, value);
+        }
+        // The raw source no longer matches.
+        reference.source = null;
         reference.markTimeOfUpdate();
     }
 
+    /**
+     * Exclude a configuration part from loading if it is only included outside the configured prefixes.
+     *
+     * @param name Configuration part.
+     * @return True if the configuration part was excluded.
+     */
+    synchronized boolean excludeIfOutsidePrefixes(String name) {
+        ConfigReference reference = allReferences.get(name);
+        if (reference == null || !isOutsidePrefixes(reference)) return false;
+
+        reference.markAsExcluded();
+        // Whatever it included before is no longer part of this composition through it.
+        Set<ConfigReference> orphans = findDereferencedConfigReferences(reference.unlinkAllReferences());
+        orphans.forEach(ConfigReference::markAsOrphaned);
+        return true;
+    }
+
+    /**
+     * After the includes of a configuration part have changed, mark every configuration part that now needs to be
+     * pruned differently (or is no longer excluded) for reloading.
+     */
+    synchronized void markRemountedReferences() {
+        if (prefixes.isEmpty()) return;
+
+        for (ConfigReference reference : allReferences.values()) {
+            if (reference.getConfigState() == ConfigState.EXCLUDED) {
+                if (!isOutsidePrefixes(reference)) reference.markAsNeedsLoading();
+            } else if (reference.getConfigState() == ConfigState.LOADED && reference.prunedFor != null &&
+                    !reference.prunedFor.equals(mountPaths(reference))) {
+                reference.markAsNeedsLoading();
+            }
+        }
+    }
+
     synchronized ConfigReference markReferenceAsFailedToLoad(String name) {
         ConfigReference current = allReferences.computeIfAbsent(name, ConfigReference::new);
         current.markAsFailedToLoad();
@@ -142,6 +261,26 @@ public class ConfigurationComposition {
         return allReferences.values().stream().filter(filter).collect(Collectors.toList());
     }
 
+    /**
+     * Get the raw source of every configuration part, for {@link SnapshotStore}.
+     *
+     * @return Raw source per configuration part name. Empty if not every configuration part was loaded successfully
+     * from a raw source.
+     */
+    synchronized Map<String, byte[]> getSources() {
+        Map<String, byte[]> sources = new HashMap<>();
+        for (ConfigReference reference : allReferences.values()) {
+            if (reference.getName().equals(DEFAULT_CONFIG_NAME)) continue;
+            if (reference.getConfigState() == ConfigState.ORPHANED) continue;
+            if (reference.getConfigState() == ConfigState.EXCLUDED) continue;
+            if (reference.getConfigState() != ConfigState.LOADED || reference.source == null) {
+                return Collections.emptyMap();
+            }
+            sources.put(reference.getName(), reference.source);
+        }
+        return sources;
+    }
+
     public synchronized void getRidOfOrphans() {
         allReferences.values().removeIf(ref -> ref.getConfigState() == ConfigState.ORPHANED);
     }
@@ -173,6 +312,49 @@ public class ConfigurationComposition {
         });
     }
 
+    /**
+     * Collect the root nodes of all configuration parts, placed at the path they are included at, in order of
+     * precedence. Merged with {@link org.lable.oss.dynamicconfig.core.compact.CompactConfiguration#merge(List)}, these
+     * give the same configuration as {@link #assembleConfigTree(CombinedConfiguration)}.
+     *
+     * @param metadata Receives the metadata properties. Its root node comes first, so it takes precedence over all
+     *                 configuration parts.
+     * @return The root nodes.
+     */
+    public synchronized List<ConfigurationNode> assembleConfigRoots(HierarchicalConfiguration metadata) {
+        setMetadata(metadata);
+
+        List<ConfigurationNode> roots = new ArrayList<>();
+        roots.add(metadata.getRootNode());
+        walk((path, ref) -> {
+            if (ref.configuration != null) roots.add(mount(path, ref.configuration.getRootNode()));
+        });
+        return roots;
+    }
+
+    /**
+     * Place the children of a root node at a path, like {@link CombinedConfiguration} does for configurations added
+     * at a path. The nodes are not copied or modified.
+     *
+     * @param path Path, or {@code null} for the root path.
+     * @param root Root node of a configuration part.
+     * @return A new root node.
+     */
+    static ConfigurationNode mount(String path, ConfigurationNode root) {
+        ViewNode mounted = new ViewNode();
+        ViewNode parent = mounted;
+        if (path != null) {
+            for (String name : path.split("\\.")) {
+                ViewNode node = new ViewNode();
+                node.setName(name);
+                parent.addChild(node);
+                parent = node;
+            }
+        }
+        parent.appendChildren(root);
+        return mounted;
+    }
+
     void setMetadata(Configuration combinedConfig) {
         combinedConfig.setProperty(META_MODIFIED_AT, Instant.now().toString());
 
@@ -234,6 +416,140 @@ public class ConfigurationComposition {
         });
     }
 
+    /**
+     * Find all paths a configuration part is included at, following the chain of parts that include it.
+     *
+     * @param reference Configuration reference.
+     * @return Paths in the combined configuration; {@code null} stands for the root path.
+     */
+    Set<String> mountPaths(ConfigReference reference) {
+        Set<String> paths = new HashSet<>();
+        if (reference.referencingMe.isEmpty()) {
+            paths.add(null);
+            return paths;
+        }
+
+        for (ConfigReference referencer : reference.referencingMe) {
+            Set<String> referencerPaths = mountPaths(referencer);
+            referencer.referencedByMe.forEach((includeReference, referencee) -> {
+                if (referencee != reference) return;
+                for (String base : referencerPaths) {
+                    paths.add(combinePath(base, includeReference.getConfigPath()));
+                }
+            });
+        }
+        return paths;
+    }
+
+    boolean isOutsidePrefixes(ConfigReference reference) {
+        if (prefixes.isEmpty()) return false;
+        return mountPaths(reference).stream().allMatch(path -> relativePrefixes(path).isEmpty());
+    }
+
+    /**
+     * Determine which configuration keys of a configuration part mounted at a path are retained.
+     *
+     * @param path Path the configuration part is mounted at, or {@code null} for the root path.
+     * @return The retained prefixes, relative to the path. Contains the empty string if everything is retained.
+     */
+    List<String> relativePrefixes(String path) {
+        if (path == null) return prefixes;
+
+        List<String> relative = new ArrayList<>();
+        for (String prefix : prefixes) {
+            if (isAtOrBelow(path, prefix)) return Collections.singletonList("");
+            if (prefix.startsWith(path + ".")) relative.add(prefix.substring(path.length() + 1));
+        }
+        return relative;
+    }
+
+    boolean isRetained(String key) {
+        return prefixes.isEmpty() ||
+                prefixes.stream().anyMatch(prefix -> isAtOrBelow(key, prefix) || isAtOrBelow(prefix, key));
+    }
+
+    /**
+     * Remove everything outside the configured prefixes from a configuration part.
+     *
+     * @param mountPaths    Paths the configuration part is included at.
+     * @param configuration Configuration of the configuration part.
+     * @return The pruned configuration, or the configuration passed if nothing needed pruning.
+     */
+    HierarchicalConfiguration prune(Set<String> mountPaths, HierarchicalConfiguration configuration) {
+        List<String> keep = new ArrayList<>();
+        mountPaths.forEach(path -> keep.addAll(relativePrefixes(path)));
+        if (keep.contains("")) return configuration;
+
+        // Shared configurations cannot be taken apart, so copy what is retained instead.
+        boolean shared = configuration instanceof UnmodifiableHierarchicalConfiguration;
+        HierarchicalConfiguration pruned = new HierarchicalConfiguration();
+        pruned.setExpressionEngine(configuration.getExpressionEngine());
+        pruned.setDelimiterParsingDisabled(configuration.isDelimiterParsingDisabled());
+        for (String key : withoutCoveredKeys(keep)) {
+            String[] segments = key.split("\\.");
+            List<ConfigurationNode> nodes = Collections.singletonList(configuration.getRootNode());
+            for (String segment : segments) {
+                nodes = nodes.stream()
+                        .flatMap(node -> node.getChildren(segment).stream())
+                        .collect(Collectors.toList());
+            }
+            if (nodes.isEmpty()) continue;
+
+            ConfigurationNode parent = pruned.getRootNode();
+            for (int i = 0; i < segments.length - 1; i++) {
+                List<ConfigurationNode> existing = parent.getChildren(segments[i]);
+                if (existing.isEmpty()) {
+                    ConfigurationNode child = new HierarchicalConfiguration.Node(segments[i]);
+                    parent.addChild(child);
+                    parent = child;
+                } else {
+                    parent = existing.get(0);
+                }
+            }
+            for (ConfigurationNode node : nodes) {
+                if (shared) {
+                    node = copyTree(node);
+                } else {
+                    node.getParentNode().removeChild(node);
+                }
+                parent.addChild(node);
+            }
+        }
+        return pruned;
+    }
+
+    static ConfigurationNode copyTree(ConfigurationNode node) {
+        if (node instanceof DeferredNode) {
+            // Don't build the children of a deferred node just to copy them.
+            ConfigurationNode copy = ((DeferredNode) node).deferredCopy();
+            if (copy != null) return copy;
+        }
+        ConfigurationNode copy = new HierarchicalConfiguration.Node(node.getName(), node.getValue());
+        node.getChildren().forEach(child -> copy.addChild(copyTree(child)));
+        node.getAttributes().forEach(attribute -> copy.addAttribute(copyTree(attribute)));
+        return copy;
+    }
+
+    static String combinePath(String base, String path) {
+        if (path == null) return base;
+        return base == null ? path : base + "." + path;
+    }
+
+    static boolean isAtOrBelow(String key, String prefix) {
+        return key.equals(prefix) || key.startsWith(prefix + ".");
+    }
+
+    /**
+     * Remove duplicate keys, and keys that are below another key in the collection.
+     */
+    static List<String> withoutCoveredKeys(Collection<String> keys) {
+        return keys.stream()
+                .distinct()
+                .filter(key -> keys.stream().noneMatch(other -> !other.equals(key) && isAtOrBelow(key, other)))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
     /**
      * Make the referenced configuration part extend from the default configuration (if set).
      *
@@ -305,6 +621,9 @@ public class ConfigurationComposition {
         ConfigState configState;
         Instant lastUpdated;
         HierarchicalConfiguration configuration;
+        byte[] source;
+        // Paths the configuration was pruned for, if it was pruned.
+        Set<String> prunedFor;
 
         ConfigReference(String name) {
             this.name = name;
@@ -364,6 +683,13 @@ public class ConfigurationComposition {
             this.configState = ConfigState.ORPHANED;
         }
 
+        void markAsExcluded() {
+            this.configState = ConfigState.EXCLUDED;
+            this.configuration = null;
+            this.source = null;
+            this.prunedFor = null;
+        }
+
         public ConfigState getConfigState() {
             return configState;
         }
@@ -402,7 +728,8 @@ public class ConfigurationComposition {
         NEEDS_LOADING("PENDING"),
         LOADED("OK"),
         FAILED_TO_LOAD("FAILED"),
-        ORPHANED("ORPHANED");
+        ORPHANED("ORPHANED"),
+        EXCLUDED("EXCLUDED");
 
         private final String state;
 
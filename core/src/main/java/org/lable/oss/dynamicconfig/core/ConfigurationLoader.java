@@ -23,14 +23,21 @@ import org.apache.commons.configuration.tree.OverrideCombiner;
 import org.lable.oss.dynamicconfig.core.ConfigurationComposition.ConfigReference;
 import org.lable.oss.dynamicconfig.core.ConfigurationComposition.ConfigState;
 import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.NativeConfiguration;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationSource;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
+import org.lable.oss.dynamicconfig.core.spi.StructuredConfigurationConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manages a configuration tree provided by implementations of {@link ConfigurationSource} and
@@ -55,9 +62,66 @@ public class ConfigurationLoader {
      */
     public static final String ROOTCONFIG_PROPERTY = "rootconfig";
 
-    static final String[] COMMON_PROPERTIES = {APPNAME_PROPERTY, ROOTCONFIG_PROPERTY};
+    /**
+     * Name of the property that holds the path of the local snapshot file (optional). When set, the last successfully
+     * loaded configuration is kept in this file, and used on startup while the configuration source is consulted in
+     * the background. See {@link SnapshotStore}.
+     * <p>
+     * The snapshot holds the raw source of each configuration part, so it cannot be combined with configuration
+     * sources that provide configuration parts already structured (such as the keys mode of the Etcd provider).
+     */
+    public static final String SNAPSHOT_PROPERTY = "snapshot";
+
+    /**
+     * Name of the property that holds the size of the parse result cache (optional). When set, configuration parts
+     * with identical content are only deserialized once per JVM. See {@link CachingDeserializer}.
+     */
+    public static final String PARSE_CACHE_PROPERTY = "parse.cache";
+
+    /**
+     * Name of the property that holds the configuration key prefixes to load (optional, comma-separated). When set,
+     * everything outside these prefixes is left out of the configuration, and configuration parts included entirely
+     * outside them are not loaded.
+     */
+    public static final String PREFIXES_PROPERTY = "prefixes";
+
+    /**
+     * Name of the property that enables the compact read path (optional, defaults to {@code false}). When set to
+     * {@code true}, the configuration is read from a compact immutable copy, see {@link CompactConfiguration}.
+     */
+    public static final String COMPACT_PROPERTY = "compact";
+
+    /**
+     * Name of the property that selects the configuration engine (optional). Either {@value #ENGINE_COMMONS} (the
+     * default), which combines the configuration parts with a Commons Configuration {@link CombinedConfiguration}, or
+     * {@value #ENGINE_NATIVE}, which merges them into a {@link NativeConfiguration}.
+     */
+    public static final String ENGINE_PROPERTY = "engine";
 
-    static ConfigurationComposition composition;
+    public static final String ENGINE_COMMONS = "commons";
+
+    public static final String ENGINE_NATIVE = "native";
+
+    /**
+     * Name of the property that selects the deserializer (optional), by its class name or simple class name. Only
+     * needed when more than one deserializer is on the classpath, and the extension of the root configuration
+     * resource does not tell them apart. See {@link #detectDeserializer()}.
+     */
+    public static final String DESERIALIZER_PROPERTY = "deserializer";
+
+    /**
+     * Deserializer used when several are on the classpath and neither the {@link #DESERIALIZER_PROPERTY} nor the
+     * extension of the root configuration resource selects one. YAML was the only supported format before others were
+     * added, so applications that never had to choose keep using it.
+     */
+    static final String DEFAULT_DESERIALIZER = "org.lable.oss.dynamicconfig.serialization.yaml.YamlDeserializer";
+
+    static final String[] COMMON_PROPERTIES = {
+            APPNAME_PROPERTY, ROOTCONFIG_PROPERTY, SNAPSHOT_PROPERTY, PARSE_CACHE_PROPERTY, PREFIXES_PROPERTY,
+            COMPACT_PROPERTY, ENGINE_PROPERTY
+    };
+
+    static volatile ConfigurationComposition composition;
 
     /**
      * Use system properties to initialize a configuration instance.
@@ -101,6 +165,27 @@ public class ConfigurationLoader {
                                                                HierarchicalConfiguration defaults,
                                                                HierarchicalConfigurationDeserializer deserializer)
             throws ConfigurationException {
+        return configureFromProperties(sourceType, defaults, deserializer, null);
+    }
+
+    /**
+     * Use system properties to initialize a configuration instance, only loading the configuration keys under the
+     * prefixes passed.
+     *
+     * @param sourceType   Name of the configuration source type.
+     * @param defaults     Default configuration. Any keys not overridden by the dynamic configuration will remain as
+     *                     set here.
+     * @param deserializer Deserializer used to interpret the language the configuration file is written in.
+     * @param prefixes     Configuration key prefixes to load. If {@code null} or empty, the system property
+     *                     {@code org.lable.oss.dynamicconfig.prefixes} is used, if set.
+     * @return Thread-safe configuration instance.
+     * @throws ConfigurationException Thrown when the required system properties are not set.
+     */
+    public static ConfigurationManager configureFromProperties(String sourceType,
+                                                               HierarchicalConfiguration defaults,
+                                                               HierarchicalConfigurationDeserializer deserializer,
+                                                               Collection<String> prefixes)
+            throws ConfigurationException {
 
         if (sourceType == null) {
             sourceType = System.getProperty(LIBRARY_PREFIX + ".type");
@@ -111,6 +196,9 @@ public class ConfigurationLoader {
 
         ConfigurationSource desiredSource = sourceFromString(sourceType);
         Configuration sourceConfiguration = gatherPropertiesFor(desiredSource, deserializer);
+        if (prefixes != null && !prefixes.isEmpty()) {
+            sourceConfiguration.setProperty(PREFIXES_PROPERTY, new ArrayList<>(prefixes));
+        }
 
         return initialize(desiredSource, sourceConfiguration, deserializer, defaults);
     }
@@ -145,24 +233,55 @@ public class ConfigurationLoader {
                                            HierarchicalConfigurationDeserializer deserializer,
                                            HierarchicalConfiguration defaults) throws ConfigurationException {
 
+        final HierarchicalConfigurationDeserializer effectiveDeserializer =
+                withParseCache(deserializer, sourceConfiguration);
         HierarchicalConfiguration effectiveDefaults = defaults == null
                 ? new HierarchicalConfiguration()
                 : defaults;
         String rootConfigName = sourceConfiguration.getString(ROOTCONFIG_PROPERTY);
+        String snapshotFile = sourceConfiguration.getString(SNAPSHOT_PROPERTY);
+        final SnapshotStore snapshotStore = snapshotFile == null ? null : new SnapshotStore(Paths.get(snapshotFile));
+        // Set while the configuration is served from the snapshot, until the configuration source is reached.
+        final AtomicBoolean servingSnapshot = new AtomicBoolean(false);
+
+        final Assembler assembler = assemblerFor(sourceConfiguration);
+        final List<String> prefixes = Arrays.asList(sourceConfiguration.getStringArray(PREFIXES_PROPERTY));
+        composition = newComposition(effectiveDefaults, prefixes, snapshotStore != null);
+
+        ConfigChangeListener configChangeListener = new ConfigChangeListener() {
+            @Override
+            public void changed(ConfigurationConnection connection, String name) {
+                logger.info("New runtime configuration received for configuration part {}.", name);
+                composition.markReferenceAsNeedsLoading(name);
+                load(name, connection, effectiveDeserializer, composition);
+                assembler.assemble(composition);
+                composition
+                        .getReferences(ref -> ref.getConfigState() == ConfigState.ORPHANED)
+                        .forEach(ref -> connection.stopListening(ref.getName()));
+                composition.getRidOfOrphans();
+                if (snapshotStore != null) snapshotStore.write(composition.getSources());
+            }
+
+            @Override
+            public void valueChanged(ConfigurationConnection connection, String name, String key, Object value) {
+                valuesChanged(connection, name, Collections.singletonMap(key, value));
+            }
 
-        final CombinedConfiguration allConfig = new CombinedConfiguration(new OverrideCombiner());
-        final ConcurrentConfiguration concurrentConfiguration = new ConcurrentConfiguration(allConfig);
-        composition = new ConfigurationComposition(effectiveDefaults);
-
-        ConfigChangeListener configChangeListener = (connection, name) -> {
-            logger.info("New runtime configuration received for configuration part {}.", name);
-            composition.markReferenceAsNeedsLoading(name);
-            load(name, connection, deserializer, composition);
-            concurrentConfiguration.withConfiguration(composition::assembleConfigTree);
-            composition
-                    .getReferences(ref -> ref.getConfigState() == ConfigState.ORPHANED)
-                    .forEach(ref -> connection.stopListening(ref.getName()));
-            composition.getRidOfOrphans();
+            @Override
+            public void valuesChanged(ConfigurationConnection connection, String name, Map<String, Object> values) {
+                ConfigReference reference = composition.getReference(name);
+                if (reference == null || reference.getConfigState() != ConfigState.LOADED || snapshotStore != null) {
+                    // Nothing to update in place, or the snapshot needs the new raw source of the part.
+                    changed(connection, name);
+                    return;
+                }
+
+                logger.info("New runtime values received for keys {} in configuration part {}.",
+                        values.keySet(), name);
+                // Apply all values in one go, so readers never see only some of them.
+                assembler.assemble(composition, () ->
+                        values.forEach((key, value) -> composition.setValueOnReference(reference, key, value)));
+            }
         };
 
         logger.info("Root config: {}.", rootConfigName);
@@ -170,22 +289,126 @@ public class ConfigurationLoader {
         desiredSource.configure(sourceConfiguration, effectiveDefaults);
 
         ConfigLoader loader = () -> {
-            composition.reset(effectiveDefaults);
             ConfigurationConnection configurationConnection = desiredSource.connect(
                     configChangeListener
             );
+            if (snapshotStore != null && configurationConnection instanceof StructuredConfigurationConnection) {
+                closeQuietly(configurationConnection);
+                throw new ConfigurationException(SNAPSHOT_PROPERTY, "A local snapshot cannot be kept for " +
+                        "configuration sources that provide structured configuration parts.");
+            }
 
-            ConfigReference rootReference = load(normalizedConfigName, configurationConnection, deserializer, composition);
-            composition.setRootReference(rootReference);
+            // Load into a new composition, so a failed attempt leaves the current one intact.
+            ConfigurationComposition loaded = newComposition(effectiveDefaults, prefixes, snapshotStore != null);
+            ConfigReference rootReference =
+                    load(normalizedConfigName, configurationConnection, effectiveDeserializer, loaded);
+            if (servingSnapshot.get() &&
+                    !loaded.getReferences(ref -> ref.getConfigState() == ConfigState.FAILED_TO_LOAD).isEmpty()) {
+                // Keep serving the complete snapshot rather than a partial configuration.
+                closeQuietly(configurationConnection);
+                throw new ConfigurationException("Failed to load " + normalizedConfigName + " (or a part it " +
+                        "includes) from the configuration source; the local snapshot remains in use.");
+            }
+            loaded.setRootReference(rootReference);
+            composition = loaded;
 
-            concurrentConfiguration.withConfiguration(composition::assembleConfigTree);
+            assembler.assemble(composition);
+            if (servingSnapshot.getAndSet(false)) {
+                logger.info("Configuration revalidated against the configuration source.");
+            }
+            if (snapshotStore != null) snapshotStore.write(composition.getSources());
 
             return configurationConnection;
         };
 
+        if (snapshotStore != null) {
+            ConfigurationConnection snapshotConnection = warmStart(
+                    snapshotStore, normalizedConfigName, effectiveDeserializer, assembler, effectiveDefaults
+            );
+            if (snapshotConnection != null) {
+                servingSnapshot.set(true);
+                ConfigurationManager manager =
+                        new ConfigurationManager(assembler.getConfiguration(), loader, snapshotConnection);
+                manager.revalidateInBackground();
+                return manager;
+            }
+        }
+
         ConfigurationConnection configurationConnection = loader.connectAndLoad();
 
-        return new ConfigurationManager(concurrentConfiguration, loader, configurationConnection);
+        return new ConfigurationManager(assembler.getConfiguration(), loader, configurationConnection);
+    }
+
+    static ConfigurationComposition newComposition(HierarchicalConfiguration defaults,
+                                                   List<String> prefixes,
+                                                   boolean retainSources) {
+        ConfigurationComposition composition = new ConfigurationComposition(defaults);
+        composition.setPrefixes(prefixes);
+        composition.setRetainSources(retainSources);
+        return composition;
+    }
+
+    static void closeQuietly(ConfigurationConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close configuration connection properly.", e);
+        }
+    }
+
+    static Assembler assemblerFor(Configuration sourceConfiguration) throws ConfigurationException {
+        String engine = sourceConfiguration.getString(ENGINE_PROPERTY, ENGINE_COMMONS);
+        switch (engine) {
+            case ENGINE_COMMONS:
+                CombinedConfiguration allConfig = new CombinedConfiguration(new OverrideCombiner());
+                return new CommonsAssembler(
+                        new ConcurrentConfiguration(allConfig, sourceConfiguration.getBoolean(COMPACT_PROPERTY, false))
+                );
+            case ENGINE_NATIVE:
+                return new NativeAssembler(new NativeConfiguration());
+            default:
+                throw new ConfigurationException(ENGINE_PROPERTY, "Unknown configuration engine " + engine + ".");
+        }
+    }
+
+    static HierarchicalConfigurationDeserializer withParseCache(HierarchicalConfigurationDeserializer deserializer,
+                                                                Configuration sourceConfiguration)
+            throws ConfigurationException {
+        int parseCacheSize;
+        try {
+            parseCacheSize = sourceConfiguration.getInt(PARSE_CACHE_PROPERTY, 0);
+        } catch (RuntimeException e) {
+            throw new ConfigurationException(PARSE_CACHE_PROPERTY, "Parse cache size must be a number.");
+        }
+        return parseCacheSize > 0 ? new CachingDeserializer(deserializer, parseCacheSize) : deserializer;
+    }
+
+    /**
+     * Load the configuration from the local snapshot.
+     *
+     * @return A connection serving the snapshot, or {@code null} if the snapshot does not contain a usable
+     * configuration.
+     */
+    static ConfigurationConnection warmStart(SnapshotStore snapshotStore,
+                                             String rootConfigName,
+                                             HierarchicalConfigurationDeserializer deserializer,
+                                             Assembler assembler,
+                                             HierarchicalConfiguration defaults) {
+        Map<String, byte[]> parts = snapshotStore.read();
+        if (!parts.containsKey(rootConfigName)) return null;
+
+        ConfigurationConnection snapshotConnection = new SnapshotStore.SnapshotConnection(parts);
+        composition.reset(defaults);
+        ConfigReference rootReference = load(rootConfigName, snapshotConnection, deserializer, composition);
+        if (!composition.getReferences(ref -> ref.getConfigState() == ConfigState.FAILED_TO_LOAD).isEmpty()) {
+            logger.warn("Local configuration snapshot is incomplete; waiting for the configuration source instead.");
+            return null;
+        }
+        composition.setRootReference(rootReference);
+        assembler.assemble(composition);
+
+        logger.info("Configuration loaded from local snapshot; revalidating against the configuration source.");
+        return snapshotConnection;
     }
 
     static ConfigurationSource sourceFromString(String desiredSourceName) throws ConfigurationException {
@@ -209,10 +432,32 @@ public class ConfigurationLoader {
             return composition.getReference(name);
         }
 
+        // Don't fetch config parts that are only included outside the configured prefixes.
+        if (composition.excludeIfOutsidePrefixes(name)) {
+            logger.info("Configuration part {} is only included outside the configured prefixes; skipped.", name);
+            return composition.getReference(name);
+        }
+
         ConfigurationResult result;
+        // Raw source, only retained for the local snapshot.
+        byte[] source = null;
         try {
-            InputStream is = configurationConnection.load(name);
-            result = deserializer.deserialize(is);
+            if (configurationConnection instanceof StructuredConfigurationConnection) {
+                // No deserialization needed.
+                result = ((StructuredConfigurationConnection) configurationConnection).loadStructured(name);
+            } else if (composition.retainsSources()) {
+                try (InputStream is = configurationConnection.load(name)) {
+                    source = is.readAllBytes();
+                }
+                result = deserializer.deserialize(new ByteArrayInputStream(source));
+            } else {
+                try (InputStream is = configurationConnection.load(name)) {
+                    result = deserializer.deserialize(is);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to (re)load (part of) configuration: {}.", name, e);
+            return composition.markReferenceAsFailedToLoad(name);
         } catch (ConfigurationException e) {
             logger.error("Failed to (re)load (part of) configuration: {}.", name);
             return composition.markReferenceAsFailedToLoad(name);
@@ -224,7 +469,8 @@ public class ConfigurationLoader {
 
         logger.info("Configuration part (re)loaded ({}).", name);
         ConfigReference reference = composition.updateReferences(name, includeReferences);
-        composition.setConfigurationOnReference(reference, result.getConfiguration());
+        composition.setConfigurationOnReference(reference, result.getConfiguration(), source);
+        composition.markRemountedReferences();
 
         // Recurse into every reference that was introduced here, but hasn't been loaded yet.
         composition
@@ -331,6 +577,72 @@ public class ConfigurationLoader {
         return configuration;
     }
 
+    /**
+     * Find the deserializer to use among those on the classpath. When there is more than one, the system property
+     * {@code org.lable.oss.dynamicconfig.deserializer} selects one by (simple) class name. If that is not set, the
+     * one that {@link HierarchicalConfigurationDeserializer#handles(String) handles} the root configuration
+     * resource named by the system property {@code org.lable.oss.dynamicconfig.rootconfig} is used. If that does not
+     * settle it either, for example because the root configuration resource is named after the application and has no
+     * extension, the YAML deserializer is used when it is among them.
+     *
+     * @return The deserializer.
+     * @throws ConfigurationException Thrown when no deserializer is found, or when it is not clear which one to use.
+     */
+    public static HierarchicalConfigurationDeserializer detectDeserializer() throws ConfigurationException {
+        List<HierarchicalConfigurationDeserializer> candidates = new ArrayList<>();
+        ServiceLoader.load(HierarchicalConfigurationDeserializer.class).forEach(candidates::add);
+        return selectDeserializer(candidates,
+                System.getProperty(LIBRARY_PREFIX + "." + DESERIALIZER_PROPERTY),
+                System.getProperty(LIBRARY_PREFIX + "." + ROOTCONFIG_PROPERTY));
+    }
+
+    static HierarchicalConfigurationDeserializer selectDeserializer(
+            List<HierarchicalConfigurationDeserializer> candidates,
+            String wanted,
+            String rootConfigName) throws ConfigurationException {
+        if (candidates.isEmpty()) {
+            throw new ConfigurationException("No HierarchicalConfigurationDeserializer found on the classpath. " +
+                    "You may need to load a module containing a suitable deserializer.");
+        }
+
+        if (wanted != null && !wanted.isEmpty()) {
+            for (HierarchicalConfigurationDeserializer candidate : candidates) {
+                Class<?> type = candidate.getClass();
+                if (type.getName().equals(wanted) || type.getSimpleName().equals(wanted)) return candidate;
+            }
+            throw new ConfigurationException(DESERIALIZER_PROPERTY, "No HierarchicalConfigurationDeserializer " +
+                    "named " + wanted + " found on the classpath; found " + namesOf(candidates) + ".");
+        }
+
+        if (candidates.size() == 1) return candidates.get(0);
+
+        if (rootConfigName != null) {
+            List<HierarchicalConfigurationDeserializer> handling = new ArrayList<>();
+            for (HierarchicalConfigurationDeserializer candidate : candidates) {
+                if (candidate.handles(rootConfigName)) handling.add(candidate);
+            }
+            if (handling.size() == 1) return handling.get(0);
+        }
+
+        for (HierarchicalConfigurationDeserializer candidate : candidates) {
+            if (candidate.getClass().getName().equals(DEFAULT_DESERIALIZER)) {
+                logger.info("Found more than one HierarchicalConfigurationDeserializer on the classpath ({}); " +
+                        "using the default, {}.", namesOf(candidates), DEFAULT_DESERIALIZER);
+                return candidate;
+            }
+        }
+
+        throw new ConfigurationException(DESERIALIZER_PROPERTY, "Found more than one " +
+                "HierarchicalConfigurationDeserializer on the classpath (" + namesOf(candidates) + "). Select one " +
+                "with the system property " + LIBRARY_PREFIX + "." + DESERIALIZER_PROPERTY + ".");
+    }
+
+    private static String namesOf(List<HierarchicalConfigurationDeserializer> deserializers) {
+        StringJoiner names = new StringJoiner(", ");
+        deserializers.forEach(deserializer -> names.add(deserializer.getClass().getName()));
+        return names.toString();
+    }
+
     static List<ConfigurationSource> detectConfigurationSourceServiceProviders() {
         List<ConfigurationSource> providers = new ArrayList<>();
         ServiceLoader<ConfigurationSource> loader = ServiceLoader.load(ConfigurationSource.class);
@@ -344,4 +656,69 @@ public class ConfigurationLoader {
     public interface ConfigLoader {
         ConfigurationConnection connectAndLoad() throws ConfigurationException;
     }
+
+    /**
+     * Assembles the configuration parts of a {@link ConfigurationComposition} into the configuration instance used by
+     * the application.
+     */
+    interface Assembler {
+        /**
+         * Modify the composition, and assemble the configuration. Readers never see the modification before the new
+         * configuration is assembled.
+         *
+         * @param composition  Configuration composition.
+         * @param modification Modification of the configuration parts.
+         */
+        void assemble(ConfigurationComposition composition, Runnable modification);
+
+        default void assemble(ConfigurationComposition composition) {
+            assemble(composition, () -> {});
+        }
+
+        Configuration getConfiguration();
+    }
+
+    static class CommonsAssembler implements Assembler {
+        private final ConcurrentConfiguration configuration;
+
+        CommonsAssembler(ConcurrentConfiguration configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public void assemble(ConfigurationComposition composition, Runnable modification) {
+            // The combined configuration uses the nodes of the configuration parts, so modify them under its lock.
+            configuration.withConfiguration(combinedConfiguration -> {
+                modification.run();
+                composition.assembleConfigTree(combinedConfiguration);
+            });
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+    }
+
+    static class NativeAssembler implements Assembler {
+        private final NativeConfiguration configuration;
+
+        NativeAssembler(NativeConfiguration configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public synchronized void assemble(ConfigurationComposition composition, Runnable modification) {
+            // Readers only see the merged copy, so the configuration parts can be modified without locking them.
+            modification.run();
+            HierarchicalConfiguration metadata = new HierarchicalConfiguration();
+            metadata.setProperty(ConcurrentConfiguration.MODIFICATION_TIMESTAMP, System.nanoTime());
+            configuration.update(composition.assembleConfigRoots(metadata));
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+    }
 }
@@ -16,12 +16,15 @@
 package org.lable.oss.dynamicconfig.core;
 
 import org.apache.commons.configuration.Configuration;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Contains the loaded {@link Configuration} instance, which may be acquired via {@link #getConfiguration()} and which
@@ -31,13 +34,22 @@ import java.io.IOException;
  * This {@link Closeable} class may be used to shutdown the threads responsible for updating the configuration at the
  * end of an application's lifecycle. After closing it, the {@link Configuration} class should no longer be used.
  */
-public class ConfigurationManager implements Closeable {
+public class ConfigurationManager implements Closeable, SnapshotSource {
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationManager.class);
 
+    static final long MAX_REVALIDATION_BACKOFF = 60_000;
+
     private final Configuration configuration;
     private final ConfigurationLoader.ConfigLoader reloader;
 
+    // Held for the duration of a reload, so reloads do not overlap. Never held while waiting for this monitor.
+    private final Object reloadLock = new Object();
+    // Thread revalidating a configuration loaded from a local snapshot, if any.
+    private final AtomicReference<Thread> revalidator = new AtomicReference<>();
+
+    // Guarded by this.
     private ConfigurationConnection configurationConnection;
+    private boolean closed = false;
 
     public ConfigurationManager(Configuration configuration,
                                 ConfigurationLoader.ConfigLoader reloader,
@@ -56,20 +68,106 @@ public class ConfigurationManager implements Closeable {
         return configuration;
     }
 
+    /**
+     * Get an immutable snapshot of the current configuration. Unlike the {@link Configuration} returned by {@link
+     * #getConfiguration()}, a snapshot does not change when the configuration is updated, so several keys read from
+     * it are guaranteed to be consistent with each other. Reading it requires no synchronization, which makes it
+     * suitable for holding on to for the duration of a request or batch.
+     * <p>
+     * Taking a snapshot does not copy the configuration; all snapshots taken between two updates are the same
+     * instance. When the configuration is served by the Commons Configuration engine without the compact read path,
+     * the first snapshot ever taken makes a compact copy of the configuration; after that, each update makes the copy
+     * when it is applied.
+     *
+     * @return The current configuration.
+     * @throws UnsupportedOperationException Thrown when the configuration does not support snapshots.
+     */
+    @Override
+    public CompactConfiguration snapshot() {
+        if (!(configuration instanceof SnapshotSource)) {
+            throw new UnsupportedOperationException("This configuration does not support snapshots.");
+        }
+        return ((SnapshotSource) configuration).snapshot();
+    }
+
     /**
      * Reload the configuration completely.
+     * <p>
+     * The configuration source is consulted without holding the lock {@link #close()} needs, so closing this manager
+     * is never held up by a configuration source that does not respond.
      */
     public void reload() throws ConfigurationException {
-        try {
-            close();
-        } catch (IOException e) {
-            logger.warn("Failed to close configuration connection properly.", e);
+        synchronized (reloadLock) {
+            ConfigurationConnection previous;
+            synchronized (this) {
+                if (closed) throw new ConfigurationException("Configuration manager is closed.");
+                previous = configurationConnection;
+                // Closed here, so it must not be closed again by close().
+                configurationConnection = null;
+            }
+            if (previous != null) closeQuietly(previous);
+
+            ConfigurationConnection connection = this.reloader.connectAndLoad();
+            synchronized (this) {
+                if (!closed) {
+                    configurationConnection = connection;
+                    return;
+                }
+            }
+            // Closed while loading.
+            closeQuietly(connection);
         }
-        configurationConnection = this.reloader.connectAndLoad();
+    }
+
+    /**
+     * Reload the configuration on a background thread, retrying with an increasing interval until it succeeds. Used
+     * when the configuration was loaded from a local snapshot.
+     */
+    void revalidateInBackground() {
+        Thread thread = new Thread(() -> {
+            long backoff = 1000;
+            // Stop if this manager was closed in the meantime.
+            while (revalidator.get() == Thread.currentThread()) {
+                try {
+                    reload();
+                    revalidator.compareAndSet(Thread.currentThread(), null);
+                    return;
+                } catch (ConfigurationException e) {
+                    if (revalidator.get() != Thread.currentThread()) return;
+                    logger.warn("Failed to revalidate configuration, retrying in {} ms.", backoff, e);
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_REVALIDATION_BACKOFF);
+            }
+        }, "dynamicconfig-revalidation");
+        thread.setDaemon(true);
+        revalidator.set(thread);
+        thread.start();
     }
 
     @Override
     public void close() throws IOException {
-        configurationConnection.close();
+        Thread revalidator = this.revalidator.getAndSet(null);
+        if (revalidator != null) revalidator.interrupt();
+
+        ConfigurationConnection connection;
+        synchronized (this) {
+            closed = true;
+            connection = configurationConnection;
+            configurationConnection = null;
+        }
+        if (connection != null) connection.close();
+    }
+
+    private static void closeQuietly(ConfigurationConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close configuration connection properly.", e);
+        }
     }
 }
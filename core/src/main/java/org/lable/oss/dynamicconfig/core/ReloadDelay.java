@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines how long to wait before reloading a configuration part after a change notification.
+ * <p>
+ * When a configuration part changes, every process in a fleet that uses it is notified at nearly the same moment. To
+ * avoid all of them fetching the part from the configuration source at once, reloads can be delayed by:
+ * <ul>
+ *     <li>an offset within a <em>spread window</em>; this offset is either random, or derived deterministically from
+ *     the application name and meta data in {@link InstanceLocalSettings} so that each instance is assigned its own
+ *     slot in the window;</li>
+ *     <li>an additional random <em>jitter</em>.</li>
+ * </ul>
+ * The added delay is never more than {@link #getMaximumDelay()}. By default, no delay is applied.
+ */
+public class ReloadDelay {
+    /**
+     * Maximum random jitter in milliseconds.
+     */
+    public static final String JITTER_PROPERTY = "reload.jitter";
+
+    /**
+     * Width of the spread window in milliseconds.
+     */
+    public static final String SPREAD_PROPERTY = "reload.spread";
+
+    /**
+     * When set to {@code true}, the offset in the spread window is derived from the instance local settings.
+     */
+    public static final String PER_INSTANCE_PROPERTY = "reload.spread.per-instance";
+
+    /**
+     * Names of the configuration parameters read by {@link #fromConfiguration(Configuration)}, for use in
+     * {@link org.lable.oss.dynamicconfig.core.spi.ConfigurationSource#systemProperties()}.
+     */
+    public static final List<String> PROPERTIES = Arrays.asList(JITTER_PROPERTY, SPREAD_PROPERTY, PER_INSTANCE_PROPERTY);
+
+    /**
+     * Reload immediately.
+     */
+    public static final ReloadDelay NONE = new ReloadDelay(0, 0, false);
+
+    final long jitter;
+    final long spread;
+    final boolean perInstance;
+
+    public ReloadDelay(long jitter, long spread, boolean perInstance) {
+        if (jitter < 0) throw new IllegalArgumentException("Jitter cannot be negative.");
+        if (spread < 0) throw new IllegalArgumentException("Spread cannot be negative.");
+
+        this.jitter = jitter;
+        this.spread = spread;
+        this.perInstance = perInstance;
+    }
+
+    /**
+     * Read the reload delay settings from a configuration source's configuration parameters.
+     *
+     * @param configuration Configuration parameters.
+     * @return The reload delay.
+     * @throws ConfigurationException Thrown when the parameters are invalid.
+     */
+    public static ReloadDelay fromConfiguration(Configuration configuration) throws ConfigurationException {
+        long jitter;
+        long spread;
+        try {
+            jitter = configuration.getLong(JITTER_PROPERTY, 0L);
+            spread = configuration.getLong(SPREAD_PROPERTY, 0L);
+        } catch (RuntimeException e) {
+            throw new ConfigurationException("Reload delay parameters must be a number of milliseconds.", e);
+        }
+        if (jitter < 0) throw new ConfigurationException(JITTER_PROPERTY, "Reload jitter cannot be negative.");
+        if (spread < 0) throw new ConfigurationException(SPREAD_PROPERTY, "Reload spread cannot be negative.");
+
+        boolean perInstance = configuration.getBoolean(PER_INSTANCE_PROPERTY, false);
+
+        if (jitter == 0 && spread == 0) return NONE;
+        return new ReloadDelay(jitter, spread, perInstance);
+    }
+
+    /**
+     * @return True if reloads are delayed at all.
+     */
+    public boolean isEnabled() {
+        return jitter > 0 || spread > 0;
+    }
+
+    /**
+     * @return Upper bound of the delay in milliseconds.
+     */
+    public long getMaximumDelay() {
+        return spread + jitter;
+    }
+
+    /**
+     * Compute the delay for the next reload.
+     *
+     * @return Delay in milliseconds.
+     */
+    public long nextDelay() {
+        if (!isEnabled()) return 0;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long offset = 0;
+        if (spread > 0) {
+            offset = perInstance ? instanceOffset(instanceIdentity(), spread) : random.nextLong(spread);
+        }
+        return jitter > 0 ? offset + random.nextLong(jitter) : offset;
+    }
+
+    /**
+     * Derive a stable offset in the spread window from the identity of an instance.
+     *
+     * @param identity Instance identity.
+     * @param spread   Width of the spread window.
+     * @return Offset, between 0 (inclusive) and {@code spread} (exclusive).
+     */
+    static long instanceOffset(String identity, long spread) {
+        // String#hashCode is stable across JVMs, but spreads similar identities (e.g., 'host-01' and 'host-02')
+        // poorly. Mix its bits before mapping it onto the window.
+        long hash = identity.hashCode();
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return Math.floorMod(hash, spread);
+    }
+
+    static String instanceIdentity() {
+        InstanceLocalSettings settings = InstanceLocalSettings.INSTANCE;
+        StringBuilder builder = new StringBuilder();
+        builder.append(settings.getAppName());
+        settings.getMetaData().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .sorted()
+                .forEach(entry -> builder.append(';').append(entry));
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return isEnabled()
+                ? "spread " + spread + " ms" + (perInstance ? " (per instance)" : "") + ", jitter " + jitter + " ms"
+                : "none";
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs reloads of configuration parts after a {@link ReloadDelay}. Used by configuration connections in their change
+ * path.
+ * <p>
+ * Change notifications that arrive for a reload that is already pending are coalesced; only the task submitted last
+ * runs. The actual propagation delay of each reload is logged.
+ */
+public class ReloadScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReloadScheduler.class);
+
+    private final ReloadDelay reloadDelay;
+    private final ScheduledExecutorService executor;
+    private final Map<String, PendingReload> pending = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a new {@link ReloadScheduler}.
+     *
+     * @param reloadDelay Reload delay.
+     * @param executor    Executor that runs delayed reloads. May be {@code null} if reloads are not delayed, in which
+     *                    case they run on the thread that submits them. This class does not shut it down.
+     */
+    public ReloadScheduler(ReloadDelay reloadDelay, ScheduledExecutorService executor) {
+        if (reloadDelay.isEnabled() && executor == null) {
+            throw new IllegalArgumentException("An executor is required for delayed reloads.");
+        }
+        this.reloadDelay = reloadDelay;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedule a reload.
+     *
+     * @param id     Identifies the reload, e.g., by the name of the configuration part. Pending reloads with the same
+     *               identifier are coalesced.
+     * @param reload The reload task.
+     */
+    public void schedule(String id, Runnable reload) {
+        if (closed) return;
+
+        if (!reloadDelay.isEnabled()) {
+            if (executor == null) {
+                reload.run();
+            } else {
+                executor.execute(reload);
+            }
+            return;
+        }
+
+        long now = System.nanoTime();
+        boolean[] scheduled = {false};
+        pending.compute(id, (key, existing) -> {
+            if (existing == null) {
+                scheduled[0] = true;
+                return new PendingReload(reload, now);
+            }
+            // Already scheduled; the newer task replaces the old one, but the original deadline stays.
+            return new PendingReload(reload, existing.receivedAt);
+        });
+        if (!scheduled[0]) return;
+
+        long delay = reloadDelay.nextDelay();
+        logger.debug("Reload of {} scheduled in {} ms.", id, delay);
+        executor.schedule(() -> run(id), delay, TimeUnit.MILLISECONDS);
+    }
+
+    void run(String id) {
+        PendingReload pendingReload = pending.remove(id);
+        if (pendingReload == null || closed) return;
+
+        long delay = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingReload.receivedAt);
+        logger.info("Reloading {} {} ms after the change was received (maximum added delay is {} ms).",
+                id, delay, reloadDelay.getMaximumDelay());
+        pendingReload.reload.run();
+    }
+
+    /**
+     * Cancel all pending reloads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    static class PendingReload {
+        final Runnable reload;
+        final long receivedAt;
+
+        PendingReload(Runnable reload, long receivedAt) {
+            this.reload = reload;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
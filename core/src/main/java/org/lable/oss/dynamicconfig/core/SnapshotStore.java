@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Local file that holds the raw source of every configuration part of the last successfully loaded configuration,
+ * along with a version token (a SHA-256 digest) per part.
+ * <p>
+ * It allows {@link ConfigurationLoader} to start from the last known good configuration immediately, instead of
+ * waiting for the configuration source, and revalidate against the source in the background. The file is replaced
+ * atomically whenever the configuration changes, so a process that crashes while writing it never leaves a corrupt
+ * snapshot behind.
+ */
+public class SnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x44435331; // "DCS1".
+
+    private final Path file;
+
+    // Version tokens of the parts currently stored in the snapshot file.
+    private Map<String, String> storedVersions = Collections.emptyMap();
+
+    /**
+     * Construct a new {@link SnapshotStore}.
+     *
+     * @param file Path of the snapshot file. It need not exist yet.
+     */
+    public SnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the snapshot file.
+     *
+     * @return Raw source per configuration part name. Empty if no (valid) snapshot exists.
+     */
+    public synchronized Map<String, byte[]> read() {
+        if (!Files.isRegularFile(file)) return Collections.emptyMap();
+
+        Map<String, byte[]> parts = new HashMap<>();
+        Map<String, String> versions = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a configuration snapshot.");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String version = in.readUTF();
+                byte[] source = new byte[in.readInt()];
+                in.readFully(source);
+                if (!version.equals(versionOf(source))) throw new IOException("Version mismatch for part " + name + ".");
+
+                parts.put(name, source);
+                versions.put(name, version);
+            }
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable configuration snapshot {}.", file, e);
+            return Collections.emptyMap();
+        }
+
+        storedVersions = versions;
+        return parts;
+    }
+
+    /**
+     * Replace the snapshot file, unless the version tokens of all configuration parts match those of the parts already
+     * stored.
+     *
+     * @param parts Raw source per configuration part name.
+     */
+    public synchronized void write(Map<String, byte[]> parts) {
+        if (parts.isEmpty()) return;
+
+        Map<String, String> versions = new TreeMap<>();
+        parts.forEach((name, source) -> versions.put(name, versionOf(source)));
+        if (versions.equals(storedVersions)) return;
+
+        Path temp = null;
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(versions.size());
+                for (Map.Entry<String, String> entry : versions.entrySet()) {
+                    byte[] source = parts.get(entry.getKey());
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                    out.writeInt(source.length);
+                    out.write(source);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write configuration snapshot {}.", file, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Nothing to be done.
+                }
+            }
+            return;
+        }
+
+        long changed = versions.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(storedVersions.get(entry.getKey())))
+                .count();
+        logger.info("Configuration snapshot {} updated ({} of {} parts changed).", file, changed, versions.size());
+        storedVersions = versions;
+    }
+
+    /**
+     * Compute the version token of a configuration part.
+     *
+     * @param source Raw source.
+     * @return Version token.
+     */
+    static String versionOf(byte[] source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(source);
+        StringBuilder builder = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Connection that serves configuration parts from a snapshot.
+     */
+    static class SnapshotConnection implements ConfigurationConnection {
+        private final Map<String, byte[]> parts;
+
+        SnapshotConnection(Map<String, byte[]> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public void listen(String name) {
+            // A snapshot does not change.
+        }
+
+        @Override
+        public void stopListening(String name) {
+            // A snapshot does not change.
+        }
+
+        @Override
+        public InputStream load(String name) throws ConfigurationException {
+            byte[] source = parts.get(name);
+            if (source == null) throw new ConfigurationException("Configuration part not in snapshot: " + name + ".");
+            return new ByteArrayInputStream(source);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close.
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * JVM-wide pool of weakly referenced strings, used by the deserializers for configuration key names and short string
+ * values.
+ * <p>
+ * The same names and values (such as {@code timeout}, host names, and enumeration values) turn up in many
+ * configuration parts, and again every time a part is reloaded. Pooling them means that all configuration trees, and
+ * every generation of them, share a single instance of each. A pooled string is kept for as long as any of them use
+ * it. Strings longer than {@link #MAX_LENGTH} are not pooled, because they are rarely repeated.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class StringPool {
+    /**
+     * Strings longer than this are returned as is.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private static final int STRIPES = 16;
+    private static final Stripe[] POOL = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            POOL[i] = new Stripe();
+        }
+    }
+
+    private StringPool() {
+        // Static utility class.
+    }
+
+    /**
+     * Get the pooled instance of a string.
+     *
+     * @param string String, may be {@code null}.
+     * @return The pooled instance equal to {@code string}, or {@code string} itself if it was not pooled yet or is
+     * too long to pool.
+     */
+    public static String intern(String string) {
+        if (string == null || string.length() > MAX_LENGTH) return string;
+
+        int hash = string.hashCode();
+        return stripeFor(hash).intern(string, hash);
+    }
+
+    /**
+     * Get the pooled instance of a string held in a character buffer, without creating a new string if it is already
+     * pooled. This suits parsers that expose their text buffer.
+     *
+     * @param chars  Character buffer.
+     * @param offset Offset of the string in the buffer.
+     * @param length Length of the string.
+     * @return The pooled string.
+     */
+    public static String intern(char[] chars, int offset, int length) {
+        if (length > MAX_LENGTH) return new String(chars, offset, length);
+
+        // Same as String#hashCode.
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return stripeFor(hash).intern(chars, offset, length, hash);
+    }
+
+    /**
+     * Pool the value if it is a string.
+     *
+     * @param value Any value.
+     * @return The pooled string if {@code value} is a string, otherwise {@code value} itself.
+     */
+    public static Object internValue(Object value) {
+        return value instanceof String ? intern((String) value) : value;
+    }
+
+    /**
+     * @return The number of strings in the pool, including those that were garbage collected but not removed yet.
+     */
+    static int size() {
+        int size = 0;
+        for (Stripe stripe : POOL) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static Stripe stripeFor(int hash) {
+        // Use the high bits of a mixed hash, so the stripes do not all use the same buckets of their table.
+        return POOL[(hash * 0x9E3779B9) >>> 28];
+    }
+
+    /**
+     * Part of the pool; a hash table of weak references.
+     */
+    private static class Stripe {
+        private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+        private Entry[] table = new Entry[64];
+        private int size = 0;
+
+        synchronized String intern(String string, int hash) {
+            expungeCollected();
+            for (Entry entry = table[indexFor(hash, table.length)]; entry != null; entry = entry.next) {
+                if (entry.hash != hash) continue;
+                String pooled = entry.get();
+                if (string.equals(pooled)) return pooled;
+            }
+            add(string, hash);
+            return string;
+        }
+
+        synchronized String intern(char[] chars, int offset, int length, int hash) {
+            expungeCollected();
+            for (Entry entry = table[indexFor(hash, table.length)]; entry != null; entry = entry.next) {
+                if (entry.hash != hash) continue;
+                String pooled = entry.get();
+                if (pooled != null && contentEquals(pooled, chars, offset, length)) return pooled;
+            }
+            String string = new String(chars, offset, length);
+            add(string, hash);
+            return string;
+        }
+
+        synchronized int size() {
+            expungeCollected();
+            return size;
+        }
+
+        private void add(String string, int hash) {
+            if (size >= table.length * 3 / 4) resize();
+            int index = indexFor(hash, table.length);
+            table[index] = new Entry(string, hash, table[index], collected);
+            size++;
+        }
+
+        private void resize() {
+            Entry[] resized = new Entry[table.length * 2];
+            for (Entry head : table) {
+                Entry entry = head;
+                while (entry != null) {
+                    Entry next = entry.next;
+                    int index = indexFor(entry.hash, resized.length);
+                    entry.next = resized[index];
+                    resized[index] = entry;
+                    entry = next;
+                }
+            }
+            table = resized;
+        }
+
+        private void expungeCollected() {
+            Object reference;
+            while ((reference = collected.poll()) != null) {
+                Entry stale = (Entry) reference;
+                int index = indexFor(stale.hash, table.length);
+                Entry previous = null;
+                for (Entry entry = table[index]; entry != null; previous = entry, entry = entry.next) {
+                    if (entry != stale) continue;
+                    if (previous == null) {
+                        table[index] = entry.next;
+                    } else {
+                        previous.next = entry.next;
+                    }
+                    size--;
+                    break;
+                }
+            }
+        }
+
+        private static int indexFor(int hash, int length) {
+            return (hash ^ (hash >>> 16)) & (length - 1);
+        }
+
+        private static boolean contentEquals(String string, char[] chars, int offset, int length) {
+            if (string.length() != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (string.charAt(i) != chars[offset + i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class Entry extends WeakReference<String> {
+        final int hash;
+        Entry next;
+
+        Entry(String string, int hash, Entry next, ReferenceQueue<String> queue) {
+            super(string, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
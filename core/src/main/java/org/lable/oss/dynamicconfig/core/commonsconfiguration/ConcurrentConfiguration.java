@@ -17,11 +17,17 @@ package org.lable.oss.dynamicconfig.core.commonsconfiguration;
 
 import org.apache.commons.configuration.CombinedConfiguration;
 import org.apache.commons.configuration.Configuration;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationSerializer;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -30,8 +36,15 @@ import java.util.function.Consumer;
 
 /**
  * Provides thread safe access to a {@link CombinedConfiguration} instance.
+ * <p>
+ * Optionally, reads are served from a {@link CompactConfiguration} copy of the combined configuration instead. This
+ * copy is replaced after every modification, and reading it requires no locking. Without that option, the copy is
+ * only made once a {@link #snapshot()} has been requested: the first request makes it on demand, and from then on
+ * every modification replaces it, so later snapshots are a single volatile read. Applications that never take a
+ * snapshot never pay for the copy. Only snapshots and the methods documented as using one (such as
+ * {@link #select(String)}) read from that copy; the other getters keep reading the combined configuration.
  */
-public class ConcurrentConfiguration implements Configuration {
+public class ConcurrentConfiguration implements Configuration, SnapshotSource {
     public static final String MODIFICATION_TIMESTAMP = "dc.last-modified-at";
 
     // This lock allows for multiple concurrent readers, but if a write-lock is acquired no other threads can read or
@@ -41,25 +54,191 @@ public class ConcurrentConfiguration implements Configuration {
     private final Lock writeLock = lock.writeLock();
 
     final CombinedConfiguration wrapped;
+    final boolean compactReadPath;
+    // Immutable copy of the current configuration, set after every modification if the compact read path is used.
+    // While set, reads are served from it.
+    private volatile CompactConfiguration compact;
+    // Immutable copy of the current configuration returned by #snapshot(). Reads only use it when it is also the
+    // compact copy. Null while stale, when no copy has been made since the last modification.
+    private volatile CompactConfiguration snapshot;
+    // Set by the first #snapshot(); from then on, every modification makes the copy.
+    private volatile boolean snapshotsWanted = false;
 
     final static String NO_MODIFICATION_MESSAGE =
             "This configuration class does not permit modification, " +
             "except through #withConfiguration.";
 
     public ConcurrentConfiguration(CombinedConfiguration wrapped) {
+        this(wrapped, false);
+    }
+
+    /**
+     * Construct a new ConcurrentConfiguration.
+     *
+     * @param wrapped         Combined configuration.
+     * @param compactReadPath If true, serve reads from a compact immutable copy of the combined configuration.
+     */
+    public ConcurrentConfiguration(CombinedConfiguration wrapped, boolean compactReadPath) {
         this.wrapped = wrapped;
+        this.compactReadPath = compactReadPath;
     }
+
     public void withConfiguration(Consumer<CombinedConfiguration> consumer) {
         writeLock.lock();
         try {
             consumer.accept(wrapped);
+            boolean copy = compactReadPath || snapshotsWanted;
+            // Rebuild the combined node structure before marking the modification, so the timestamp is part of the
+            // structure the compact copy is made from and that #serialize reads.
+            if (copy) wrapped.invalidate();
             // Mark the time of modification.
             markAsModified();
+            if (copy) {
+                // Copy here, on the thread applying the modification, so taking a snapshot does not have to.
+                CompactConfiguration compactCopy = CompactConfiguration.of(wrapped.getRootNode());
+                snapshot = compactCopy;
+                if (compactReadPath) compact = compactCopy;
+            } else {
+                snapshot = null;
+            }
         } finally {
             writeLock.unlock();
         }
     }
 
+    /**
+     * Get an immutable snapshot of the current configuration. All calls between two modifications return the same
+     * instance.
+     * <p>
+     * The first call makes the copy on demand, holding the read lock, so it takes time proportional to the size of the
+     * configuration and builds any deferred nodes (see {@link org.lable.oss.dynamicconfig.core.spi.DeferredNode}).
+     * From then on every modification makes the copy on the thread applying it, and this method only reads a volatile
+     * field. With the compact read path (see
+     * {@link org.lable.oss.dynamicconfig.core.ConfigurationLoader#COMPACT_PROPERTY}), every modification makes the
+     * copy from the start.
+     *
+     * @return The current configuration.
+     */
+    @Override
+    public CompactConfiguration snapshot() {
+        CompactConfiguration snapshot = this.snapshot;
+        if (snapshot != null) return snapshot;
+
+        snapshotsWanted = true;
+        readLock.lock();
+        try {
+            // Another reader may have made the copy while this thread waited for the lock.
+            snapshot = this.snapshot;
+            if (snapshot == null) {
+                snapshot = CompactConfiguration.of(wrapped.getRootNode());
+                this.snapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Get the values of the keys matching a pattern, such as {@code tenants.*.limits.rps}, from the current snapshot.
+     * See {@link CompactConfiguration#select(String)}.
+     *
+     * @param pattern Key pattern.
+     * @return An immutable map of the matching keys to their values.
+     */
+    public Map<String, Object> select(String pattern) {
+        return snapshot().select(pattern);
+    }
+
+    /**
+     * Get the values of several keys from one snapshot, so they are consistent with each other. See
+     * {@link CompactConfiguration#getAll(String...)}.
+     *
+     * @param keys Configuration keys.
+     * @return The values, in the same order as the keys.
+     */
+    public Object[] getAll(String... keys) {
+        return snapshot().getAll(keys);
+    }
+
+    /**
+     * Get the values of several keys from one snapshot into an array supplied by the caller. See
+     * {@link CompactConfiguration#getAll(String[], Object[])}.
+     *
+     * @param keys   Configuration keys.
+     * @param values Array that receives the values, at the same positions as the keys.
+     */
+    public void getAll(String[] keys, Object[] values) {
+        snapshot().getAll(keys, values);
+    }
+
+    /**
+     * Get several keys as {@code int} values from one snapshot. See
+     * {@link CompactConfiguration#getInts(String[], int[], int)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getInts(String[] keys, int[] values, int defaultValue) {
+        snapshot().getInts(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code long} values from one snapshot. See
+     * {@link CompactConfiguration#getLongs(String[], long[], long)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getLongs(String[] keys, long[] values, long defaultValue) {
+        snapshot().getLongs(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code double} values from one snapshot. See
+     * {@link CompactConfiguration#getDoubles(String[], double[], double)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getDoubles(String[] keys, double[] values, double defaultValue) {
+        snapshot().getDoubles(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code boolean} values from one snapshot. See
+     * {@link CompactConfiguration#getBooleans(String[], boolean[], boolean)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getBooleans(String[] keys, boolean[] values, boolean defaultValue) {
+        snapshot().getBooleans(keys, values, defaultValue);
+    }
+
+    /**
+     * Serialize the current configuration, without copying it first. Modifications wait until serialization has
+     * finished, so this is suitable for occasional use such as debug endpoints.
+     *
+     * @param serializer    Serializer.
+     * @param output        Output stream where the serialized data will be written to.
+     * @param humanReadable Optimize the output for human readability (e.g., apply formatting).
+     * @throws ConfigurationException Thrown when serialization fails.
+     */
+    public void serialize(HierarchicalConfigurationSerializer serializer, OutputStream output, boolean humanReadable)
+            throws ConfigurationException {
+        readLock.lock();
+        try {
+            serializer.serialize(wrapped, output, humanReadable);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     void markAsModified() {
         wrapped.setProperty(MODIFICATION_TIMESTAMP, System.nanoTime());
     }
@@ -94,8 +273,19 @@ public class ConcurrentConfiguration implements Configuration {
      * The same couple of lines are repeated for each method, simply passing the call on to the wrapped instance.
      */
 
+    /**
+     * Get a subset of the configuration. With the compact read path this is a view of the copy made after the last
+     * modification, so it does not reflect later modifications. Otherwise it is a live view of the combined
+     * configuration, as returned by {@link CombinedConfiguration#subset(String)}.
+     *
+     * @param prefix Prefix of the keys of the subset.
+     * @return The subset.
+     */
     @Override
     public Configuration subset(String prefix) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.subset(prefix);
+
         readLock.lock();
         try {
             return wrapped.subset(prefix);
@@ -106,6 +296,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public boolean isEmpty() {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.isEmpty();
+
         readLock.lock();
         try {
             return wrapped.isEmpty();
@@ -116,6 +309,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public boolean containsKey(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.containsKey(key);
+
         readLock.lock();
         try {
             return wrapped.containsKey(key);
@@ -126,6 +322,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Object getProperty(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getProperty(key);
+
         readLock.lock();
         try {
             return wrapped.getProperty(key);
@@ -136,6 +335,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Iterator<String> getKeys(String prefix) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getKeys(prefix);
+
         readLock.lock();
         try {
             return wrapped.getKeys(prefix);
@@ -146,6 +348,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Iterator<String> getKeys() {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getKeys();
+
         readLock.lock();
         try {
             return wrapped.getKeys();
@@ -156,6 +361,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Properties getProperties(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getProperties(key);
+
         readLock.lock();
         try {
             return wrapped.getProperties(key);
@@ -166,6 +374,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public boolean getBoolean(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBoolean(key);
+
         readLock.lock();
         try {
             return wrapped.getBoolean(key);
@@ -176,6 +387,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public boolean getBoolean(String key, boolean defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBoolean(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getBoolean(key, defaultValue);
@@ -186,6 +400,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Boolean getBoolean(String key, Boolean defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBoolean(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getBoolean(key, defaultValue);
@@ -196,6 +413,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public byte getByte(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getByte(key);
+
         readLock.lock();
         try {
             return wrapped.getByte(key);
@@ -206,6 +426,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public byte getByte(String key, byte defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getByte(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getByte(key, defaultValue);
@@ -216,6 +439,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Byte getByte(String key, Byte defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getByte(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getByte(key, defaultValue);
@@ -226,6 +452,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public double getDouble(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getDouble(key);
+
         readLock.lock();
         try {
             return wrapped.getDouble(key);
@@ -236,6 +465,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public double getDouble(String key, double defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getDouble(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getDouble(key, defaultValue);
@@ -246,6 +478,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Double getDouble(String key, Double defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getDouble(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getDouble(key, defaultValue);
@@ -256,6 +491,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public float getFloat(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getFloat(key);
+
         readLock.lock();
         try {
             return wrapped.getFloat(key);
@@ -266,6 +504,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public float getFloat(String key, float defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getFloat(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getFloat(key, defaultValue);
@@ -276,6 +517,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Float getFloat(String key, Float defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getFloat(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getFloat(key, defaultValue);
@@ -286,6 +530,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public int getInt(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getInt(key);
+
         readLock.lock();
         try {
             return wrapped.getInt(key);
@@ -296,6 +543,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public int getInt(String key, int defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getInt(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getInt(key, defaultValue);
@@ -306,6 +556,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Integer getInteger(String key, Integer defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getInteger(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getInteger(key, defaultValue);
@@ -316,6 +569,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public long getLong(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getLong(key);
+
         readLock.lock();
         try {
             return wrapped.getLong(key);
@@ -326,6 +582,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public long getLong(String key, long defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getLong(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getLong(key, defaultValue);
@@ -336,6 +595,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Long getLong(String key, Long defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getLong(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getLong(key, defaultValue);
@@ -346,6 +608,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public short getShort(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getShort(key);
+
         readLock.lock();
         try {
             return wrapped.getShort(key);
@@ -356,6 +621,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public short getShort(String key, short defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getShort(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getShort(key, defaultValue);
@@ -366,6 +634,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public Short getShort(String key, Short defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getShort(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getShort(key, defaultValue);
@@ -376,6 +647,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public BigDecimal getBigDecimal(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBigDecimal(key);
+
         readLock.lock();
         try {
             return wrapped.getBigDecimal(key);
@@ -386,6 +660,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public BigDecimal getBigDecimal(String key, BigDecimal defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBigDecimal(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getBigDecimal(key, defaultValue);
@@ -396,6 +673,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public BigInteger getBigInteger(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBigInteger(key);
+
         readLock.lock();
         try {
             return wrapped.getBigInteger(key);
@@ -406,6 +686,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public BigInteger getBigInteger(String key, BigInteger defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getBigInteger(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getBigInteger(key, defaultValue);
@@ -416,6 +699,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public String getString(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getString(key);
+
         readLock.lock();
         try {
             return wrapped.getString(key);
@@ -426,6 +712,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public String getString(String key, String defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getString(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getString(key, defaultValue);
@@ -436,6 +725,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public String[] getStringArray(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getStringArray(key);
+
         readLock.lock();
         try {
             return wrapped.getStringArray(key);
@@ -446,6 +738,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public List<Object> getList(String key) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getList(key);
+
         readLock.lock();
         try {
             return wrapped.getList(key);
@@ -456,6 +751,9 @@ public class ConcurrentConfiguration implements Configuration {
 
     @Override
     public List<Object> getList(String key, List<?> defaultValue) {
+        CompactConfiguration compact = this.compact;
+        if (compact != null) return compact.getList(key, defaultValue);
+
         readLock.lock();
         try {
             return wrapped.getList(key, defaultValue);
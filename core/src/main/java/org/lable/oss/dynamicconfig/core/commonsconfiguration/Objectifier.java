@@ -50,6 +50,23 @@ public class Objectifier {
         }
     }
 
+    /**
+     * Group the children of a node by name, in order of first appearance. Children sharing a name represent a list,
+     * as they do in {@link #traverseTreeAndEmit(ConfigurationNode)}. Intended for serializers that walk the node tree
+     * directly.
+     *
+     * @param parent Node in the Config tree.
+     * @return Children per name.
+     */
+    public static Map<String, List<ConfigurationNode>> groupChildren(ConfigurationNode parent) {
+        Map<String, List<ConfigurationNode>> groups = new LinkedHashMap<>();
+        for (Object o : parent.getChildren()) {
+            ConfigurationNode child = (ConfigurationNode) o;
+            groups.computeIfAbsent(child.getName(), name -> new ArrayList<>(1)).add(child);
+        }
+        return groups;
+    }
+
     @SuppressWarnings("unchecked")
     static void addToMap(Map<String, Object> map, String nodeName, Object value) {
         if (map.containsKey(nodeName)) {
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.commonsconfiguration;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+
+import java.util.Collection;
+
+/**
+ * Read-only view of a {@link HierarchicalConfiguration}, sharing its node tree. Used where one parsed configuration
+ * part is shared by several consumers.
+ * <p>
+ * All mutating methods of the {@link org.apache.commons.configuration.Configuration} interface throw an
+ * {@link UnsupportedOperationException}. The node tree itself must not be modified by the code that created it either,
+ * once this view has been handed out.
+ */
+public class UnmodifiableHierarchicalConfiguration extends HierarchicalConfiguration {
+    final static String NO_MODIFICATION_MESSAGE = "This configuration is shared, and cannot be modified.";
+
+    private final boolean sealed;
+
+    public UnmodifiableHierarchicalConfiguration(HierarchicalConfiguration configuration) {
+        setRootNode(configuration.getRootNode());
+        setExpressionEngine(configuration.getExpressionEngine());
+        setDelimiterParsingDisabled(configuration.isDelimiterParsingDisabled());
+        this.sealed = true;
+    }
+
+    @Override
+    public void setRoot(Node node) {
+        if (sealed) throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+        super.setRoot(node);
+    }
+
+    @Override
+    public void setRootNode(ConfigurationNode rootNode) {
+        if (sealed) throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+        super.setRootNode(rootNode);
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object obj) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    public void addNodes(String key, Collection<? extends ConfigurationNode> nodes) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    public void clearProperty(String key) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    public void clearTree(String key) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+}
@@ -0,0 +1,892 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.compact;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.lable.oss.dynamicconfig.core.StringPool;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable, read-only {@link org.apache.commons.configuration.Configuration} backed by a compact copy of a
+ * configuration tree.
+ * <p>
+ * Instead of a {@link HierarchicalConfiguration.Node} object (with its own child and attribute lists) per key, the
+ * tree is stored as a handful of arrays indexed by node number. Children of a node are stored next to each other, so
+ * a node only needs the index of its first child and the number of children. Names and short string values are
+ * shared through {@link StringPool}, and numbers and booleans are stored unboxed. Attributes are not copied; the
+ * configuration trees built by this library have none.
+ * <p>
+ * Keys are resolved like {@link HierarchicalConfiguration} does with its default expression engine: {@code .}
+ * separates the names of the nodes in the path, {@code ..} escapes a dot in a name, and {@code (n)} selects the
+ * n-th of several nodes with the same name. Likewise, {@link #getProperty(String)} returns a list of values when
+ * a key matches more than one node. This class is thread-safe.
+ * <p>
+ * {@link #subset(String)} returns a view that shares the arrays of this configuration, rooted at the nodes matching
+ * the prefix, and {@link #getKeys(String)} only visits the nodes under the prefix.
+ */
+public class CompactConfiguration extends AbstractConfiguration {
+    static final byte NONE = 0;
+    static final byte STRING = 1;
+    static final byte INTEGER = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte BOOLEAN = 5;
+    static final byte OBJECT = 6;
+
+    // Selections beyond this number are not cached, in case patterns are built from untrusted input.
+    static final int MAX_CACHED_SELECTIONS = 256;
+
+    // Results of #findSingle(String) other than a node index.
+    static final int NOT_FOUND = -1;
+    static final int UNRESOLVED = -2;
+
+    // Node 0 is the root node.
+    final String[] names;
+    final int[] firstChild;
+    final int[] childCount;
+    // Per node: the children of its parent, sorted by name. Used for binary search.
+    final int[] byName;
+    final byte[] types;
+    // Per node: index into either 'numbers' or 'objects', depending on the type.
+    final int[] valueIndex;
+    final long[] numbers;
+    final Object[] objects;
+    // Nodes that form the root of this configuration: node 0, or the nodes matched by the prefix of a subset.
+    final int[] roots;
+    final boolean empty;
+
+    // Children of a node, computed on first use and shared with subsets. See #childKeys(String) and
+    // #childMap(String).
+    private final ConcurrentMap<Integer, Set<String>> childKeysByNode;
+    private final ConcurrentMap<Integer, Map<String, Configuration>> childMapsByNode;
+    // Results of #select(String), per pattern.
+    private final ConcurrentMap<String, Map<String, Object>> selections = new ConcurrentHashMap<>();
+
+    CompactConfiguration(String[] names,
+                         int[] firstChild,
+                         int[] childCount,
+                         byte[] types,
+                         int[] valueIndex,
+                         long[] numbers,
+                         Object[] objects) {
+        this.names = names;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.types = types;
+        this.valueIndex = valueIndex;
+        this.numbers = numbers;
+        this.objects = objects;
+        this.byName = sortChildrenByName(names, firstChild, childCount);
+        this.roots = new int[]{0};
+        this.childKeysByNode = new ConcurrentHashMap<>();
+        this.childMapsByNode = new ConcurrentHashMap<>();
+
+        boolean empty = true;
+        for (byte type : types) {
+            if (type != NONE) {
+                empty = false;
+                break;
+            }
+        }
+        this.empty = empty;
+    }
+
+    /**
+     * Construct a view of a configuration, rooted at some of its nodes.
+     *
+     * @param configuration Configuration.
+     * @param roots         Root nodes of the view.
+     */
+    private CompactConfiguration(CompactConfiguration configuration, int[] roots) {
+        this.names = configuration.names;
+        this.firstChild = configuration.firstChild;
+        this.childCount = configuration.childCount;
+        this.byName = configuration.byName;
+        this.types = configuration.types;
+        this.valueIndex = configuration.valueIndex;
+        this.numbers = configuration.numbers;
+        this.objects = configuration.objects;
+        this.roots = roots;
+        this.childKeysByNode = configuration.childKeysByNode;
+        this.childMapsByNode = configuration.childMapsByNode;
+
+        boolean empty = true;
+        for (int root : roots) {
+            if (holdsValues(root)) {
+                empty = false;
+                break;
+            }
+        }
+        this.empty = empty;
+    }
+
+    /**
+     * Create a compact copy of a configuration.
+     *
+     * @param configuration Configuration.
+     * @return The compact copy.
+     */
+    public static CompactConfiguration of(HierarchicalConfiguration configuration) {
+        return of(configuration.getRootNode());
+    }
+
+    /**
+     * Create a compact copy of a configuration tree.
+     *
+     * @param root Root node of the configuration tree.
+     * @return The compact copy.
+     */
+    public static CompactConfiguration of(ConfigurationNode root) {
+        return new Builder(root).build();
+    }
+
+    /**
+     * Merge configuration trees into a single compact configuration tree, with the same semantics as
+     * {@link org.apache.commons.configuration.tree.OverrideCombiner} applied to the trees in order (as
+     * {@link org.apache.commons.configuration.CombinedConfiguration} does). Trees earlier in the list take
+     * precedence over later ones.
+     *
+     * @param roots Root nodes of the configuration trees.
+     * @return The merged compact configuration.
+     */
+    public static CompactConfiguration merge(List<ConfigurationNode> roots) {
+        return new Builder(roots).build();
+    }
+
+    /**
+     * @return The number of nodes in the tree, including the root node. For a subset, this is the size of the tree
+     * it is a view of.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return getProperty(key) != null;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        // Most keys match a single node, which can be found without allocating.
+        int match = findSingle(key);
+        if (match >= 0) return valueOf(match);
+        if (match == NOT_FOUND) return null;
+
+        int[] nodes = find(key);
+        Object single = null;
+        List<Object> values = null;
+        for (int node : nodes) {
+            Object value = valueOf(node);
+            if (value == null) continue;
+            if (single == null && values == null) {
+                single = value;
+            } else {
+                if (values == null) {
+                    values = new ArrayList<>();
+                    values.add(single);
+                }
+                values.add(value);
+            }
+        }
+        return values == null ? single : values;
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int root : roots) {
+            collectKeys(root, null, keys);
+        }
+        return Collections.unmodifiableSet(keys).iterator();
+    }
+
+    /**
+     * Get the keys equal to or starting with a prefix. Only the nodes under the prefix are visited.
+     *
+     * @param prefix Prefix.
+     * @return The keys, in tree order.
+     */
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return getKeys();
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (int node : find(prefix)) {
+            collectKeys(node, prefix, keys);
+        }
+        return Collections.unmodifiableSet(keys).iterator();
+    }
+
+    /**
+     * Get a view of the nodes under a prefix. The view shares the data of this configuration; creating it only
+     * resolves the prefix.
+     *
+     * @param prefix Prefix.
+     * @return An immutable configuration containing the keys under the prefix, relative to it.
+     */
+    @Override
+    public CompactConfiguration subset(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return this;
+        return new CompactConfiguration(this, find(prefix));
+    }
+
+    /**
+     * Get the names of the children of a node that hold a value, either themselves or further down the tree. The
+     * names are escaped as they would be in a key. This is the same as taking the first part of each key of
+     * {@code subset(parent)}, but the result is computed once per node and cached.
+     *
+     * @param parent Key of the parent node, or an empty string for the root node.
+     * @return An immutable set of child names, in tree order.
+     */
+    public Set<String> childKeys(String parent) {
+        int[] nodes = find(parent);
+        if (nodes.length != 1) return childKeysOf(nodes);
+        return childKeysByNode.computeIfAbsent(nodes[0], node -> childKeysOf(nodes));
+    }
+
+    /**
+     * Get the children of a node that hold a value, either themselves or further down the tree, mapped to a subset of
+     * this configuration for each child. The map is computed once per node and cached.
+     *
+     * @param parent Key of the parent node, or an empty string for the root node.
+     * @return An immutable map of child names to subsets, in tree order.
+     */
+    public Map<String, Configuration> childMap(String parent) {
+        int[] nodes = find(parent);
+        if (nodes.length != 1) return childMapOf(nodes);
+        return childMapsByNode.computeIfAbsent(nodes[0], node -> childMapOf(nodes));
+    }
+
+    /**
+     * Get the values of several keys.
+     *
+     * @param keys Configuration keys.
+     * @return The values, in the same order as the keys; see {@link #getProperty(String)}.
+     */
+    public Object[] getAll(String... keys) {
+        Object[] values = new Object[keys.length];
+        getAll(keys, values);
+        return values;
+    }
+
+    /**
+     * Get the values of several keys into an array supplied by the caller. Keys that resolve to a single node, which
+     * is the common case, are looked up without creating objects.
+     *
+     * @param keys   Configuration keys.
+     * @param values Array that receives the values, at the same positions as the keys. Must be at least as long as
+     *               {@code keys}.
+     */
+    public void getAll(String[] keys, Object[] values) {
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = getProperty(keys[i]);
+        }
+    }
+
+    /**
+     * Get several keys as {@code int} values into an array supplied by the caller. Numeric values are read without
+     * boxing; other values are converted as {@link #getInt(String, int)} does.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     * @throws ConversionException Thrown when a numeric value does not fit in an {@code int}.
+     */
+    public void getInts(String[] keys, int[] values, int defaultValue) {
+        for (int i = 0; i < keys.length; i++) {
+            int node = findSingle(keys[i]);
+            if (node == NOT_FOUND) {
+                values[i] = defaultValue;
+            } else if (node >= 0 && (types[node] == INTEGER || types[node] == LONG)) {
+                long value = numbers[valueIndex[node]];
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new ConversionException('\'' + keys[i] + "' doesn't map to an Integer object");
+                }
+                values[i] = (int) value;
+            } else {
+                values[i] = getInt(keys[i], defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Get several keys as {@code long} values into an array supplied by the caller. Numeric values are read without
+     * boxing; other values are converted as {@link #getLong(String, long)} does.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getLongs(String[] keys, long[] values, long defaultValue) {
+        for (int i = 0; i < keys.length; i++) {
+            int node = findSingle(keys[i]);
+            if (node == NOT_FOUND) {
+                values[i] = defaultValue;
+            } else if (node >= 0 && (types[node] == INTEGER || types[node] == LONG)) {
+                values[i] = numbers[valueIndex[node]];
+            } else {
+                values[i] = getLong(keys[i], defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Get several keys as {@code double} values into an array supplied by the caller. Numeric values are read without
+     * boxing; other values are converted as {@link #getDouble(String, double)} does.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getDoubles(String[] keys, double[] values, double defaultValue) {
+        for (int i = 0; i < keys.length; i++) {
+            int node = findSingle(keys[i]);
+            if (node == NOT_FOUND) {
+                values[i] = defaultValue;
+            } else if (node >= 0 && types[node] == DOUBLE) {
+                values[i] = Double.longBitsToDouble(numbers[valueIndex[node]]);
+            } else if (node >= 0 && (types[node] == INTEGER || types[node] == LONG)) {
+                values[i] = numbers[valueIndex[node]];
+            } else {
+                values[i] = getDouble(keys[i], defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Get several keys as {@code boolean} values into an array supplied by the caller. Boolean values are read
+     * without boxing; other values are converted as {@link #getBoolean(String, boolean)} does.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getBooleans(String[] keys, boolean[] values, boolean defaultValue) {
+        for (int i = 0; i < keys.length; i++) {
+            int node = findSingle(keys[i]);
+            if (node == NOT_FOUND) {
+                values[i] = defaultValue;
+            } else if (node >= 0 && types[node] == BOOLEAN) {
+                values[i] = numbers[valueIndex[node]] != 0;
+            } else {
+                values[i] = getBoolean(keys[i], defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Get the values of the keys matching a pattern. The pattern is a key in which {@code *} can be used in place of
+     * a node name to match all children of a node, for example {@code tenants.*.limits.rps}. The result is computed
+     * from the node tree, without inspecting other keys, and cached.
+     * <p>
+     * Keys matching more than one node (when a node has several children of the same name) are mapped to a list of
+     * values, just like {@link #getProperty(String)} returns.
+     *
+     * @param pattern Key pattern.
+     * @return An immutable map of the matching keys that have a value to their values, in tree order.
+     */
+    public Map<String, Object> select(String pattern) {
+        Map<String, Object> selection = selections.get(pattern);
+        if (selection != null) return selection;
+
+        selection = selectUncached(pattern);
+        if (selections.size() < MAX_CACHED_SELECTIONS) selections.putIfAbsent(pattern, selection);
+        return selection;
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object value) {
+        throw new UnsupportedOperationException("A compact configuration is read-only.");
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key) {
+        throw new UnsupportedOperationException("A compact configuration is read-only.");
+    }
+
+    Object valueOf(int node) {
+        switch (types[node]) {
+            case STRING:
+            case OBJECT:
+                return objects[valueIndex[node]];
+            case INTEGER:
+                return (int) numbers[valueIndex[node]];
+            case LONG:
+                return numbers[valueIndex[node]];
+            case DOUBLE:
+                return Double.longBitsToDouble(numbers[valueIndex[node]]);
+            case BOOLEAN:
+                return numbers[valueIndex[node]] != 0;
+            default:
+                return null;
+        }
+    }
+
+    Set<String> childKeysOf(int[] parents) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int parent : parents) {
+            int first = firstChild[parent];
+            for (int child = first; child < first + childCount[parent]; child++) {
+                if (holdsValues(child)) keys.add(names[child].replace(".", ".."));
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    Map<String, Configuration> childMapOf(int[] parents) {
+        Map<String, Configuration> map = new LinkedHashMap<>();
+        for (String child : childKeysOf(parents)) {
+            // Unescape the child key to get the node name.
+            map.put(child, new CompactConfiguration(this, children(parents, child.replace("..", "."), -1)));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    Map<String, Object> selectUncached(String pattern) {
+        List<Integer> nodes = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int root : roots) {
+            nodes.add(root);
+            keys.add(null);
+        }
+
+        for (String segment : segments(pattern)) {
+            List<Integer> nextNodes = new ArrayList<>();
+            List<String> nextKeys = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                int node = nodes.get(i);
+                String key = keys.get(i);
+                if (segment.equals("*")) {
+                    int first = firstChild[node];
+                    for (int child = first; child < first + childCount[node]; child++) {
+                        String name = names[child].replace(".", "..");
+                        nextNodes.add(child);
+                        nextKeys.add(key == null ? name : key + "." + name);
+                    }
+                } else {
+                    for (int child : children(new int[]{node}, segment.replace("..", "."))) {
+                        nextNodes.add(child);
+                        nextKeys.add(key == null ? segment : key + "." + segment);
+                    }
+                }
+            }
+            nodes = nextNodes;
+            keys = nextKeys;
+        }
+
+        Map<String, List<Object>> valuesByKey = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Object value = valueOf(nodes.get(i));
+            if (value != null) valuesByKey.computeIfAbsent(keys.get(i), key -> new ArrayList<>(1)).add(value);
+        }
+        Map<String, Object> selection = new LinkedHashMap<>();
+        valuesByKey.forEach((key, values) ->
+                selection.put(key, values.size() == 1 ? values.get(0) : Collections.unmodifiableList(values)));
+        return Collections.unmodifiableMap(selection);
+    }
+
+    /**
+     * Split a key into its segments, leaving escaped dots ({@code ..}) as they are.
+     *
+     * @param key Configuration key.
+     * @return The segments of the key.
+     */
+    static List<String> segments(String key) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = key.length();
+        for (int position = 0; position < length; position++) {
+            if (key.charAt(position) != '.') continue;
+            if (position + 1 < length && key.charAt(position + 1) == '.') {
+                position++;
+                continue;
+            }
+            segments.add(key.substring(start, position));
+            start = position + 1;
+        }
+        segments.add(key.substring(start));
+        return segments;
+    }
+
+    boolean holdsValues(int node) {
+        if (types[node] != NONE) return true;
+
+        int first = firstChild[node];
+        for (int child = first; child < first + childCount[node]; child++) {
+            if (holdsValues(child)) return true;
+        }
+        return false;
+    }
+
+    void collectKeys(int node, String key, Set<String> keys) {
+        if (types[node] != NONE && key != null) keys.add(key);
+
+        int first = firstChild[node];
+        for (int child = first; child < first + childCount[node]; child++) {
+            String name = names[child].replace(".", "..");
+            collectKeys(child, key == null ? name : key + "." + name, keys);
+        }
+    }
+
+    /**
+     * Find the node matching a key without creating any objects. Only keys without escaped dots or indices that match
+     * a single node are resolved this way.
+     *
+     * @param key Configuration key.
+     * @return The index of the matching node, {@link #NOT_FOUND} if there is none, or {@link #UNRESOLVED} if the key
+     * has to be resolved by {@link #find(String)}.
+     */
+    int findSingle(String key) {
+        if (key == null || key.isEmpty() || roots.length != 1) return UNRESOLVED;
+        if (key.indexOf('(') >= 0 || key.contains("..")) return UNRESOLVED;
+
+        int node = roots[0];
+        int start = 0;
+        int length = key.length();
+        while (true) {
+            int end = key.indexOf('.', start);
+            if (end < 0) end = length;
+
+            // Lower bound of the segment in the children sorted by name.
+            int low = firstChild[node];
+            int high = low + childCount[node];
+            int limit = high;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareName(names[byName[middle]], key, start, end) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (low == limit || compareName(names[byName[low]], key, start, end) != 0) return NOT_FOUND;
+            // Several children with this name; find(String) collects them.
+            if (low + 1 < limit && compareName(names[byName[low + 1]], key, start, end) == 0) return UNRESOLVED;
+
+            node = byName[low];
+            if (end == length) return node;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Compare a name with a segment of a key, in the same order as {@link String#compareTo(String)}.
+     */
+    static int compareName(String name, String key, int start, int end) {
+        int segmentLength = end - start;
+        int common = Math.min(name.length(), segmentLength);
+        for (int i = 0; i < common; i++) {
+            char a = name.charAt(i);
+            char b = key.charAt(start + i);
+            if (a != b) return a - b;
+        }
+        return name.length() - segmentLength;
+    }
+
+    /**
+     * Find the nodes matching a key.
+     *
+     * @param key Configuration key.
+     * @return Indices of the matching nodes, in tree order.
+     */
+    int[] find(String key) {
+        int[] current = roots;
+        if (key == null || key.isEmpty()) return current;
+
+        int position = 0;
+        int length = key.length();
+        StringBuilder segment = new StringBuilder();
+        while (position <= length && current.length > 0) {
+            // Read the next segment, unescaping '..'.
+            segment.setLength(0);
+            while (position < length) {
+                char c = key.charAt(position);
+                if (c == '.') {
+                    if (position + 1 < length && key.charAt(position + 1) == '.') {
+                        segment.append('.');
+                        position += 2;
+                        continue;
+                    }
+                    break;
+                }
+                segment.append(c);
+                position++;
+            }
+            position++;
+
+            current = children(current, segment.toString());
+        }
+        return current;
+    }
+
+    /**
+     * Find the children matching a single, unescaped, key segment of a set of nodes.
+     *
+     * @param parents Parent nodes.
+     * @param segment Key segment; a name, optionally followed by an index such as {@code (1)}.
+     * @return The matching children.
+     */
+    int[] children(int[] parents, String segment) {
+        String name = segment;
+        int index = -1;
+        if (name.endsWith(")")) {
+            int open = name.lastIndexOf('(');
+            if (open > 0) {
+                try {
+                    index = Integer.parseInt(name.substring(open + 1, name.length() - 1));
+                    name = name.substring(0, open);
+                } catch (NumberFormatException e) {
+                    index = -1;
+                }
+            }
+        }
+        return children(parents, name, index);
+    }
+
+    /**
+     * Find the children with a name of a set of nodes.
+     *
+     * @param parents Parent nodes.
+     * @param name    Name of the children.
+     * @param index   Index of the child among those with the same name per parent, or -1 for all of them.
+     * @return The matching children.
+     */
+    int[] children(int[] parents, String name, int index) {
+        int[] result = new int[0];
+        int found = 0;
+        for (int parent : parents) {
+            int low = firstChild[parent];
+            int high = low + childCount[parent];
+            // Lower bound of the name in the children sorted by name.
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (names[byName[middle]].compareTo(name) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int end = firstChild[parent] + childCount[parent];
+            int matches = 0;
+            for (int i = low; i < end && names[byName[i]].equals(name); i++, matches++) {
+                if (index >= 0 && matches != index) continue;
+                if (found == result.length) result = Arrays.copyOf(result, Math.max(4, found * 2));
+                result[found++] = byName[i];
+            }
+        }
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+
+    static int[] sortChildrenByName(String[] names, int[] firstChild, int[] childCount) {
+        int[] byName = new int[names.length];
+        for (int i = 0; i < byName.length; i++) {
+            byName[i] = i;
+        }
+        for (int parent = 0; parent < names.length; parent++) {
+            int first = firstChild[parent];
+            int count = childCount[parent];
+            if (count < 2) continue;
+
+            // Stable, so children with the same name remain in tree order.
+            Integer[] range = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                range[i] = first + i;
+            }
+            Arrays.sort(range, Comparator.comparing(node -> names[node]));
+            for (int i = 0; i < count; i++) {
+                byName[first + i] = range[i];
+            }
+        }
+        return byName;
+    }
+
+    /**
+     * Builds a {@link CompactConfiguration} from one or more configuration trees.
+     */
+    static class Builder {
+        // Each entry is either a single ConfigurationNode, or a List of ConfigurationNodes merged into one node.
+        private final List<Object> nodes = new ArrayList<>();
+        private long[] numbers = new long[16];
+        private int numberCount = 0;
+        private final List<Object> objects = new ArrayList<>();
+
+        Builder(ConfigurationNode root) {
+            nodes.add(root);
+        }
+
+        Builder(List<ConfigurationNode> roots) {
+            if (roots.isEmpty()) {
+                nodes.add(new HierarchicalConfiguration.Node());
+            } else {
+                nodes.add(roots.size() == 1 ? roots.get(0) : new ArrayList<>(roots));
+            }
+        }
+
+        CompactConfiguration build() {
+            // Lay out the tree breadth-first, so the children of each node are adjacent.
+            int[] firstChild = new int[16];
+            int[] childCount = new int[16];
+            for (int i = 0; i < nodes.size(); i++) {
+                if (i == firstChild.length) {
+                    firstChild = Arrays.copyOf(firstChild, i * 2);
+                    childCount = Arrays.copyOf(childCount, i * 2);
+                }
+                Object entry = nodes.get(i);
+                firstChild[i] = nodes.size();
+                if (entry instanceof ConfigurationNode) {
+                    nodes.addAll(((ConfigurationNode) entry).getChildren());
+                } else {
+                    addMergedChildren(castToGroup(entry), nodes);
+                }
+                childCount[i] = nodes.size() - firstChild[i];
+            }
+
+            int size = nodes.size();
+            String[] names = new String[size];
+            byte[] types = new byte[size];
+            int[] valueIndex = new int[size];
+            for (int i = 0; i < size; i++) {
+                Object entry = nodes.get(i);
+                ConfigurationNode node = entry instanceof ConfigurationNode
+                        ? (ConfigurationNode) entry
+                        : castToGroup(entry).get(0);
+                if (i > 0) names[i] = StringPool.intern(node.getName());
+                Object value = entry instanceof ConfigurationNode ? node.getValue() : mergedValue(castToGroup(entry));
+                types[i] = typeOf(value);
+                valueIndex[i] = store(types[i], value);
+            }
+
+            return new CompactConfiguration(
+                    names,
+                    Arrays.copyOf(firstChild, size),
+                    Arrays.copyOf(childCount, size),
+                    types,
+                    valueIndex,
+                    Arrays.copyOf(numbers, numberCount),
+                    objects.toArray()
+            );
+        }
+
+        @SuppressWarnings("unchecked")
+        static List<ConfigurationNode> castToGroup(Object entry) {
+            return (List<ConfigurationNode>) entry;
+        }
+
+        static Object mergedValue(List<ConfigurationNode> group) {
+            for (ConfigurationNode node : group) {
+                if (node.getValue() != null) return node.getValue();
+            }
+            return null;
+        }
+
+        /**
+         * Determine the children of a node merged from several nodes, as {@code OverrideCombiner} would when
+         * combining these nodes one after the other. A child is merged with a child of the same name from a node with
+         * lower precedence only when both are the only child with that name. Otherwise the children of the node with
+         * lower precedence are only added if no child with that name exists yet.
+         *
+         * @param group Nodes being merged, in order of precedence.
+         * @param out   Receives the children; merged children are added as a list of nodes.
+         */
+        static void addMergedChildren(List<ConfigurationNode> group, List<Object> out) {
+            List<List<ConfigurationNode>> merged = new ArrayList<>();
+            Map<String, List<Integer>> mergedByName = new HashMap<>();
+            for (ConfigurationNode node : group) {
+                List<ConfigurationNode> children = node.getChildren();
+                if (children.isEmpty()) continue;
+
+                Map<String, Integer> counts = new HashMap<>();
+                for (ConfigurationNode child : children) {
+                    counts.merge(child.getName(), 1, Integer::sum);
+                }
+
+                List<ConfigurationNode> added = new ArrayList<>();
+                for (ConfigurationNode child : children) {
+                    List<Integer> existing = mergedByName.get(child.getName());
+                    if (existing == null) {
+                        added.add(child);
+                    } else if (existing.size() == 1 && counts.get(child.getName()) == 1) {
+                        merged.get(existing.get(0)).add(child);
+                    }
+                }
+                for (ConfigurationNode child : added) {
+                    mergedByName.computeIfAbsent(child.getName(), name -> new ArrayList<>()).add(merged.size());
+                    List<ConfigurationNode> mergedChild = new ArrayList<>();
+                    mergedChild.add(child);
+                    merged.add(mergedChild);
+                }
+            }
+
+            for (List<ConfigurationNode> mergedChild : merged) {
+                out.add(mergedChild.size() == 1 ? mergedChild.get(0) : mergedChild);
+            }
+        }
+
+        static byte typeOf(Object value) {
+            if (value == null) return NONE;
+            if (value instanceof String) return STRING;
+            if (value instanceof Integer) return INTEGER;
+            if (value instanceof Long) return LONG;
+            if (value instanceof Double) return DOUBLE;
+            if (value instanceof Boolean) return BOOLEAN;
+            return OBJECT;
+        }
+
+        int store(byte type, Object value) {
+            switch (type) {
+                case NONE:
+                    return -1;
+                case STRING:
+                    objects.add(StringPool.intern((String) value));
+                    return objects.size() - 1;
+                case OBJECT:
+                    // Lists are the only mutable values the deserializers produce.
+                    objects.add(value instanceof List
+                            ? Collections.unmodifiableList(new ArrayList<>((List<?>) value))
+                            : value);
+                    return objects.size() - 1;
+                case INTEGER:
+                case LONG:
+                    return storeNumber(((Number) value).longValue());
+                case DOUBLE:
+                    return storeNumber(Double.doubleToRawLongBits((Double) value));
+                case BOOLEAN:
+                    return storeNumber((Boolean) value ? 1 : 0);
+                default:
+                    throw new IllegalStateException("Unknown value type " + type + ".");
+            }
+        }
+
+        int storeNumber(long number) {
+            if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+            numbers[numberCount] = number;
+            return numberCount++;
+        }
+    }
+}
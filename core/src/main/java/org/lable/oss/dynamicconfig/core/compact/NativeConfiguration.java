@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.compact;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only {@link org.apache.commons.configuration.Configuration} whose contents are replaced as a whole.
+ * <p>
+ * Every new version of the configuration is merged into a {@link CompactConfiguration} (see
+ * {@link CompactConfiguration#merge(List)}) and published through a volatile field. Reads never lock: each read sees
+ * either the previous or the next version in full. This is the alternative to {@link
+ * org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration} wrapping a Commons Configuration
+ * {@link org.apache.commons.configuration.CombinedConfiguration}, which recombines its tree lazily under its own lock.
+ */
+public class NativeConfiguration extends AbstractConfiguration implements SnapshotSource {
+    static final String NO_MODIFICATION_MESSAGE = "This configuration class does not permit modification.";
+
+    private volatile CompactConfiguration current = CompactConfiguration.merge(Collections.emptyList());
+
+    /**
+     * Replace the configuration.
+     *
+     * @param roots Root nodes of the configuration trees to merge, in order of precedence.
+     */
+    public void update(List<ConfigurationNode> roots) {
+        update(CompactConfiguration.merge(roots));
+    }
+
+    /**
+     * Replace the configuration.
+     *
+     * @param configuration New configuration.
+     */
+    public void update(CompactConfiguration configuration) {
+        this.current = configuration;
+    }
+
+    /**
+     * @return The current version of the configuration. It is immutable, and remains valid after this configuration
+     * is updated.
+     */
+    @Override
+    public CompactConfiguration snapshot() {
+        return current;
+    }
+
+    /**
+     * Get the values of the keys matching a pattern, such as {@code tenants.*.limits.rps}, from the current version of
+     * the configuration. See {@link CompactConfiguration#select(String)}.
+     *
+     * @param pattern Key pattern.
+     * @return An immutable map of the matching keys to their values.
+     */
+    public Map<String, Object> select(String pattern) {
+        return current.select(pattern);
+    }
+
+    /**
+     * Get the values of several keys from the current version of the configuration, so they are consistent with
+     * each other. See {@link CompactConfiguration#getAll(String...)}.
+     *
+     * @param keys Configuration keys.
+     * @return The values, in the same order as the keys.
+     */
+    public Object[] getAll(String... keys) {
+        return current.getAll(keys);
+    }
+
+    /**
+     * Get the values of several keys from the current version of the configuration into an array supplied by the
+     * caller. See {@link CompactConfiguration#getAll(String[], Object[])}.
+     *
+     * @param keys   Configuration keys.
+     * @param values Array that receives the values, at the same positions as the keys.
+     */
+    public void getAll(String[] keys, Object[] values) {
+        current.getAll(keys, values);
+    }
+
+    /**
+     * Get several keys as {@code int} values from the current version of the configuration.
+     * See {@link CompactConfiguration#getInts(String[], int[], int)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getInts(String[] keys, int[] values, int defaultValue) {
+        current.getInts(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code long} values from the current version of the configuration. See
+     * {@link CompactConfiguration#getLongs(String[], long[], long)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getLongs(String[] keys, long[] values, long defaultValue) {
+        current.getLongs(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code double} values from the current version of the configuration. See
+     * {@link CompactConfiguration#getDoubles(String[], double[], double)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getDoubles(String[] keys, double[] values, double defaultValue) {
+        current.getDoubles(keys, values, defaultValue);
+    }
+
+    /**
+     * Get several keys as {@code boolean} values from the current version of the configuration. See
+     * {@link CompactConfiguration#getBooleans(String[], boolean[], boolean)}.
+     *
+     * @param keys         Configuration keys.
+     * @param values       Array that receives the values, at the same positions as the keys.
+     * @param defaultValue Value used for keys that are not set.
+     */
+    public void getBooleans(String[] keys, boolean[] values, boolean defaultValue) {
+        current.getBooleans(keys, values, defaultValue);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return current.containsKey(key);
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        return current.getProperty(key);
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        return current.getKeys();
+    }
+
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        return current.getKeys(prefix);
+    }
+
+    /**
+     * Get a view of the nodes under a prefix in the current version of the configuration. Unlike this configuration,
+     * the view is not updated when the configuration changes.
+     *
+     * @param prefix Prefix.
+     * @return An immutable configuration containing the keys under the prefix, relative to it.
+     */
+    @Override
+    public Configuration subset(String prefix) {
+        return current.subset(prefix);
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object value) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.compact;
+
+/**
+ * A configuration that can hand out immutable snapshots of its contents.
+ */
+public interface SnapshotSource {
+    /**
+     * Get the current contents of this configuration as an immutable {@link CompactConfiguration}. The snapshot is not
+     * affected by later updates, and can be read from any thread without synchronization.
+     *
+     * @return The current configuration.
+     */
+    CompactConfiguration snapshot();
+}
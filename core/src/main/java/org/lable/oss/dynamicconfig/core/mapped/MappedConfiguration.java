@@ -0,0 +1,395 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.mapped;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.lable.oss.dynamicconfig.core.mapped.MappedFormat.*;
+
+/**
+ * Read-only {@link org.apache.commons.configuration.Configuration} backed by a memory-mapped binary snapshot written
+ * by {@link MappedSnapshotWriter}.
+ * <p>
+ * Nothing is deserialized up front; keys are looked up by binary search over the sorted key table in the mapped file,
+ * and only the value requested is decoded. Because the file is mapped rather than read, all processes on a host that
+ * use the same snapshot share its pages. The structure of the file is validated once when it is mapped, so a corrupt
+ * file is rejected up front instead of failing lookups.
+ * <p>
+ * This is a standalone API: {@link org.lable.oss.dynamicconfig.core.ConfigurationLoader} does not read these files.
+ * <p>
+ * When the snapshot file is replaced (by an atomic rename), this class maps the new file. To keep lookups free of
+ * file system calls, it checks for a new file at most once per refresh interval. This class is thread-safe.
+ */
+public class MappedConfiguration extends AbstractConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(MappedConfiguration.class);
+
+    static final long DEFAULT_REFRESH_INTERVAL_MS = 1000;
+
+    private final Path file;
+    private final long refreshIntervalNanos;
+
+    private volatile Snapshot snapshot;
+    private volatile long nextRefreshCheck;
+
+    /**
+     * Map a snapshot file, and check for a new version at most once per second.
+     *
+     * @param file Snapshot file.
+     * @throws IOException            Thrown when the file could not be mapped.
+     * @throws ConfigurationException Thrown when the file is not a valid snapshot.
+     */
+    public MappedConfiguration(Path file) throws IOException, ConfigurationException {
+        this(file, DEFAULT_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Map a snapshot file.
+     *
+     * @param file            Snapshot file.
+     * @param refreshInterval Minimum interval between checks for a new version of the file. Zero checks on every
+     *                        lookup.
+     * @param unit            Unit of {@code refreshInterval}.
+     * @throws IOException            Thrown when the file could not be mapped.
+     * @throws ConfigurationException Thrown when the file is not a valid snapshot.
+     */
+    public MappedConfiguration(Path file, long refreshInterval, TimeUnit unit)
+            throws IOException, ConfigurationException {
+        this.file = file;
+        this.refreshIntervalNanos = unit.toNanos(refreshInterval);
+        this.snapshot = Snapshot.map(file);
+        this.nextRefreshCheck = System.nanoTime() + refreshIntervalNanos;
+    }
+
+    /**
+     * Map the snapshot file again if it was replaced.
+     *
+     * @return True if a new version was mapped.
+     */
+    public synchronized boolean refresh() {
+        nextRefreshCheck = System.nanoTime() + refreshIntervalNanos;
+        try {
+            Object version = Snapshot.versionOf(file);
+            if (version.equals(snapshot.version)) return false;
+            snapshot = Snapshot.map(file);
+            logger.info("Mapped new configuration snapshot {}.", file);
+            return true;
+        } catch (IOException | ConfigurationException e) {
+            logger.warn("Failed to map new configuration snapshot {}; keeping the current one.", file, e);
+            return false;
+        }
+    }
+
+    Snapshot current() {
+        if (System.nanoTime() - nextRefreshCheck >= 0) refresh();
+        return snapshot;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current().keyCount == 0;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return current().indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        Snapshot snapshot = current();
+        int index = snapshot.indexOf(key);
+        return index < 0 ? null : snapshot.valueAt(index);
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        Snapshot snapshot = current();
+        return new Iterator<String>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.keyCount;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return snapshot.keyAt(index++);
+            }
+        };
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object value) {
+        throw new UnsupportedOperationException("A mapped configuration snapshot is read-only.");
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key) {
+        throw new UnsupportedOperationException("A mapped configuration snapshot is read-only.");
+    }
+
+    /**
+     * A single mapped version of the snapshot file.
+     */
+    static class Snapshot {
+        final Object version;
+        // Shared, read only through absolute get methods, which do not touch the buffer position.
+        final ByteBuffer buffer;
+        final int keyCount;
+        final int keyTableOffset;
+        final int stringPoolOffset;
+        final int valueAreaOffset;
+
+        Snapshot(Object version, ByteBuffer buffer) throws ConfigurationException {
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new ConfigurationException("Not a configuration snapshot.");
+            }
+            if (buffer.getInt(Integer.BYTES) != VERSION) {
+                throw new ConfigurationException(
+                        "Unsupported snapshot format version " + buffer.getInt(Integer.BYTES) + ".");
+            }
+            this.version = version;
+            this.buffer = buffer;
+            this.keyCount = buffer.getInt(2 * Integer.BYTES);
+            this.keyTableOffset = buffer.getInt(3 * Integer.BYTES);
+            this.stringPoolOffset = buffer.getInt(4 * Integer.BYTES);
+            this.valueAreaOffset = buffer.getInt(5 * Integer.BYTES);
+            validate();
+        }
+
+        /**
+         * Check that the sections, and every offset and length stored in them, lie within the file, so lookups never
+         * read outside of it. Strings and values referenced by offset must start where an entry of the string pool or
+         * a top-level value starts.
+         */
+        void validate() throws ConfigurationException {
+            int limit = buffer.limit();
+            if (keyCount < 0 || keyTableOffset < HEADER_SIZE
+                    || keyTableOffset + (long) keyCount * KEY_ENTRY_SIZE > stringPoolOffset
+                    || stringPoolOffset > valueAreaOffset || valueAreaOffset > limit) {
+                throw corrupt("the header describes sections that do not fit in the file");
+            }
+
+            BitSet strings = new BitSet();
+            int position = stringPoolOffset;
+            while (position < valueAreaOffset) {
+                if (valueAreaOffset - position < Integer.BYTES) throw corrupt("truncated string at " + position);
+                int length = buffer.getInt(position);
+                if (length < 0 || length > valueAreaOffset - position - Integer.BYTES) {
+                    throw corrupt("string at " + position + " does not fit in the string pool");
+                }
+                strings.set(position - stringPoolOffset);
+                position += Integer.BYTES + length;
+            }
+
+            BitSet values = new BitSet();
+            position = valueAreaOffset;
+            while (position < limit) {
+                values.set(position - valueAreaOffset);
+                position += validateValue(position, strings);
+            }
+
+            for (int i = 0; i < keyCount; i++) {
+                int entry = keyTableOffset + i * KEY_ENTRY_SIZE;
+                int keyOffset = buffer.getInt(entry);
+                int valueOffset = buffer.getInt(entry + Integer.BYTES);
+                if (!isStart(strings, stringPoolOffset, keyOffset)) {
+                    throw corrupt("key " + i + " does not refer to a string");
+                }
+                if (!isStart(values, valueAreaOffset, valueOffset)) {
+                    throw corrupt("key " + i + " does not refer to a value");
+                }
+            }
+        }
+
+        /**
+         * Check a value.
+         *
+         * @param offset  Offset of the value.
+         * @param strings Offsets of the strings in the pool, relative to the start of the pool.
+         * @return The encoded size of the value.
+         */
+        int validateValue(int offset, BitSet strings) throws ConfigurationException {
+            int available = buffer.limit() - offset;
+            byte type = buffer.get(offset);
+            switch (type) {
+                case TYPE_STRING:
+                    if (available < 1 + Integer.BYTES) break;
+                    if (!isStart(strings, stringPoolOffset, buffer.getInt(offset + 1))) {
+                        throw corrupt("value at " + offset + " does not refer to a string");
+                    }
+                    return 1 + Integer.BYTES;
+                case TYPE_LONG:
+                case TYPE_DOUBLE:
+                    if (available < 1 + Long.BYTES) break;
+                    return 1 + Long.BYTES;
+                case TYPE_BOOLEAN:
+                    if (available < 2) break;
+                    return 2;
+                case TYPE_LIST:
+                    if (available < 1 + Integer.BYTES) break;
+                    int count = buffer.getInt(offset + 1);
+                    if (count < 0) throw corrupt("list at " + offset + " has a negative size");
+                    int position = offset + 1 + Integer.BYTES;
+                    for (int i = 0; i < count; i++) {
+                        if (position >= buffer.limit()) throw corrupt("truncated list at " + offset);
+                        position += validateValue(position, strings);
+                    }
+                    return position - offset;
+                default:
+                    throw corrupt("unknown value type " + type + " at " + offset);
+            }
+            throw corrupt("truncated value at " + offset);
+        }
+
+        static boolean isStart(BitSet starts, int sectionOffset, int offset) {
+            return offset >= sectionOffset && starts.get(offset - sectionOffset);
+        }
+
+        static ConfigurationException corrupt(String problem) {
+            return new ConfigurationException("Corrupt configuration snapshot: " + problem + ".");
+        }
+
+        static Snapshot map(Path file) throws IOException, ConfigurationException {
+            Object version = versionOf(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Snapshot(version, buffer);
+            }
+        }
+
+        /**
+         * Identify the version of a file. An atomic rename replaces the file's inode, which is what the file key
+         * represents on most platforms.
+         */
+        static Object versionOf(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return Arrays.asList(fileKey, attributes.lastModifiedTime(), attributes.size());
+        }
+
+        int indexOf(String key) {
+            byte[] target = key.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = keyCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compareWithString(keyOffset(middle), target);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        int keyOffset(int index) {
+            return buffer.getInt(keyTableOffset + index * KEY_ENTRY_SIZE);
+        }
+
+        String keyAt(int index) {
+            return stringAt(keyOffset(index));
+        }
+
+        Object valueAt(int index) {
+            return readValue(buffer.getInt(keyTableOffset + index * KEY_ENTRY_SIZE + Integer.BYTES));
+        }
+
+        /**
+         * Compare the string stored at an offset in the pool with a key, byte by byte, without decoding it.
+         */
+        int compareWithString(int offset, byte[] target) {
+            int length = buffer.getInt(offset);
+            int start = offset + Integer.BYTES;
+            int common = Math.min(length, target.length);
+            for (int i = 0; i < common; i++) {
+                int comparison = Byte.compareUnsigned(buffer.get(start + i), target[i]);
+                if (comparison != 0) return comparison;
+            }
+            return Integer.compare(length, target.length);
+        }
+
+        String stringAt(int offset) {
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            // Absolute bulk get is not available before Java 13.
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + Integer.BYTES);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Object readValue(int offset) {
+            return readValue(offset, new int[1]);
+        }
+
+        /**
+         * Decode a value.
+         *
+         * @param offset Offset of the value.
+         * @param size   Receives the encoded size of the value.
+         * @return The value.
+         */
+        Object readValue(int offset, int[] size) {
+            byte type = buffer.get(offset);
+            switch (type) {
+                case TYPE_STRING:
+                    size[0] = 1 + Integer.BYTES;
+                    return stringAt(buffer.getInt(offset + 1));
+                case TYPE_LONG:
+                    size[0] = 1 + Long.BYTES;
+                    return buffer.getLong(offset + 1);
+                case TYPE_DOUBLE:
+                    size[0] = 1 + Double.BYTES;
+                    return buffer.getDouble(offset + 1);
+                case TYPE_BOOLEAN:
+                    size[0] = 2;
+                    return buffer.get(offset + 1) != 0;
+                case TYPE_LIST:
+                    int count = buffer.getInt(offset + 1);
+                    List<Object> list = new ArrayList<>(count);
+                    int position = offset + 1 + Integer.BYTES;
+                    for (int i = 0; i < count; i++) {
+                        list.add(readValue(position, size));
+                        position += size[0];
+                    }
+                    size[0] = position - offset;
+                    return list;
+                default:
+                    throw new IllegalStateException("Unknown value type " + type + " at offset " + offset + ".");
+            }
+        }
+    }
+}
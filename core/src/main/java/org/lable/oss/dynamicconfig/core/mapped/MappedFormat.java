@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.mapped;
+
+/**
+ * Layout of the binary configuration snapshot written by {@link MappedSnapshotWriter} and read by
+ * {@link MappedConfiguration}.
+ * <p>
+ * All integers are big-endian. Offsets are absolute positions in the file.
+ * <pre>
+ * header       magic (int), format version (int), key count (int),
+ *              key table offset (int), string pool offset (int), value area offset (int)
+ * key table    per key, sorted by the UTF-8 bytes of the key (unsigned):
+ *              key string offset (int), value offset (int)
+ * string pool  per distinct string: length in bytes (int), UTF-8 bytes
+ * value area   per value: type (byte), followed by
+ *                  STRING   string offset (int)
+ *                  LONG     long
+ *                  DOUBLE   double
+ *                  BOOLEAN  byte (0 or 1)
+ *                  LIST     element count (int), followed by the elements as values
+ * </pre>
+ */
+final class MappedFormat {
+    static final int MAGIC = 0x44434D31; // "DCM1".
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 6 * Integer.BYTES;
+    static final int KEY_ENTRY_SIZE = 2 * Integer.BYTES;
+
+    static final byte TYPE_STRING = 0;
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_DOUBLE = 2;
+    static final byte TYPE_BOOLEAN = 3;
+    static final byte TYPE_LIST = 4;
+
+    private MappedFormat() {
+        // Static constants only.
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.mapped;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.lable.oss.dynamicconfig.core.mapped.MappedFormat.*;
+
+/**
+ * Writes a {@link Configuration} to a compact, read-only binary snapshot that {@link MappedConfiguration} can read
+ * directly from a memory-mapped file. See {@link MappedFormat} for the layout.
+ * <p>
+ * The snapshot is written to a temporary file first, which then atomically replaces the target file. Processes that
+ * have the previous version mapped keep reading it until they notice the new file.
+ */
+public class MappedSnapshotWriter {
+    private MappedSnapshotWriter() {
+        // Static utility class.
+    }
+
+    /**
+     * Write a snapshot of a configuration.
+     *
+     * @param configuration Configuration.
+     * @param file          Target file.
+     * @throws IOException Thrown when the snapshot could not be written.
+     */
+    public static void write(Configuration configuration, Path file) throws IOException {
+        SortedMap<byte[], Object> entries = new TreeMap<>(Arrays::compareUnsigned);
+        for (Iterator<String> keys = configuration.getKeys(); keys.hasNext(); ) {
+            String key = keys.next();
+            Object value = configuration.getProperty(key);
+            if (value != null) entries.put(key.getBytes(StandardCharsets.UTF_8), value);
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                out.write(encode(entries));
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static byte[] encode(SortedMap<byte[], Object> entries) throws IOException {
+        // First pass: fill the string pool, so its size (and thus the offset of the value area) is known.
+        StringPool strings = new StringPool();
+        for (Map.Entry<byte[], Object> entry : entries.entrySet()) {
+            strings.add(entry.getKey());
+            addStrings(strings, entry.getValue());
+        }
+
+        int keyTableOffset = HEADER_SIZE;
+        int stringPoolOffset = keyTableOffset + entries.size() * KEY_ENTRY_SIZE;
+        int valueAreaOffset = stringPoolOffset + strings.size();
+
+        // Second pass: write the values.
+        ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+        DataOutputStream values = new DataOutputStream(valueBytes);
+        int[] valueOffsets = new int[entries.size()];
+        int i = 0;
+        for (Object value : entries.values()) {
+            valueOffsets[i++] = valueAreaOffset + values.size();
+            writeValue(values, strings, stringPoolOffset, value);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(valueAreaOffset + values.size());
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        out.writeInt(keyTableOffset);
+        out.writeInt(stringPoolOffset);
+        out.writeInt(valueAreaOffset);
+        i = 0;
+        for (byte[] key : entries.keySet()) {
+            out.writeInt(stringPoolOffset + strings.offsetOf(key));
+            out.writeInt(valueOffsets[i++]);
+        }
+        strings.writeTo(out);
+        valueBytes.writeTo(out);
+        out.flush();
+        return file.toByteArray();
+    }
+
+    static void addStrings(StringPool strings, Object value) throws IOException {
+        if (isList(value)) {
+            for (Object element : asList(value)) {
+                addStrings(strings, element);
+            }
+        } else if (typeOf(value) == TYPE_STRING) {
+            strings.add(stringBytes(value));
+        }
+    }
+
+    static void writeValue(DataOutputStream out, StringPool strings, int stringPoolOffset, Object value)
+            throws IOException {
+        if (isList(value)) {
+            Collection<?> list = asList(value);
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, strings, stringPoolOffset, element);
+            }
+            return;
+        }
+
+        byte type = typeOf(value);
+        out.writeByte(type);
+        switch (type) {
+            case TYPE_LONG:
+                out.writeLong(((Number) value).longValue());
+                break;
+            case TYPE_DOUBLE:
+                out.writeDouble(((Number) value).doubleValue());
+                break;
+            case TYPE_BOOLEAN:
+                out.writeByte((Boolean) value ? 1 : 0);
+                break;
+            default:
+                out.writeInt(stringPoolOffset + strings.offsetOf(stringBytes(value)));
+                break;
+        }
+    }
+
+    static boolean isList(Object value) {
+        return value instanceof Collection || value instanceof Object[];
+    }
+
+    static Collection<?> asList(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : Arrays.asList((Object[]) value);
+    }
+
+    static byte typeOf(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return TYPE_LONG;
+        }
+        if (value instanceof Double || value instanceof Float) return TYPE_DOUBLE;
+        if (value instanceof Boolean) return TYPE_BOOLEAN;
+        return TYPE_STRING;
+    }
+
+    static byte[] stringBytes(Object value) {
+        return (value == null ? "" : value.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deduplicating string pool.
+     */
+    static class StringPool {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        void add(byte[] utf8) throws IOException {
+            String key = poolKey(utf8);
+            if (offsets.containsKey(key)) return;
+
+            offsets.put(key, out.size());
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+
+        int offsetOf(byte[] utf8) {
+            return offsets.get(poolKey(utf8));
+        }
+
+        static String poolKey(byte[] utf8) {
+            // ISO-8859-1 maps every byte to a char, giving a cheap lossless key.
+            return new String(utf8, StandardCharsets.ISO_8859_1);
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        void writeTo(OutputStream target) throws IOException {
+            out.flush();
+            bytes.writeTo(target);
+        }
+    }
+}
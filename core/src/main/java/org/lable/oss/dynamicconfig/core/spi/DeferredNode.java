@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.spi;
+
+import org.apache.commons.configuration.tree.ConfigurationNode;
+
+/**
+ * Configuration tree node whose children are only built when they are first accessed. Deserializers may add these to
+ * the configuration trees they produce, to defer the work of building parts of the tree that may never be read.
+ * <p>
+ * Anything that walks the children of such a node builds them. This includes {@code getKeys()} on the configuration,
+ * and building a {@link org.lable.oss.dynamicconfig.core.compact.CompactConfiguration} from it, so deferred nodes
+ * are built when the configuration is loaded through the compact read path or the native engine, and once the
+ * application takes snapshots of the configuration. On the default read path of the Commons Configuration engine,
+ * without snapshots, they are only built when read. {@link org.lable.oss.dynamicconfig.core.ConfigurationComposition}
+ * copies deferred nodes without building them.
+ */
+public interface DeferredNode extends ConfigurationNode {
+    /**
+     * @return True if the children of this node have been built.
+     */
+    boolean isMaterialized();
+
+    /**
+     * Copy this node without building its children.
+     *
+     * @return A copy of this node that is itself deferred, or {@code null} if the children of this node have already
+     * been built, in which case it can be copied like any other node.
+     */
+    ConfigurationNode deferredCopy();
+}
@@ -42,4 +42,19 @@ public interface HierarchicalConfigurationDeserializer {
      * @return Default name.
      */
     String defaultConfigName();
+
+    /**
+     * Whether configuration resources with this name are written in the language this deserializer reads, judging by
+     * the extension of the name. Used to pick a deserializer when more than one is available. By default, the
+     * extension must match that of {@link #defaultConfigName()}.
+     *
+     * @param name Name of a configuration resource, such as {@code config.yaml}.
+     * @return True if this deserializer reads it.
+     */
+    default boolean handles(String name) {
+        int dot = name.lastIndexOf('.');
+        String defaultName = defaultConfigName();
+        int defaultDot = defaultName.lastIndexOf('.');
+        return dot >= 0 && defaultDot >= 0 && name.substring(dot).equalsIgnoreCase(defaultName.substring(defaultDot));
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.spi;
+
+import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationResult;
+
+/**
+ * A {@link ConfigurationConnection} for configuration sources that store configuration as individual values rather
+ * than as serialized documents. Configuration parts loaded through such a connection bypass the
+ * {@link HierarchicalConfigurationDeserializer} entirely.
+ * <p>
+ * Implementing classes may report changes to single values through
+ * {@link ConfigChangeListener#valueChanged(ConfigurationConnection, String, String, Object)}, in which case the
+ * value is updated in place without reloading the configuration part.
+ */
+public interface StructuredConfigurationConnection extends ConfigurationConnection {
+    /**
+     * Load a configuration part from this source once.
+     *
+     * @param name Configuration part name.
+     * @return A result object containing the configuration instance and any references to other configuration
+     * resources included or extended. The configuration instance may be modified later on by in-place value updates.
+     * @throws ConfigurationException Thrown when loading the configuration fails.
+     */
+    ConfigurationResult loadStructured(String name) throws ConfigurationException;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.typed;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Marks an interface describing part of the configuration. The annotation processor in the
+ * {@code dynamic-config-processor} module generates an implementation of it named after the interface with the suffix
+ * {@code Impl}, which reads its values from a {@link org.lable.oss.dynamicconfig.core.compact.SnapshotSource}:
+ * <pre>{@code
+ * @ConfigurationInterface("db")
+ * interface DbConfig {
+ *     int poolSize();
+ *     Duration timeout();
+ * }
+ *
+ * DbConfig db = new DbConfigImpl(configurationManager);
+ * }</pre>
+ * Each method without parameters maps to the key formed by the prefix and the method name (or the name set by
+ * {@link ConfigurationKey}). The generated implementation converts all values once per version of the configuration,
+ * so its methods return a field of an immutable holder.
+ * <p>
+ * When a key is not set, a default method returns its own result; other methods return {@code null}, or throw a
+ * {@link java.util.NoSuchElementException} if they return a primitive type. See
+ * {@link org.lable.oss.dynamicconfig.core.value.ValueReaders} for the supported return types; all primitive types
+ * except {@code char} are supported as well.
+ */
+@Retention(CLASS)
+@Target({TYPE})
+public @interface ConfigurationInterface {
+    /**
+     * @return Prefix of the configuration keys, or an empty string for keys at the root of the configuration.
+     */
+    String value() default "";
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates objects from the values under a configuration prefix.
+ * <p>
+ * Records are created through their canonical constructor, with each component read from the key named after it.
+ * Components of a reference type are {@code null} when their key is not set; components of a primitive type cannot
+ * be, so binding fails when their key is not set. Other classes need a constructor without parameters; each
+ * non-static, non-final and non-transient field is then set from the key named after it, unless that key is not set.
+ * See {@link ValueReaders} for the supported property types.
+ * <p>
+ * The binder for a type is built once, using method handles, and shared (see {@link #of(Class)}).
+ *
+ * @param <T> Type of the objects created.
+ */
+public final class Binder<T> {
+    private static final ClassValue<Binder<?>> BINDERS = new ClassValue<Binder<?>>() {
+        @Override
+        protected Binder<?> computeValue(Class<?> type) {
+            return new Binder<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final String[] names;
+    private final ValueReader<?>[] readers;
+    // Record: canonical constructor taking an Object[] of all components.
+    // Other classes: constructor without parameters.
+    private final MethodHandle constructor;
+    // Setters of type (Object, Object)void; null for records.
+    private final MethodHandle[] setters;
+    // Whether each record component must be set, because it has a primitive type; null for other classes.
+    private final boolean[] required;
+
+    private Binder(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = lookupFor(type);
+        try {
+            Object[] components = recordComponents(type);
+            if (components != null) {
+                int count = components.length;
+                names = new String[count];
+                readers = new ValueReader<?>[count];
+                required = new boolean[count];
+                Class<?>[] parameterTypes = new Class<?>[count];
+                for (int i = 0; i < count; i++) {
+                    Object component = components[i];
+                    names[i] = (String) invoke(component, "getName");
+                    parameterTypes[i] = (Class<?>) invoke(component, "getType");
+                    readers[i] = readerFor(type, names[i], (Type) invoke(component, "getGenericType"));
+                    required[i] = parameterTypes[i].isPrimitive();
+                }
+                constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                        .asSpreader(Object[].class, count)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                setters = null;
+            } else {
+                Constructor<T> noArguments = type.getDeclaredConstructor();
+                constructor = lookup.unreflectConstructor(noArguments)
+                        .asType(MethodType.methodType(Object.class));
+                List<Field> fields = bindableFields(type);
+                names = new String[fields.size()];
+                readers = new ValueReader<?>[fields.size()];
+                setters = new MethodHandle[fields.size()];
+                for (int i = 0; i < fields.size(); i++) {
+                    Field field = fields.get(i);
+                    names[i] = field.getName();
+                    readers[i] = readerFor(type, names[i], field.getGenericType());
+                    // Private fields of a superclass are only accessible through a lookup in that class.
+                    MethodHandles.Lookup fieldLookup = field.getDeclaringClass() == type
+                            ? lookup
+                            : lookupFor(field.getDeclaringClass());
+                    setters[i] = fieldLookup.unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                }
+                required = null;
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Cannot bind configuration values to " + type.getName() + ". " +
+                    "It must be a record, or have a constructor without parameters.", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot bind configuration values to " + type.getName() + ". " +
+                    "Its constructor or fields are not accessible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the binder for a type.
+     *
+     * @param type Record or class to create.
+     * @param <T>  Type of the objects created.
+     * @return The binder.
+     * @throws IllegalArgumentException Thrown when the type cannot be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Binder<T> of(Class<T> type) {
+        return (Binder<T>) BINDERS.get(type);
+    }
+
+    /**
+     * @return Type of the objects created.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Create an object from the values under a prefix.
+     *
+     * @param configuration Configuration.
+     * @param prefix        Prefix of the keys, or an empty string for keys at the root of the configuration.
+     * @return A new object.
+     * @throws IllegalArgumentException Thrown when the key of a record component of a primitive type is not set.
+     */
+    public T bind(Configuration configuration, String prefix) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String key = key(prefix, names[i]);
+            values[i] = readers[i].read(configuration, key);
+            if (values[i] == null && required != null && required[i]) {
+                throw new IllegalArgumentException("Cannot bind configuration values to " + type.getName() + ". " +
+                        "Key " + key + " is not set, but record component " + names[i] + " has a primitive type.");
+            }
+        }
+        return create(values);
+    }
+
+    /**
+     * Read the unconverted values used by {@link #bind(Configuration, String)}. When they are equal for two
+     * configurations, so are the objects bound from them.
+     *
+     * @param configuration Configuration.
+     * @param prefix        Prefix of the keys.
+     * @return The raw values, in property order.
+     */
+    Object[] rawValues(Configuration configuration, String prefix) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = configuration.getProperty(key(prefix, names[i]));
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T create(Object[] values) {
+        try {
+            if (setters == null) {
+                Object instance = constructor.invokeExact(values);
+                return (T) instance;
+            }
+
+            Object instance = constructor.invokeExact();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) setters[i].invokeExact(instance, values[i]);
+            }
+            return (T) instance;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create " + type.getName() + ".", e);
+        }
+    }
+
+    static String key(String prefix, String name) {
+        return prefix == null || prefix.isEmpty() ? name : prefix + "." + name;
+    }
+
+    static List<Field> bindableFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                if (field.isSynthetic()) continue;
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    static ValueReader<?> readerFor(Class<?> type, String name, Type propertyType) {
+        try {
+            return ValueReaders.forType(propertyType);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cannot bind property " + name + " of " + type.getName() + ". " +
+                    e.getMessage(), e);
+        }
+    }
+
+    static MethodHandles.Lookup lookupFor(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + type.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Get the record components of a type. Records are only available from Java 16 on, so they are accessed through
+     * reflection.
+     *
+     * @param type Type.
+     * @return The record components, or {@code null} if the type is not a record.
+     */
+    static Object[] recordComponents(Class<?> type) {
+        try {
+            Method getRecordComponents = Class.class.getMethod("getRecordComponents");
+            return (Object[]) getRecordComponents.invoke(type);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to read the record components of " + type.getName() + ".", e);
+        }
+    }
+
+    private static Object invoke(Object target, String method) {
+        try {
+            return target.getClass().getMethod(method).invoke(target);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to call " + method + " on " + target + ".", e);
+        }
+    }
+}
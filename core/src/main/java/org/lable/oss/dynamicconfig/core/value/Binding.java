@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Live object bound from the values under a configuration prefix (see {@link Binder}).
+ * <p>
+ * The object is cached per version of the configuration. When the configuration changes, the unconverted values
+ * under the prefix are compared with those the object was created from, and the object is only created again if they
+ * differ. The same object is returned to all callers, so it should not be modified.
+ *
+ * @param <T> Type of the object.
+ */
+public final class Binding<T> implements Supplier<T> {
+    private final SnapshotSource source;
+    private final String prefix;
+    private final Binder<T> binder;
+
+    private volatile Bound<T> bound;
+
+    Binding(SnapshotSource source, String prefix, Binder<T> binder) {
+        this.source = source;
+        this.prefix = prefix;
+        this.binder = binder;
+    }
+
+    /**
+     * Create a live binding.
+     *
+     * @param source Source of the configuration, such as a
+     *               {@link org.lable.oss.dynamicconfig.core.ConfigurationManager}.
+     * @param prefix Prefix of the keys, or an empty string for keys at the root of the configuration.
+     * @param type   Record or class to create.
+     * @param <T>    Type of the object.
+     * @return A live binding.
+     * @throws IllegalArgumentException Thrown when the type cannot be bound.
+     */
+    public static <T> Binding<T> of(SnapshotSource source, String prefix, Class<T> type) {
+        return new Binding<>(source, prefix, Binder.of(type));
+    }
+
+    /**
+     * @return The configuration prefix of this binding.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return The object bound from the current configuration.
+     */
+    @Override
+    public T get() {
+        CompactConfiguration snapshot = source.snapshot();
+        Bound<T> bound = this.bound;
+        if (bound != null && bound.snapshot == snapshot) return bound.value;
+
+        Object[] rawValues = binder.rawValues(snapshot, prefix);
+        T value = bound != null && Arrays.equals(bound.rawValues, rawValues)
+                ? bound.value
+                : binder.bind(snapshot, prefix);
+        bound = new Bound<>(snapshot, rawValues, value);
+        this.bound = bound;
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "Binding{" + binder.getType().getSimpleName() + " at " + prefix + "}";
+    }
+
+    static class Bound<T> {
+        final CompactConfiguration snapshot;
+        final Object[] rawValues;
+        final T value;
+
+        Bound(CompactConfiguration snapshot, Object[] rawValues, T value) {
+            this.snapshot = snapshot;
+            this.rawValues = rawValues;
+            this.value = value;
+        }
+    }
+}
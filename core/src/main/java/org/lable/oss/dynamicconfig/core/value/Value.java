@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
+
+import java.lang.reflect.Type;
+import java.util.function.Supplier;
+
+/**
+ * Live, typed value of a single configuration key.
+ * <p>
+ * The value is converted once per version of the configuration. Each version is a distinct snapshot (see
+ * {@link SnapshotSource#snapshot()}), so as long as the configuration does not change, {@link #get()} only compares
+ * the current snapshot with the one the value was converted from.
+ * <p>
+ * How cheap that is depends on the source. With the compact read path of
+ * {@link org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration}, or with the native engine,
+ * the snapshot is built when the configuration changes, and {@link #get()} never copies anything. On the default
+ * engine, the very first {@link #get()} (of any value) makes the snapshot, copying the whole configuration tree; from
+ * then on, the snapshot is built when the configuration changes as well.
+ *
+ * @param <T> Type of the value.
+ */
+public final class Value<T> implements Supplier<T> {
+    private final SnapshotSource source;
+    private final String key;
+    private final ValueReader<T> reader;
+
+    private volatile Converted<T> converted;
+
+    Value(SnapshotSource source, String key, ValueReader<T> reader) {
+        this.source = source;
+        this.key = key;
+        this.reader = reader;
+    }
+
+    /**
+     * Create a live value.
+     *
+     * @param source Source of the configuration, such as a
+     *               {@link org.lable.oss.dynamicconfig.core.ConfigurationManager}.
+     * @param key    Configuration key.
+     * @param type   Type of the value.
+     * @param <T>    Type of the value.
+     * @return A live value.
+     * @throws IllegalArgumentException Thrown when values cannot be converted to this type.
+     */
+    public static <T> Value<T> of(SnapshotSource source, String key, Class<T> type) {
+        return new Value<>(source, key, ValueReaders.forType(type));
+    }
+
+    /**
+     * Create a live value of a type only known at runtime, such as the type argument of an injected field.
+     *
+     * @param source Source of the configuration, such as a
+     *               {@link org.lable.oss.dynamicconfig.core.ConfigurationManager}.
+     * @param key    Configuration key.
+     * @param type   Type of the value.
+     * @return A live value.
+     * @throws IllegalArgumentException Thrown when values cannot be converted to this type.
+     */
+    public static Value<?> of(SnapshotSource source, String key, Type type) {
+        return new Value<>(source, key, ValueReaders.forType(type));
+    }
+
+    /**
+     * Create a live value using a custom reader.
+     *
+     * @param source Source of the configuration.
+     * @param key    Configuration key.
+     * @param reader Reader that converts the value.
+     * @param <T>    Type of the value.
+     * @return A live value.
+     */
+    public static <T> Value<T> of(SnapshotSource source, String key, ValueReader<T> reader) {
+        return new Value<>(source, key, reader);
+    }
+
+    /**
+     * @return The configuration key of this value.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the current value. This takes a snapshot of the source, see the class documentation for what that costs.
+     *
+     * @return The current value, or {@code null} if the key is not set.
+     */
+    @Override
+    public T get() {
+        CompactConfiguration snapshot = source.snapshot();
+        Converted<T> converted = this.converted;
+        if (converted == null || converted.snapshot != snapshot) {
+            // Concurrent callers may both convert the value; either result is correct.
+            converted = new Converted<>(snapshot, reader.read(snapshot, key));
+            this.converted = converted;
+        }
+        return converted.value;
+    }
+
+    @Override
+    public String toString() {
+        return "Value{" + key + "}";
+    }
+
+    static class Converted<T> {
+        final CompactConfiguration snapshot;
+        final T value;
+
+        Converted(CompactConfiguration snapshot, T value) {
+            this.snapshot = snapshot;
+            this.value = value;
+        }
+    }
+}
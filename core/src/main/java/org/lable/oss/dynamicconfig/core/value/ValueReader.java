@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Reads a configuration value as a specific type.
+ *
+ * @param <T> Type of the value.
+ */
+@FunctionalInterface
+public interface ValueReader<T> {
+    /**
+     * Read a value.
+     *
+     * @param configuration Configuration.
+     * @param key           Configuration key.
+     * @return The value, or {@code null} if the key is not set.
+     */
+    T read(Configuration configuration, String key);
+}
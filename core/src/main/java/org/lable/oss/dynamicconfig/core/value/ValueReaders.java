@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ValueReader}s for the types configuration values can be converted to.
+ * <p>
+ * Supported are {@link String}, the boxed primitive types, {@link BigDecimal}, {@link BigInteger}, {@link Duration},
+ * enums, {@code List<String>}, and {@link Object} (the raw value). Durations are either ISO-8601 strings such as
+ * {@code PT30S}, or a number of milliseconds.
+ */
+public class ValueReaders {
+    private static final Map<Class<?>, ValueReader<?>> READERS = new HashMap<>();
+
+    static {
+        READERS.put(Object.class, Configuration::getProperty);
+        READERS.put(String.class, Configuration::getString);
+        READERS.put(Boolean.class, (configuration, key) -> configuration.getBoolean(key, null));
+        READERS.put(Byte.class, (configuration, key) -> configuration.getByte(key, null));
+        READERS.put(Short.class, (configuration, key) -> configuration.getShort(key, null));
+        READERS.put(Integer.class, (configuration, key) -> configuration.getInteger(key, null));
+        READERS.put(Long.class, (configuration, key) -> configuration.getLong(key, null));
+        READERS.put(Float.class, (configuration, key) -> configuration.getFloat(key, null));
+        READERS.put(Double.class, (configuration, key) -> configuration.getDouble(key, null));
+        READERS.put(BigDecimal.class, Configuration::getBigDecimal);
+        READERS.put(BigInteger.class, Configuration::getBigInteger);
+        READERS.put(Duration.class, ValueReaders::readDuration);
+    }
+
+    ValueReaders() {
+        // No-op.
+    }
+
+    /**
+     * Get the reader for a type.
+     *
+     * @param type Type of the value.
+     * @param <T>  Type of the value.
+     * @return A value reader.
+     * @throws IllegalArgumentException Thrown when values cannot be converted to this type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ValueReader<T> forType(Class<T> type) {
+        return (ValueReader<T>) forType((Type) type);
+    }
+
+    /**
+     * Get the reader for a type, which may be a parameterized type such as {@code List<String>}.
+     *
+     * @param type Type of the value.
+     * @return A value reader.
+     * @throws IllegalArgumentException Thrown when values cannot be converted to this type.
+     */
+    public static ValueReader<?> forType(Type type) {
+        if (type instanceof Class) {
+            Class<?> clazz = boxed((Class<?>) type);
+            ValueReader<?> reader = READERS.get(clazz);
+            if (reader != null) return reader;
+            if (clazz.isEnum()) return enumReaderFor(clazz);
+            if (clazz == List.class) return ValueReaders::readStringList;
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            if (parameterizedType.getRawType() == List.class && arguments[0] == String.class) {
+                return ValueReaders::readStringList;
+            }
+        }
+        throw new IllegalArgumentException("Configuration values cannot be converted to " + type.getTypeName() + ".");
+    }
+
+    static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == boolean.class) return Boolean.class;
+        if (type == byte.class) return Byte.class;
+        if (type == short.class) return Short.class;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == float.class) return Float.class;
+        if (type == double.class) return Double.class;
+        if (type == char.class) return Character.class;
+        return Void.class;
+    }
+
+    static Duration readDuration(Configuration configuration, String key) {
+        Object value = configuration.getProperty(key);
+        if (value == null) return null;
+        if (value instanceof Number) return Duration.ofMillis(((Number) value).longValue());
+
+        String text = value.toString().trim();
+        if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+            return Duration.ofMillis(Long.parseLong(text));
+        }
+        return Duration.parse(text);
+    }
+
+    static List<String> readStringList(Configuration configuration, String key) {
+        if (!configuration.containsKey(key)) return null;
+
+        List<String> values = new ArrayList<>();
+        for (Object value : configuration.getList(key)) {
+            values.add(value == null ? null : value.toString());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Get the reader for a class known to be an enum. An enum class {@code E} always extends {@code Enum<E>}, so the
+     * raw call is safe.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static ValueReader<?> enumReaderFor(Class<?> enumType) {
+        return enumReader((Class) enumType);
+    }
+
+    static <E extends Enum<E>> ValueReader<E> enumReader(Class<E> type) {
+        return (configuration, key) -> {
+            String value = configuration.getString(key);
+            return value == null ? null : Enum.valueOf(type, value.trim());
+        };
+    }
+}
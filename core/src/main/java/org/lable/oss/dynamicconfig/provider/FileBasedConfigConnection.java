@@ -17,6 +17,8 @@ package org.lable.oss.dynamicconfig.provider;
 
 import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ReloadDelay;
+import org.lable.oss.dynamicconfig.core.ReloadScheduler;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.lable.oss.dynamicconfig.provider.file.FileWatcher;
 import org.slf4j.Logger;
@@ -31,6 +33,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class FileBasedConfigConnection implements ConfigurationConnection {
@@ -40,11 +43,24 @@ public class FileBasedConfigConnection implements ConfigurationConnection {
     private final ConfigChangeListener changeListener;
     private final FileWatcher fileWatcher;
     private final ExecutorService executorService;
+    private final ScheduledExecutorService reloadExecutorService;
+    private final ReloadScheduler reloads;
     private final Map<Path, String> pathNameMapping = new HashMap<>();
 
     public FileBasedConfigConnection(Path rootDir, ConfigChangeListener changeListener) throws ConfigurationException {
+        this(rootDir, changeListener, ReloadDelay.NONE);
+    }
+
+    public FileBasedConfigConnection(Path rootDir, ConfigChangeListener changeListener, ReloadDelay reloadDelay)
+            throws ConfigurationException {
         this.rootDir = rootDir;
         this.changeListener = changeListener;
+        // Without a delay, reloads run on the file watcher thread as they always have.
+        this.reloadExecutorService = changeListener != null && reloadDelay.isEnabled()
+                ? Executors.newSingleThreadScheduledExecutor()
+                : null;
+        this.reloads = new ReloadScheduler(reloadExecutorService == null ? ReloadDelay.NONE : reloadDelay,
+                reloadExecutorService);
 
         if (changeListener != null) {
             try {
@@ -102,7 +118,7 @@ public class FileBasedConfigConnection implements ConfigurationConnection {
                 logger.info("Configuration part file {}, reloading configuration.", mutation);
                 Path relativeToRootDir = rootDir.resolve(filePath);
                 String name = pathNameMapping.putIfAbsent(relativeToRootDir, relativeToRootDir.toString());
-                changeListener.changed(this, name);
+                reloads.schedule(name, () -> changeListener.changed(this, name));
                 break;
             case FILE_DELETED:
                 logger.warn("Configuration part file {} was deleted. Its contents will be kept in configuration memory until " +
@@ -115,14 +131,20 @@ public class FileBasedConfigConnection implements ConfigurationConnection {
 
     @Override
     public void close() throws IOException {
+        reloads.close();
         if (fileWatcher != null) fileWatcher.close();
-        if (executorService != null) {
-            executorService.shutdown();
-            try {
-                boolean ignored = executorService.awaitTermination(2, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        shutdown(executorService);
+        shutdown(reloadExecutorService);
+    }
+
+    static void shutdown(ExecutorService executorService) {
+        if (executorService == null) return;
+
+        executorService.shutdown();
+        try {
+            boolean ignored = executorService.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -18,12 +18,14 @@ package org.lable.oss.dynamicconfig.provider;
 import org.apache.commons.configuration.Configuration;
 import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ReloadDelay;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationSource;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import static org.lable.oss.dynamicconfig.core.ConfigurationLoader.ROOTCONFIG_PROPERTY;
 
@@ -32,6 +34,7 @@ import static org.lable.oss.dynamicconfig.core.ConfigurationLoader.ROOTCONFIG_PR
  */
 public class FileBasedConfigSource implements ConfigurationSource {
     private Path rootDir;
+    private ReloadDelay reloadDelay;
 
     /**
      * Construct a new FileBasedConfigSource.
@@ -48,6 +51,14 @@ public class FileBasedConfigSource implements ConfigurationSource {
         return "file";
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> systemProperties() {
+        return ReloadDelay.PROPERTIES;
+    }
+
     @Override
     public void configure(Configuration configuration, Configuration defaults) throws ConfigurationException {
         String rootConfigFile = configuration.getString(ROOTCONFIG_PROPERTY);
@@ -59,11 +70,13 @@ public class FileBasedConfigSource implements ConfigurationSource {
         if (rootDir == null || !Files.isDirectory(rootDir)) {
             throw new ConfigurationException("Parameter configDir is not a directory (" + rootConfigFile + ").");
         }
+
+        reloadDelay = ReloadDelay.fromConfiguration(configuration);
     }
 
     @Override
     public ConfigurationConnection connect(ConfigChangeListener changeListener) throws ConfigurationException {
-        return new FileBasedConfigConnection(rootDir, changeListener);
+        return new FileBasedConfigConnection(rootDir, changeListener, reloadDelay);
     }
 
     @Override
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CachingDeserializerTest {
+    @Before
+    public void clearCache() {
+        CachingDeserializer.CACHE.clear();
+    }
+
+    @Test
+    public void identicalContentIsParsedOnceTest() throws ConfigurationException {
+        CountingDeserializer counting = new CountingDeserializer();
+        HierarchicalConfigurationDeserializer deserializer = new CachingDeserializer(counting, 10);
+
+        ConfigurationResult first = deserializer.deserialize(input("a=1"));
+        ConfigurationResult second = deserializer.deserialize(input("a=1"));
+        deserializer.deserialize(input("a=2"));
+
+        assertThat(counting.calls, is(2));
+        assertThat(first.getConfiguration(), is(sameInstance(second.getConfiguration())));
+        assertThat(first.getConfiguration().getString("a"), is("1"));
+
+        // Include references are not shared, because the loader modifies them.
+        assertThat(first.getIncludeReferences().get(0), is(not(sameInstance(second.getIncludeReferences().get(0)))));
+        assertThat(first.getIncludeReferences().get(0), is(second.getIncludeReferences().get(0)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedConfigurationIsReadOnlyTest() throws ConfigurationException {
+        HierarchicalConfigurationDeserializer deserializer =
+                new CachingDeserializer(new CountingDeserializer(), 10);
+
+        deserializer.deserialize(input("a=1")).getConfiguration().setProperty("a", "2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedConfigurationRootCannotBeReplacedTest() throws ConfigurationException {
+        HierarchicalConfigurationDeserializer deserializer =
+                new CachingDeserializer(new CountingDeserializer(), 10);
+
+        deserializer.deserialize(input("a=1")).getConfiguration().setRoot(new HierarchicalConfiguration.Node());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedConfigurationRootNodeCannotBeReplacedTest() throws ConfigurationException {
+        HierarchicalConfigurationDeserializer deserializer =
+                new CachingDeserializer(new CountingDeserializer(), 10);
+
+        deserializer.deserialize(input("a=1")).getConfiguration().setRootNode(new HierarchicalConfiguration.Node());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedTest() throws ConfigurationException {
+        CountingDeserializer counting = new CountingDeserializer();
+        HierarchicalConfigurationDeserializer deserializer = new CachingDeserializer(counting, 2);
+
+        deserializer.deserialize(input("a=1"));
+        deserializer.deserialize(input("a=2"));
+        deserializer.deserialize(input("a=1"));
+        deserializer.deserialize(input("a=3"));
+        // 'a=2' was evicted.
+        deserializer.deserialize(input("a=2"));
+
+        assertThat(counting.calls, is(4));
+        assertThat(CachingDeserializer.CACHE.size(), is(2));
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a single {@code key=value} line.
+     */
+    static class CountingDeserializer implements HierarchicalConfigurationDeserializer {
+        int calls = 0;
+
+        @Override
+        public ConfigurationResult deserialize(InputStream input) throws ConfigurationException {
+            calls++;
+            String content;
+            try {
+                content = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new ConfigurationException(e);
+            }
+            String[] parts = content.split("=");
+            HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+            configuration.setProperty(parts[0], parts[1]);
+            List<IncludeReference> includes = new ArrayList<>();
+            includes.add(new IncludeReference("x", "include.yaml"));
+            return new ConfigurationResult(configuration, includes);
+        }
+
+        @Override
+        public String defaultConfigName() {
+            return "config";
+        }
+    }
+}
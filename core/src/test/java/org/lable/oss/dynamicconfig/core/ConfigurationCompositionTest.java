@@ -16,15 +16,27 @@
 package org.lable.oss.dynamicconfig.core;
 
 import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CombinedConfiguration;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.apache.commons.configuration.tree.OverrideCombiner;
 import org.junit.Test;
 import org.lable.oss.dynamicconfig.core.ConfigurationComposition.ConfigReference;
 import org.lable.oss.dynamicconfig.core.ConfigurationComposition.ConfigState;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.UnmodifiableHierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.DeferredNode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class ConfigurationCompositionTest {
@@ -148,6 +160,163 @@ public class ConfigurationCompositionTest {
         assertThat(composition.allReferences.containsKey("e2.2"), is(false));
     }
 
+    @Test
+    public void prefixesTest() {
+        ConfigurationComposition composition = new ConfigurationComposition();
+        composition.setPrefixes(Arrays.asList(" db ", "http.client", "db.pool", "shared.http"));
+        assertThat(composition.prefixes, is(Arrays.asList("db", "http.client", "shared.http")));
+
+        composition.setRootReference(composition.updateReferences(
+                "root", Arrays.asList(
+                        new IncludeReference("tenants", "tenants"),
+                        new IncludeReference("shared", "shared")
+                )
+        ));
+
+        HierarchicalConfiguration root = new HierarchicalConfiguration();
+        root.setProperty("db.url", "jdbc:x");
+        root.setProperty("db.pool.size", 4);
+        root.setProperty("http.client.timeout", 10);
+        root.setProperty("http.server.port", 8080);
+        root.setProperty("unrelated", "x");
+        composition.setConfigurationOnReference(composition.getReference("root"), root);
+
+        HierarchicalConfiguration pruned = composition.getReference("root").configuration;
+        assertThat(pruned.getString("db.url"), is("jdbc:x"));
+        assertThat(pruned.getInt("db.pool.size"), is(4));
+        assertThat(pruned.getInt("http.client.timeout"), is(10));
+        assertThat(pruned.containsKey("http.server.port"), is(false));
+        assertThat(pruned.containsKey("unrelated"), is(false));
+
+        // Included entirely outside the prefixes.
+        assertThat(composition.excludeIfOutsidePrefixes("tenants"), is(true));
+        assertThat(composition.getReference("tenants").getConfigState(), is(ConfigState.EXCLUDED));
+        assertThat(composition.excludeIfOutsidePrefixes("shared"), is(false));
+
+        HierarchicalConfiguration shared = new HierarchicalConfiguration();
+        shared.setProperty("http.proxy", "p");
+        shared.setProperty("other", "o");
+        composition.setConfigurationOnReference(composition.getReference("shared"), shared);
+        assertThat(composition.getReference("shared").configuration.getString("http.proxy"), is("p"));
+        assertThat(composition.getReference("shared").configuration.containsKey("other"), is(false));
+
+        // Updates outside the prefixes are ignored.
+        composition.setValueOnReference(composition.getReference("root"), "unrelated", "y");
+        composition.setValueOnReference(composition.getReference("root"), "db.user", "u");
+        assertThat(composition.getReference("root").configuration.containsKey("unrelated"), is(false));
+        assertThat(composition.getReference("root").configuration.getString("db.user"), is("u"));
+
+        // Remounting 'tenants' inside the prefixes makes it eligible for loading again.
+        composition.updateReferences("root", Arrays.asList(
+                new IncludeReference("db.tenants", "tenants"),
+                new IncludeReference("shared", "shared")
+        ));
+        composition.markRemountedReferences();
+        assertThat(composition.getReference("tenants").getConfigState(), is(ConfigState.NEEDS_LOADING));
+    }
+
+    @Test
+    public void prefixesKeepDelimiterParsingDisabledTest() {
+        ConfigurationComposition composition = new ConfigurationComposition();
+        composition.setPrefixes(Collections.singletonList("db"));
+        composition.setRootReference(composition.updateReferences("root", new ArrayList<>()));
+
+        HierarchicalConfiguration root = new HierarchicalConfiguration();
+        root.setDelimiterParsingDisabled(true);
+        root.setProperty("db.hosts", "a,b");
+        root.setProperty("unrelated", "x");
+        composition.setConfigurationOnReference(composition.getReference("root"), root);
+
+        ConfigReference reference = composition.getReference("root");
+        composition.setValueOnReference(reference, "db.hosts", "c,d");
+        assertThat(reference.configuration.isDelimiterParsingDisabled(), is(true));
+        assertThat(reference.configuration.getProperty("db.hosts"), is("c,d"));
+
+
+        // A shared part mounted inside the prefixes is not pruned, but copied before it is modified.
+        composition.updateReferences("root", Collections.singletonList(new IncludeReference("db.shared", "shared")));
+        HierarchicalConfiguration shared = new HierarchicalConfiguration();
+        shared.setDelimiterParsingDisabled(true);
+        shared.setProperty("hosts", "a,b");
+        ConfigReference sharedReference = composition.getReference("shared");
+        composition.setConfigurationOnReference(sharedReference, new UnmodifiableHierarchicalConfiguration(shared));
+        composition.setValueOnReference(sharedReference, "hosts", "e,f");
+        assertThat(sharedReference.configuration, is(not(instanceOf(UnmodifiableHierarchicalConfiguration.class))));
+        assertThat(sharedReference.configuration.getProperty("hosts"), is("e,f"));
+    }
+
+    @Test
+    public void pruneKeepsDeferredNodesDeferredTest() {
+        ConfigurationComposition composition = new ConfigurationComposition();
+        composition.setPrefixes(Collections.singletonList("db"));
+        composition.setRootReference(composition.updateReferences("root", new ArrayList<>()));
+
+        HierarchicalConfiguration root = new HierarchicalConfiguration();
+        root.setProperty("unrelated", "x");
+        TestDeferredNode db = new TestDeferredNode("db");
+        root.getRootNode().addChild(db);
+        // Shared, so the retained nodes are copied.
+        composition.setConfigurationOnReference(composition.getReference("root"),
+                new UnmodifiableHierarchicalConfiguration(root));
+
+        HierarchicalConfiguration pruned = composition.getReference("root").configuration;
+        assertThat(pruned.containsKey("unrelated"), is(false));
+        assertThat(db.isMaterialized(), is(false));
+        TestDeferredNode copy = (TestDeferredNode) pruned.getRootNode().getChildren("db").get(0);
+        assertThat(copy.isMaterialized(), is(false));
+        assertThat(pruned.getString("db.url"), is("jdbc:x"));
+        assertThat(copy.isMaterialized(), is(true));
+        assertThat(db.isMaterialized(), is(false));
+    }
+
+    @Test
+    public void assembleConfigRootsTest() {
+        ConfigurationComposition composition = new ConfigurationComposition();
+        composition.setRootReference(composition.updateReferences(
+                "root", Arrays.asList(
+                        new IncludeReference("x.y", "a"),
+                        new IncludeReference("base")
+                )
+        ));
+
+        HierarchicalConfiguration root = new HierarchicalConfiguration();
+        root.setProperty("shared.value", "root");
+        root.setProperty("x.y.value", "root");
+        root.addProperty("list.item", "root-1");
+        root.addProperty("list.item", "root-2");
+        HierarchicalConfiguration a = new HierarchicalConfiguration();
+        a.setProperty("value", "a");
+        a.setProperty("other", "a");
+        HierarchicalConfiguration base = new HierarchicalConfiguration();
+        base.setProperty("shared.value", "base");
+        base.setProperty("shared.fallback", "base");
+        base.addProperty("list.item", "base");
+        base.setProperty("x.y.extra", "base");
+        composition.setConfigurationOnReference(composition.getReference("root"), root);
+        composition.setConfigurationOnReference(composition.getReference("a"), a);
+        composition.setConfigurationOnReference(composition.getReference("base"), base);
+
+        CombinedConfiguration combined = new CombinedConfiguration(new OverrideCombiner());
+        composition.assembleConfigTree(combined);
+        CompactConfiguration merged =
+                CompactConfiguration.merge(composition.assembleConfigRoots(new HierarchicalConfiguration()));
+
+        List<String> combinedKeys = new ArrayList<>();
+        combined.getKeys().forEachRemaining(combinedKeys::add);
+        List<String> mergedKeys = new ArrayList<>();
+        merged.getKeys().forEachRemaining(mergedKeys::add);
+        // The metadata comes first rather than last, so only the order of the keys differs.
+        assertThat(new HashSet<>(mergedKeys), is(new HashSet<>(combinedKeys)));
+        for (String key : combinedKeys) {
+            if (key.equals(ConfigurationComposition.META_MODIFIED_AT)) continue;
+            assertThat(key, merged.getProperty(key), is(combined.getProperty(key)));
+        }
+        assertThat(merged.getString("x.y.value"), is("root"));
+        assertThat(merged.getString("x.y.other"), is("a"));
+        assertThat(merged.getString("x.y.extra"), is("base"));
+        assertThat(merged.getList("list.item"), is(Arrays.asList("root-1", "root-2")));
+    }
+
     /**
      * Assert that two configuration parts reference each other in both directions (one referencing, and one knowing
      * that it is being referenced).
@@ -165,4 +334,40 @@ public class ConfigurationCompositionTest {
                 referencer.referencedByMe.containsValue(referencee) &&
                 referencee.referencingMe.contains(referencer);
     }
-}
\ No newline at end of file
+
+    static class TestDeferredNode extends HierarchicalConfiguration.Node implements DeferredNode {
+        private boolean materialized = false;
+
+        TestDeferredNode(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean isMaterialized() {
+            return materialized;
+        }
+
+        @Override
+        public ConfigurationNode deferredCopy() {
+            return materialized ? null : new TestDeferredNode(getName());
+        }
+
+        @Override
+        public List<ConfigurationNode> getChildren() {
+            materialize();
+            return super.getChildren();
+        }
+
+        @Override
+        public List<ConfigurationNode> getChildren(String name) {
+            materialize();
+            return super.getChildren(name);
+        }
+
+        private void materialize() {
+            if (materialized) return;
+            materialized = true;
+            super.addChild(new HierarchicalConfiguration.Node("url", "jdbc:x"));
+        }
+    }
+}
@@ -15,19 +15,46 @@
  */
 package org.lable.oss.dynamicconfig.core;
 
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.NativeConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationSource;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.lable.oss.dynamicconfig.core.ConfigurationLoader.makeReferencesAbsolute;
 import static org.lable.oss.dynamicconfig.core.ConfigurationLoader.solveDots;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ConfigurationLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void detectServiceProvidersTest() {
         List<ConfigurationSource> result = ConfigurationLoader.detectConfigurationSourceServiceProviders();
@@ -89,4 +116,219 @@ public class ConfigurationLoaderTest {
         assertThat(solveDots("a/b/../../x.txt"), is("x.txt"));
         assertThat(solveDots("a/b/../../../x.txt"), is(nullValue()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void assemblerForTest() throws ConfigurationException {
+        Configuration sourceConfiguration = new BaseConfiguration();
+        assertThat(ConfigurationLoader.assemblerFor(sourceConfiguration).getConfiguration(),
+                instanceOf(ConcurrentConfiguration.class));
+
+        sourceConfiguration.setProperty(ConfigurationLoader.ENGINE_PROPERTY, ConfigurationLoader.ENGINE_NATIVE);
+        ConfigurationLoader.Assembler assembler = ConfigurationLoader.assemblerFor(sourceConfiguration);
+        assertThat(assembler.getConfiguration(), instanceOf(NativeConfiguration.class));
+
+        ConfigurationComposition composition = new ConfigurationComposition();
+        composition.setRootReference(composition.updateReferences("root", new ArrayList<>()));
+        HierarchicalConfiguration root = new HierarchicalConfiguration();
+        root.setProperty("a", "b");
+        composition.setConfigurationOnReference(composition.getReference("root"), root);
+        assembler.assemble(composition);
+
+        assertThat(assembler.getConfiguration().getString("a"), is("b"));
+        assertThat(assembler.getConfiguration().containsKey(ConcurrentConfiguration.MODIFICATION_TIMESTAMP), is(true));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void assemblerForUnknownEngineTest() throws ConfigurationException {
+        Configuration sourceConfiguration = new BaseConfiguration();
+        sourceConfiguration.setProperty(ConfigurationLoader.ENGINE_PROPERTY, "bogus");
+        ConfigurationLoader.assemblerFor(sourceConfiguration);
+    }
+
+    @Test
+    public void loadRetainsSourcesOnlyWhenAskedTest() throws ConfigurationException {
+        Map<String, byte[]> parts = new HashMap<>();
+        parts.put("root", "a: b".getBytes(StandardCharsets.UTF_8));
+        ConfigurationConnection connection = new SnapshotStore.SnapshotConnection(parts);
+        HierarchicalConfigurationDeserializer deserializer = mock(HierarchicalConfigurationDeserializer.class);
+        when(deserializer.deserialize(any()))
+                .thenAnswer(invocation -> new ConfigurationResult(new HierarchicalConfiguration(), new ArrayList<>()));
+
+        ConfigurationComposition composition = new ConfigurationComposition();
+        ConfigurationLoader.load("root", connection, deserializer, composition);
+        assertThat(composition.getReference("root").source, is(nullValue()));
+        assertThat(composition.getSources().isEmpty(), is(true));
+
+        composition = new ConfigurationComposition();
+        composition.setRetainSources(true);
+        ConfigurationLoader.load("root", connection, deserializer, composition);
+        assertThat(composition.getReference("root").source, is(parts.get("root")));
+        assertThat(composition.getSources().get("root"), is(parts.get("root")));
+    }
+
+    @Test
+    public void revalidationKeepsCompleteSnapshotTest() throws Exception {
+        Map<String, byte[]> snapshot = new HashMap<>();
+        snapshot.put("root", "value=snapshot\ninclude=part".getBytes(StandardCharsets.UTF_8));
+        // Parts are named the way the composition names them, without a leading '/'.
+        snapshot.put("part", "other=snapshot".getBytes(StandardCharsets.UTF_8));
+        File file = folder.newFile();
+        new SnapshotStore(file.toPath()).write(snapshot);
+
+        // The root loads from the source, but the part it includes does not.
+        Map<String, byte[]> available = new ConcurrentHashMap<>();
+        available.put("root", "value=source\ninclude=part".getBytes(StandardCharsets.UTF_8));
+        Configuration sourceConfiguration = new BaseConfiguration();
+        sourceConfiguration.setProperty(ConfigurationLoader.ROOTCONFIG_PROPERTY, "root");
+        sourceConfiguration.setProperty(ConfigurationLoader.SNAPSHOT_PROPERTY, file.getPath());
+
+        ConfigurationManager manager = ConfigurationLoader.initialize(
+                new MapSource(available), sourceConfiguration, new LineDeserializer(), null);
+        Configuration configuration = manager.getConfiguration();
+        assertThat(configuration.getString("value"), is("snapshot"));
+
+        try {
+            manager.reload();
+            fail("Expected the partial configuration to be rejected.");
+        } catch (ConfigurationException e) {
+            // Expected.
+        }
+        assertThat(configuration.getString("value"), is("snapshot"));
+        assertThat(configuration.getString("other"), is("snapshot"));
+        assertThat(new String(new SnapshotStore(file.toPath()).read().get("root"), StandardCharsets.UTF_8),
+                is("value=snapshot\ninclude=part"));
+
+        available.put("part", "other=source".getBytes(StandardCharsets.UTF_8));
+        manager.reload();
+        assertThat(configuration.getString("value"), is("source"));
+        assertThat(configuration.getString("other"), is("source"));
+        assertThat(new String(new SnapshotStore(file.toPath()).read().get("part"), StandardCharsets.UTF_8),
+                is("other=source"));
+        manager.close();
+    }
+
+    @Test
+    public void selectDeserializerTest() throws ConfigurationException {
+        TextDeserializer text = new TextDeserializer();
+        IniDeserializer ini = new IniDeserializer();
+        List<HierarchicalConfigurationDeserializer> one = Collections.singletonList(text);
+        List<HierarchicalConfigurationDeserializer> two = Arrays.asList(text, ini);
+
+        assertThat(ConfigurationLoader.selectDeserializer(one, null, null), is(text));
+        assertThat(ConfigurationLoader.selectDeserializer(two, null, "/etc/app/config.ini"), is(ini));
+        assertThat(ConfigurationLoader.selectDeserializer(two, null, "settings.TXT"), is(text));
+        assertThat(ConfigurationLoader.selectDeserializer(two, "IniDeserializer", "config.txt"), is(ini));
+        assertThat(ConfigurationLoader.selectDeserializer(two, TextDeserializer.class.getName(), null), is(text));
+    }
+
+    @Test
+    public void selectDeserializerFailureTest() {
+        List<HierarchicalConfigurationDeserializer> two = Arrays.asList(new TextDeserializer(), new IniDeserializer());
+
+        // Not clear which one to use.
+        assertSelectionFails(two, null, null);
+        assertSelectionFails(two, null, "my-application");
+        assertSelectionFails(two, null, "config.yaml");
+        // None, or not the one asked for.
+        assertSelectionFails(Collections.emptyList(), null, "config.txt");
+        assertSelectionFails(two, "YamlDeserializer", "config.txt");
+    }
+
+    private static void assertSelectionFails(List<HierarchicalConfigurationDeserializer> candidates,
+                                             String wanted,
+                                             String rootConfigName) {
+        try {
+            ConfigurationLoader.selectDeserializer(candidates, wanted, rootConfigName);
+            fail("Expected no deserializer to be selected.");
+        } catch (ConfigurationException e) {
+            // Expected.
+        }
+    }
+
+    static class TextDeserializer extends LineDeserializer {
+        @Override
+        public String defaultConfigName() {
+            return "config.txt";
+        }
+    }
+
+    static class IniDeserializer extends LineDeserializer {
+        @Override
+        public String defaultConfigName() {
+            return "config.ini";
+        }
+    }
+
+    /**
+     * Reads one key=value pair per line; the key {@code include} includes another configuration part.
+     */
+    static class LineDeserializer implements HierarchicalConfigurationDeserializer {
+        @Override
+        public ConfigurationResult deserialize(InputStream input) throws ConfigurationException {
+            HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+            List<IncludeReference> includes = new ArrayList<>();
+            try {
+                for (String line : new String(input.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                    String[] pair = line.split("=", 2);
+                    if (pair[0].equals("include")) {
+                        includes.add(new IncludeReference(pair[1]));
+                    } else {
+                        configuration.setProperty(pair[0], pair[1]);
+                    }
+                }
+            } catch (IOException e) {
+                throw new ConfigurationException("Failed to read input.", e);
+            }
+            return new ConfigurationResult(configuration, includes);
+        }
+
+        @Override
+        public String defaultConfigName() {
+            return "root";
+        }
+    }
+
+    /**
+     * Serves the configuration parts currently in a map.
+     */
+    static class MapSource implements ConfigurationSource {
+        private final Map<String, byte[]> parts;
+
+        MapSource(Map<String, byte[]> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public String name() {
+            return "map";
+        }
+
+        @Override
+        public void configure(Configuration configuration, Configuration defaults) {
+        }
+
+        @Override
+        public ConfigurationConnection connect(ConfigChangeListener changeListener) {
+            return new ConfigurationConnection() {
+                @Override
+                public void listen(String name) {
+                }
+
+                @Override
+                public void stopListening(String name) {
+                }
+
+                @Override
+                public InputStream load(String name) throws ConfigurationException {
+                    byte[] source = parts.get(name);
+                    if (source == null) throw new ConfigurationException("No such part: " + name + ".");
+                    return new ByteArrayInputStream(source);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
+
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ConfigurationManagerTest {
+    @Test(timeout = 10_000)
+    public void closeWhileSourceIsUnreachableTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        // Never reaches the configuration source, like a client retrying against an unreachable cluster.
+        ConfigurationLoader.ConfigLoader unreachable = () -> {
+            loading.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ConfigurationException("Configuration source is unreachable.");
+        };
+        CountingConnection snapshotConnection = new CountingConnection();
+        ConfigurationManager manager =
+                new ConfigurationManager(new HierarchicalConfiguration(), unreachable, snapshotConnection);
+
+        manager.revalidateInBackground();
+        assertThat(loading.await(5, TimeUnit.SECONDS), is(true));
+        manager.close();
+
+        // Closed once, by the reload that was under way.
+        assertThat(snapshotConnection.closed.get(), is(1));
+    }
+
+    static class CountingConnection implements ConfigurationConnection {
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public void listen(String name) {
+        }
+
+        @Override
+        public void stopListening(String name) {
+        }
+
+        @Override
+        public InputStream load(String name) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReloadDelayTest {
+    @Test
+    public void noDelayByDefaultTest() throws ConfigurationException {
+        ReloadDelay delay = ReloadDelay.fromConfiguration(new BaseConfiguration());
+
+        assertThat(delay.isEnabled(), is(false));
+        assertThat(delay.nextDelay(), is(0L));
+        assertThat(delay.getMaximumDelay(), is(0L));
+    }
+
+    @Test
+    public void boundedDelayTest() throws ConfigurationException {
+        Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(ReloadDelay.SPREAD_PROPERTY, "1000");
+        configuration.setProperty(ReloadDelay.JITTER_PROPERTY, "100");
+        ReloadDelay delay = ReloadDelay.fromConfiguration(configuration);
+
+        assertThat(delay.isEnabled(), is(true));
+        assertThat(delay.getMaximumDelay(), is(1100L));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(delay.nextDelay(), is(both(greaterThanOrEqualTo(0L)).and(lessThan(1100L))));
+        }
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void negativeSpreadTest() throws ConfigurationException {
+        Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(ReloadDelay.SPREAD_PROPERTY, "-1");
+        ReloadDelay.fromConfiguration(configuration);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void invalidJitterTest() throws ConfigurationException {
+        Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(ReloadDelay.JITTER_PROPERTY, "soon");
+        ReloadDelay.fromConfiguration(configuration);
+    }
+
+    @Test
+    public void perInstanceOffsetTest() {
+        long offsetA = ReloadDelay.instanceOffset("app;host:name=host-01", 60_000);
+        long offsetB = ReloadDelay.instanceOffset("app;host:name=host-02", 60_000);
+
+        assertThat(ReloadDelay.instanceOffset("app;host:name=host-01", 60_000), is(offsetA));
+        assertThat(offsetA, is(not(offsetB)));
+        assertThat(offsetA, is(both(greaterThanOrEqualTo(0L)).and(lessThan(60_000L))));
+
+        // Without jitter, the delay is fixed for an instance.
+        ReloadDelay delay = new ReloadDelay(0, 60_000, true);
+        assertThat(delay.nextDelay(), is(delay.nextDelay()));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ReloadSchedulerTest {
+    @Test
+    public void coalesceTest() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ReloadScheduler scheduler = new ReloadScheduler(new ReloadDelay(0, 200, false), executor);
+
+        AtomicInteger runs = new AtomicInteger();
+        AtomicReference<String> lastRun = new AtomicReference<>();
+        scheduler.schedule("part", () -> {
+            runs.incrementAndGet();
+            lastRun.set("first");
+        });
+        scheduler.schedule("part", () -> {
+            runs.incrementAndGet();
+            lastRun.set("second");
+        });
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.SECONDS), is(true));
+        assertThat(runs.get(), is(1));
+        assertThat(lastRun.get(), is("second"));
+    }
+
+    @Test
+    public void withoutDelayRunsInlineTest() {
+        ReloadScheduler scheduler = new ReloadScheduler(ReloadDelay.NONE, null);
+
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("part", runs::incrementAndGet);
+        scheduler.schedule("part", runs::incrementAndGet);
+
+        assertThat(runs.get(), is(2));
+
+        scheduler.close();
+        scheduler.schedule("part", runs::incrementAndGet);
+        assertThat(runs.get(), is(2));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SnapshotStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+
+        Map<String, byte[]> parts = new HashMap<>();
+        parts.put("root.yaml", "a: 1".getBytes(StandardCharsets.UTF_8));
+        parts.put("dir/other.yaml", "b: 2".getBytes(StandardCharsets.UTF_8));
+        new SnapshotStore(file).write(parts);
+
+        Map<String, byte[]> read = new SnapshotStore(file).read();
+        assertThat(read.size(), is(2));
+        assertThat(new String(read.get("root.yaml"), StandardCharsets.UTF_8), is("a: 1"));
+        assertThat(new String(read.get("dir/other.yaml"), StandardCharsets.UTF_8), is("b: 2"));
+    }
+
+    @Test
+    public void unchangedPartsAreNotRewrittenTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+        SnapshotStore store = new SnapshotStore(file);
+
+        Map<String, byte[]> parts = new HashMap<>();
+        parts.put("root.yaml", "a: 1".getBytes(StandardCharsets.UTF_8));
+        store.write(parts);
+        FileTime epoch = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, epoch);
+
+        store.write(parts);
+        assertThat(Files.getLastModifiedTime(file), is(epoch));
+
+        parts.put("root.yaml", "a: 2".getBytes(StandardCharsets.UTF_8));
+        store.write(parts);
+        assertThat(Files.getLastModifiedTime(file).equals(epoch), is(false));
+    }
+
+    @Test
+    public void missingOrCorruptSnapshotTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+        assertThat(new SnapshotStore(file).read().isEmpty(), is(true));
+
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertThat(new SnapshotStore(file).read().isEmpty(), is(true));
+    }
+
+    @Test
+    public void snapshotConnectionTest() throws ConfigurationException, IOException {
+        Map<String, byte[]> parts = new HashMap<>();
+        parts.put("root.yaml", "a: 1".getBytes(StandardCharsets.UTF_8));
+        SnapshotStore.SnapshotConnection connection = new SnapshotStore.SnapshotConnection(parts);
+
+        try (InputStream is = connection.load("root.yaml")) {
+            assertThat(new String(is.readAllBytes(), StandardCharsets.UTF_8), is("a: 1"));
+        }
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void snapshotConnectionMissingPartTest() throws ConfigurationException {
+        new SnapshotStore.SnapshotConnection(new HashMap<>()).load("root.yaml");
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StringPoolTest {
+    @Test
+    public void internTest() {
+        String first = new String("connection.timeout");
+        String second = new String("connection.timeout");
+
+        assertThat(StringPool.intern(first), is(sameInstance(first)));
+        assertThat(StringPool.intern(second), is(sameInstance(first)));
+        assertThat(StringPool.intern((String) null), is(nullValue()));
+    }
+
+    @Test
+    public void internCharactersTest() {
+        String pooled = StringPool.intern(new String("db-primary.example.com"));
+        char[] buffer = "{\"host\": \"db-primary.example.com\"}".toCharArray();
+
+        assertThat(StringPool.intern(buffer, 10, 22), is(sameInstance(pooled)));
+        String other = StringPool.intern(buffer, 2, 4);
+        assertThat(other, is("host"));
+        assertThat(StringPool.intern(new String("host")), is(sameInstance(other)));
+    }
+
+    @Test
+    public void longStringsAreNotPooledTest() {
+        String first = new String(new char[StringPool.MAX_LENGTH + 1]);
+        String second = new String(new char[StringPool.MAX_LENGTH + 1]);
+
+        StringPool.intern(first);
+        assertThat(StringPool.intern(second), is(sameInstance(second)));
+    }
+
+    @Test
+    public void manyStringsTest() {
+        // Keep them reachable, so none are collected.
+        List<String> pooled = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            pooled.add(StringPool.intern("value-" + i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(StringPool.intern("value-" + i), is(sameInstance(pooled.get(i))));
+        }
+        assertThat(StringPool.size(), is(greaterThanOrEqualTo(10_000)));
+        assertThat(StringPool.internValue(42), is(42));
+    }
+}
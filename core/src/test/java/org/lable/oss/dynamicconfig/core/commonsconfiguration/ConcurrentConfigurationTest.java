@@ -20,12 +20,20 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.tree.OverrideCombiner;
 import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationSerializer;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collections;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.*;
 
 public class ConcurrentConfigurationTest {
@@ -200,4 +208,115 @@ public class ConcurrentConfigurationTest {
         System.out.println(concurrentConfiguration.getInt("a.a"));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSerialize() throws ConfigurationException {
+        CombinedConfiguration combinedConfiguration = new CombinedConfiguration(new OverrideCombiner());
+        ConcurrentConfiguration concurrentConfiguration = new ConcurrentConfiguration(combinedConfiguration);
+        HierarchicalConfigurationSerializer serializer = mock(HierarchicalConfigurationSerializer.class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        concurrentConfiguration.serialize(serializer, output, true);
+
+        verify(serializer, times(1)).serialize(combinedConfiguration, output, true);
+    }
+
+    @Test
+    public void testCompactReadPath() {
+        HierarchicalConfiguration confA = new HierarchicalConfiguration();
+        confA.setProperty("a.a", 1);
+        CombinedConfiguration combinedConfiguration = new CombinedConfiguration(new OverrideCombiner());
+        ConcurrentConfiguration concurrentConfiguration = new ConcurrentConfiguration(combinedConfiguration, true);
+
+        concurrentConfiguration.withConfiguration(cc -> cc.addConfiguration(confA, "a"));
+        assertThat(concurrentConfiguration.getInt("a.a"), is(1));
+
+        HierarchicalConfiguration confB = new HierarchicalConfiguration();
+        confB.setProperty("a.a", 2);
+        concurrentConfiguration.withConfiguration(cc -> {
+            cc.clear();
+            cc.addConfiguration(confB, "b");
+        });
+        assertThat(concurrentConfiguration.getInt("a.a"), is(2));
+        assertThat(concurrentConfiguration.containsKey(ConcurrentConfiguration.MODIFICATION_TIMESTAMP), is(true));
+        // The combined configuration, which is what gets serialized, keeps the timestamp as well.
+        assertThat(combinedConfiguration.containsKey(ConcurrentConfiguration.MODIFICATION_TIMESTAMP), is(true));
+
+        // Subsets are views of the compact copy, and do not follow later modifications.
+        Configuration subset = concurrentConfiguration.subset("a");
+        HierarchicalConfiguration confC = new HierarchicalConfiguration();
+        confC.setProperty("a.a", 3);
+        concurrentConfiguration.withConfiguration(cc -> {
+            cc.clear();
+            cc.addConfiguration(confC, "c");
+        });
+        assertThat(subset.getInt("a"), is(2));
+        assertThat(concurrentConfiguration.subset("a").getInt("a"), is(3));
+        assertThat(concurrentConfiguration.getKeys("a").next(), is("a.a"));
+    }
+
+    @Test
+    public void testSnapshotNotCopiedUntilRequested() {
+        HierarchicalConfiguration confA = new HierarchicalConfiguration();
+        confA.setProperty("a.a", 1);
+        CombinedConfiguration combinedConfiguration = new CombinedConfiguration(new OverrideCombiner());
+        ConcurrentConfiguration concurrentConfiguration = new ConcurrentConfiguration(combinedConfiguration);
+        concurrentConfiguration.withConfiguration(cc -> cc.addConfiguration(confA, "a"));
+
+        // No snapshot was taken yet, so the modification did not copy the configuration; the first snapshot does.
+        confA.setProperty("a.b", 2);
+        assertThat(concurrentConfiguration.snapshot().getInt("a.b"), is(2));
+    }
+
+    @Test
+    public void testSnapshot() {
+        HierarchicalConfiguration confA = new HierarchicalConfiguration();
+        confA.setProperty("a.a", 1);
+        confA.setProperty("a.b", "x");
+        CombinedConfiguration combinedConfiguration = new CombinedConfiguration(new OverrideCombiner());
+        ConcurrentConfiguration concurrentConfiguration = new ConcurrentConfiguration(combinedConfiguration);
+        concurrentConfiguration.withConfiguration(cc -> cc.addConfiguration(confA, "a"));
+
+        CompactConfiguration snapshot = concurrentConfiguration.snapshot();
+        assertThat(concurrentConfiguration.snapshot(), is(sameInstance(snapshot)));
+        assertThat(snapshot.getInt("a.a"), is(1));
+
+        HierarchicalConfiguration confB = new HierarchicalConfiguration();
+        confB.setProperty("a.a", 2);
+        concurrentConfiguration.withConfiguration(cc -> {
+            cc.clear();
+            cc.addConfiguration(confB, "b");
+        });
+
+        // The old snapshot is unaffected by the modification.
+        assertThat(snapshot.getInt("a.a"), is(1));
+        assertThat(snapshot.getString("a.b"), is("x"));
+
+        CompactConfiguration next = concurrentConfiguration.snapshot();
+        assertThat(next, is(not(sameInstance(snapshot))));
+        assertThat(next.getInt("a.a"), is(2));
+        assertThat(next.containsKey("a.b"), is(false));
+        assertThat(concurrentConfiguration.subset("a").getInt("a"), is(2));
+        assertThat(concurrentConfiguration.getKeys("a").next(), is("a.a"));
+
+        // Without the compact read path, other reads are not served from the snapshot.
+        confB.setProperty("a.c", 3);
+        assertThat(concurrentConfiguration.getInt("a.c"), is(3));
+        assertThat(concurrentConfiguration.containsKey("a.c"), is(true));
+        assertThat(concurrentConfiguration.subset("a").getInt("c"), is(3));
+        assertThat(concurrentConfiguration.snapshot(), is(sameInstance(next)));
+        assertThat(next.containsKey("a.c"), is(false));
+
+        // The snapshot is made by the modification itself, not by the first call to #snapshot() after it.
+        HierarchicalConfiguration confC = new HierarchicalConfiguration();
+        confC.setProperty("a.a", 3);
+        concurrentConfiguration.withConfiguration(cc -> {
+            cc.clear();
+            cc.addConfiguration(confC, "c");
+        });
+        confC.setProperty("a.d", 4);
+        assertThat(concurrentConfiguration.getInt("a.d"), is(4));
+        assertThat(concurrentConfiguration.snapshot().getInt("a.a"), is(3));
+        assertThat(concurrentConfiguration.snapshot().containsKey("a.d"), is(false));
+    }
+}
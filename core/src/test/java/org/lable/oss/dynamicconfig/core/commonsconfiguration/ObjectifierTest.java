@@ -16,8 +16,10 @@
 package org.lable.oss.dynamicconfig.core.commonsconfiguration;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -65,4 +67,19 @@ public class ObjectifierTest {
         List<Integer> intList = (List<Integer>) typeMap.get("listInt");
         assertThat(intList, is(Arrays.asList(1, 2, 3)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGroupChildren() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("b", "1");
+        configuration.setProperty("list", Arrays.asList("1", "2", "3"));
+        configuration.setProperty("a", "2");
+
+        Map<String, List<ConfigurationNode>> groups = Objectifier.groupChildren(configuration.getRootNode());
+
+        assertThat(new ArrayList<>(groups.keySet()), is(Arrays.asList("b", "list", "a")));
+        assertThat(groups.get("b").size(), is(1));
+        assertThat(groups.get("list").size(), is(3));
+        assertThat(groups.get("list").get(2).getValue(), is("3"));
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.compact;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CompactConfigurationTest {
+    @Test
+    public void sameAsOriginalTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("string", "value");
+        original.setProperty("int", 42);
+        original.setProperty("long", 10_000_000_000L);
+        original.setProperty("double", 1.5);
+        original.setProperty("boolean", true);
+        original.setProperty("tree.b.leaf", "b");
+        original.setProperty("tree.a.leaf", "a");
+        original.setProperty("tree.c", "c");
+        original.addProperty("repeated.item", "first");
+        original.addProperty("repeated.item", "second");
+        original.getRootNode().addChild(new HierarchicalConfiguration.Node("with.dot", "dotted"));
+        original.getRootNode().addChild(new HierarchicalConfiguration.Node("list", Arrays.asList(1, 2, 3)));
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        List<String> originalKeys = new ArrayList<>();
+        original.getKeys().forEachRemaining(originalKeys::add);
+        List<String> compactKeys = new ArrayList<>();
+        compact.getKeys().forEachRemaining(compactKeys::add);
+        assertThat(compactKeys, is(originalKeys));
+
+        for (String key : originalKeys) {
+            assertThat(key, compact.getProperty(key), is(original.getProperty(key)));
+        }
+
+        assertThat(compact.getString("with..dot"), is("dotted"));
+        assertThat(compact.getString("repeated.item(1)"), is("second"));
+        assertThat(compact.getList("repeated.item"), contains("first", "second"));
+        assertThat(compact.getList("list"), contains(1, 2, 3));
+        assertThat(compact.getInt("int"), is(42));
+        assertThat(compact.getProperty("long"), is(10_000_000_000L));
+        assertThat(compact.getBoolean("boolean"), is(true));
+        assertThat(compact.getString("tree.a.leaf"), is("a"));
+        assertThat(compact.getProperty("tree.d"), is(nullValue()));
+        assertThat(compact.containsKey("tree.c"), is(true));
+        assertThat(compact.containsKey("tree"), is(false));
+        assertThat(compact.getString("missing.key", "default"), is("default"));
+        assertThat(compact.isEmpty(), is(false));
+        assertThat(compact.subset("tree").getString("b.leaf"), is("b"));
+    }
+
+    @Test
+    public void emptyTest() {
+        CompactConfiguration compact = CompactConfiguration.of(new HierarchicalConfiguration());
+
+        assertThat(compact.isEmpty(), is(true));
+        assertThat(compact.getKeys().hasNext(), is(false));
+        assertThat(compact.size(), is(1));
+    }
+
+    @Test
+    public void namesAreSharedTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("a.timeout", 1);
+        original.setProperty("b.timeout", 2);
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        int[] a = compact.find("a.timeout");
+        int[] b = compact.find("b.timeout");
+        assertThat(compact.names[a[0]], is(sameInstance(compact.names[b[0]])));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnlyTest() {
+        CompactConfiguration.of(new HierarchicalConfiguration()).setProperty("a", "b");
+    }
+
+    @Test
+    public void childKeysTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("tenants.b.name", "B");
+        original.setProperty("tenants.a.name", "A");
+        original.setProperty("tenants.c", "C");
+        original.getRootNode().addChild(new HierarchicalConfiguration.Node("empty"));
+        original.getRootNode().addChild(new HierarchicalConfiguration.Node("with.dot", "dotted"));
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        assertThat(compact.childKeys("tenants"), contains("b", "a", "c"));
+        assertThat(compact.childKeys("tenants"), is(sameInstance(compact.childKeys("tenants"))));
+        // Nodes without values anywhere below them are skipped.
+        assertThat(compact.childKeys(""), contains("tenants", "with..dot"));
+        assertThat(compact.childKeys("missing"), is(empty()));
+
+        Map<String, Configuration> children = compact.childMap("tenants");
+        assertThat(children.keySet(), contains("b", "a", "c"));
+        assertThat(children.get("a").getString("name"), is("A"));
+        assertThat(compact.childMap("tenants"), is(sameInstance(children)));
+    }
+
+    @Test
+    public void getKeysWithPrefixTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("a", "root");
+        original.setProperty("a.b", 1);
+        original.setProperty("a.c.d", 2);
+        original.setProperty("ab.c", 3);
+        original.addProperty("list.item", "x");
+        original.addProperty("list.item", "y");
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        for (String prefix : Arrays.asList("a", "a.c", "ab", "list", "list.item", "missing")) {
+            List<String> expected = new ArrayList<>();
+            original.getKeys(prefix).forEachRemaining(expected::add);
+            List<String> actual = new ArrayList<>();
+            compact.getKeys(prefix).forEachRemaining(actual::add);
+            assertThat(prefix, actual, is(expected));
+        }
+    }
+
+    @Test
+    public void subsetTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("db.pool.size", 10);
+        original.setProperty("db.pool.name", "main");
+        original.setProperty("db.host", "localhost");
+        original.setProperty("other", "x");
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+        CompactConfiguration db = compact.subset("db");
+
+        assertThat(db.getInt("pool.size"), is(10));
+        assertThat(db.getString("host"), is("localhost"));
+        assertThat(db.containsKey("other"), is(false));
+        assertThat(db.isEmpty(), is(false));
+        List<String> keys = new ArrayList<>();
+        db.getKeys().forEachRemaining(keys::add);
+        assertThat(keys, contains("pool.size", "pool.name", "host"));
+
+        CompactConfiguration pool = db.subset("pool");
+        assertThat(pool.getString("name"), is("main"));
+        assertThat(pool.childKeys(""), contains("size", "name"));
+        assertThat(compact.subset("db.pool").getInt("size"), is(10));
+
+        assertThat(compact.subset("missing").isEmpty(), is(true));
+        assertThat(compact.subset(""), is(sameInstance(compact)));
+    }
+
+    @Test
+    public void selectTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("tenants.a.limits.rps", 10);
+        original.setProperty("tenants.b.limits.rps", 20);
+        original.setProperty("tenants.c.name", "no limits");
+        original.setProperty("services.x.timeout", "1s");
+        original.addProperty("services.y.timeout", "2s");
+        original.addProperty("services.y.timeout", "3s");
+        original.getRootNode().addChild(new HierarchicalConfiguration.Node("with.dot", "dotted"));
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        Map<String, Object> rps = compact.select("tenants.*.limits.rps");
+        assertThat(new ArrayList<>(rps.keySet()), contains("tenants.a.limits.rps", "tenants.b.limits.rps"));
+        assertThat(rps.get("tenants.b.limits.rps"), is(20));
+        assertThat(compact.select("tenants.*.limits.rps"), is(sameInstance(rps)));
+
+        Map<String, Object> timeouts = compact.select("services.*.timeout");
+        assertThat(timeouts.get("services.x.timeout"), is("1s"));
+        assertThat(timeouts.get("services.y.timeout"), is(Arrays.asList("2s", "3s")));
+
+        assertThat(compact.select("*").keySet(), contains("with..dot"));
+        assertThat(compact.select("tenants.a.limits.rps").get("tenants.a.limits.rps"), is(10));
+        assertThat(compact.select("tenants.*.missing").isEmpty(), is(true));
+        assertThat(compact.subset("tenants").select("*.name").get("c.name"), is("no limits"));
+    }
+
+    @Test
+    public void getAllTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("a.int", 42);
+        original.setProperty("a.long", 10_000_000_000L);
+        original.setProperty("a.double", 1.5);
+        original.setProperty("a.boolean", true);
+        original.setProperty("a.string", "7");
+        original.addProperty("a.repeated", "x");
+        original.addProperty("a.repeated", "y");
+
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        String[] keys = {"a.int", "a.string", "a.missing", "a.repeated", "a.repeated(1)"};
+        Object[] values = new Object[keys.length];
+        compact.getAll(keys, values);
+        assertThat(values, is(new Object[]{42, "7", null, Arrays.asList("x", "y"), "y"}));
+        assertThat(compact.getAll("a.int", "a.boolean"), is(new Object[]{42, true}));
+
+        int[] ints = new int[3];
+        compact.getInts(new String[]{"a.int", "a.string", "a.missing"}, ints, -1);
+        assertThat(ints, is(new int[]{42, 7, -1}));
+
+        long[] longs = new long[2];
+        compact.getLongs(new String[]{"a.long", "a.int"}, longs, 0L);
+        assertThat(longs, is(new long[]{10_000_000_000L, 42L}));
+
+        double[] doubles = new double[3];
+        compact.getDoubles(new String[]{"a.double", "a.int", "a.missing"}, doubles, 0.5);
+        assertThat(doubles, is(new double[]{1.5, 42.0, 0.5}));
+
+        boolean[] booleans = new boolean[2];
+        compact.getBooleans(new String[]{"a.boolean", "a.missing"}, booleans, false);
+        assertThat(booleans, is(new boolean[]{true, false}));
+    }
+
+    @Test(expected = ConversionException.class)
+    public void getIntsOverflowTest() {
+        HierarchicalConfiguration original = new HierarchicalConfiguration();
+        original.setProperty("a.int", 42);
+        original.setProperty("a.long", 10_000_000_000L);
+        CompactConfiguration compact = CompactConfiguration.of(original);
+
+        compact.getInts(new String[]{"a.int", "a.long"}, new int[2], 0);
+    }
+
+    @Test
+    public void mergeTest() {
+        HierarchicalConfiguration first = new HierarchicalConfiguration();
+        first.setProperty("a.b", 1);
+        first.addProperty("list.item", "first-1");
+        first.addProperty("list.item", "first-2");
+        HierarchicalConfiguration second = new HierarchicalConfiguration();
+        second.setProperty("a.b", 2);
+        second.setProperty("a.c", 3);
+        second.addProperty("list.item", "second");
+        second.setProperty("d", 4);
+
+        CompactConfiguration merged = CompactConfiguration.merge(Arrays.asList(first.getRootNode(), second.getRootNode()));
+
+        assertThat(merged.getInt("a.b"), is(1));
+        assertThat(merged.getInt("a.c"), is(3));
+        assertThat(merged.getInt("d"), is(4));
+        // Like OverrideCombiner, nodes that occur more than once are not merged.
+        assertThat(merged.getList("list.item"), contains("first-1", "first-2"));
+        assertThat(CompactConfiguration.merge(Collections.emptyList()).isEmpty(), is(true));
+    }
+
+    @Test
+    public void nativeConfigurationTest() {
+        HierarchicalConfiguration first = new HierarchicalConfiguration();
+        first.setProperty("a", 1);
+        NativeConfiguration configuration = new NativeConfiguration();
+        assertThat(configuration.isEmpty(), is(true));
+
+        configuration.update(Collections.singletonList(first.getRootNode()));
+        CompactConfiguration version = configuration.snapshot();
+        assertThat(configuration.getInt("a"), is(1));
+
+        first.setProperty("a", 2);
+        configuration.update(Collections.singletonList(first.getRootNode()));
+        assertThat(configuration.getInt("a"), is(2));
+        // Earlier versions are unaffected.
+        assertThat(version.getInt("a"), is(1));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.mapped;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class MappedConfigurationTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripTest() throws IOException, ConfigurationException {
+        HierarchicalConfiguration source = new HierarchicalConfiguration();
+        source.setProperty("type.string", "Okay");
+        source.setProperty("type.unicode", "ünïcödé ✓");
+        source.setProperty("type.long", 42L);
+        source.setProperty("type.int", 7);
+        source.setProperty("type.double", 1.5);
+        source.setProperty("type.boolean", true);
+        source.addProperty("type.list", "one");
+        source.addProperty("type.list", "two");
+        source.addProperty("type.list", 3);
+        source.setProperty("other", "Okay");
+
+        Path file = folder.getRoot().toPath().resolve("config.snapshot");
+        MappedSnapshotWriter.write(source, file);
+        MappedConfiguration mapped = new MappedConfiguration(file);
+
+        assertThat(mapped.isEmpty(), is(false));
+        assertThat(mapped.getString("type.string"), is("Okay"));
+        assertThat(mapped.getString("type.unicode"), is("ünïcödé ✓"));
+        assertThat(mapped.getLong("type.long"), is(42L));
+        assertThat(mapped.getInt("type.int"), is(7));
+        assertThat(mapped.getDouble("type.double"), is(1.5));
+        assertThat(mapped.getBoolean("type.boolean"), is(true));
+        assertThat(mapped.getList("type.list"), is(Arrays.asList("one", "two", 3L)));
+        assertThat(mapped.getString("other"), is("Okay"));
+
+        assertThat(mapped.containsKey("type"), is(false));
+        assertThat(mapped.containsKey("type.zzz"), is(false));
+        assertThat(mapped.getProperty("a"), is(nullValue()));
+        assertThat(mapped.getProperty("zzz"), is(nullValue()));
+
+        List<String> keys = new ArrayList<>();
+        mapped.getKeys().forEachRemaining(keys::add);
+        assertThat(keys, contains("other", "type.boolean", "type.double", "type.int", "type.list", "type.long",
+                "type.string", "type.unicode"));
+    }
+
+    @Test
+    public void emptyTest() throws IOException, ConfigurationException {
+        Path file = folder.getRoot().toPath().resolve("config.snapshot");
+        MappedSnapshotWriter.write(new HierarchicalConfiguration(), file);
+        MappedConfiguration mapped = new MappedConfiguration(file);
+
+        assertThat(mapped.isEmpty(), is(true));
+        assertThat(mapped.getProperty("a"), is(nullValue()));
+        assertThat(mapped.getKeys().hasNext(), is(false));
+    }
+
+    @Test
+    public void hotSwapTest() throws IOException, ConfigurationException {
+        Path file = folder.getRoot().toPath().resolve("config.snapshot");
+        HierarchicalConfiguration source = new HierarchicalConfiguration();
+        source.setProperty("key", "first");
+        MappedSnapshotWriter.write(source, file);
+
+        MappedConfiguration mapped = new MappedConfiguration(file, 0, TimeUnit.MILLISECONDS);
+        assertThat(mapped.getString("key"), is("first"));
+
+        source.setProperty("key", "second");
+        source.setProperty("new", "value");
+        MappedSnapshotWriter.write(source, file);
+
+        assertThat(mapped.getString("key"), is("second"));
+        assertThat(mapped.getString("new"), is("value"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void notASnapshotTest() throws IOException, ConfigurationException {
+        Path file = folder.getRoot().toPath().resolve("config.snapshot");
+        Files.write(file, "Not a snapshot, but long enough to hold a header.".getBytes(StandardCharsets.UTF_8));
+        new MappedConfiguration(file);
+    }
+
+    @Test
+    public void truncatedSnapshotTest() throws IOException {
+        Path file = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Every cut that leaves at least the header intact must be rejected when the file is mapped.
+        for (int length = MappedFormat.HEADER_SIZE; length < bytes.length; length++) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertCorrupt(file);
+        }
+    }
+
+    @Test
+    public void corruptOffsetsTest() throws IOException {
+        Path file = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        int keyTableOffset = ByteBuffer.wrap(bytes).getInt(3 * Integer.BYTES);
+
+        // Header fields: key count, key table offset, string pool offset, and value area offset.
+        for (int field = 2; field < 6; field++) {
+            for (int value : new int[]{-1, bytes.length + 1, Integer.MAX_VALUE}) {
+                byte[] corrupt = bytes.clone();
+                ByteBuffer.wrap(corrupt).putInt(field * Integer.BYTES, value);
+                Files.write(file, corrupt);
+                assertCorrupt(file);
+            }
+        }
+
+        // Key string offset and value offset of the first key.
+        for (int entry = 0; entry < 2; entry++) {
+            for (int value : new int[]{-1, 0, keyTableOffset + 1, bytes.length - 1, bytes.length + 4}) {
+                byte[] corrupt = bytes.clone();
+                ByteBuffer.wrap(corrupt).putInt(keyTableOffset + entry * Integer.BYTES, value);
+                Files.write(file, corrupt);
+                assertCorrupt(file);
+            }
+        }
+    }
+
+    @Test
+    public void corruptReplacementTest() throws IOException, ConfigurationException {
+        Path file = writeSnapshot();
+        MappedConfiguration mapped = new MappedConfiguration(file, 0, TimeUnit.MILLISECONDS);
+
+        Path replacement = folder.getRoot().toPath().resolve("replacement");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(replacement, Arrays.copyOf(bytes, bytes.length - 1));
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+
+        // The corrupt file is not mapped; the previous version stays in use.
+        assertThat(mapped.refresh(), is(false));
+        assertThat(mapped.getString("key"), is("value"));
+    }
+
+    Path writeSnapshot() throws IOException {
+        HierarchicalConfiguration source = new HierarchicalConfiguration();
+        source.setProperty("key", "value");
+        source.addProperty("list", 1);
+        source.addProperty("list", "two");
+        source.setProperty("number", 1.5);
+        Path file = folder.getRoot().toPath().resolve("config.snapshot");
+        MappedSnapshotWriter.write(source, file);
+        return file;
+    }
+
+    static void assertCorrupt(Path file) throws IOException {
+        try {
+            new MappedConfiguration(file);
+            fail("Expected the corrupt snapshot to be rejected.");
+        } catch (ConfigurationException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeThat;
+
+public class BinderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bindTest() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("db.poolSize", "12");
+        configuration.setProperty("db.timeout", "PT10S");
+        configuration.addProperty("db.hosts", "a");
+        configuration.addProperty("db.hosts", "b");
+
+        DbConfig db = Binder.of(DbConfig.class).bind(configuration, "db");
+
+        assertThat(db.poolSize, is(12));
+        assertThat(db.timeout, is(Duration.ofSeconds(10)));
+        assertThat(db.hosts, contains("a", "b"));
+        // Keys that are not set leave the field as initialized.
+        assertThat(db.name, is("default"));
+        assertThat(db.ignored, is(0));
+    }
+
+    @Test
+    public void sameBinderTest() {
+        assertThat(Binder.of(DbConfig.class), is(sameInstance(Binder.of(DbConfig.class))));
+    }
+
+    @Test
+    public void privateSuperclassFieldTest() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("server.host", "example.com");
+        configuration.setProperty("server.port", "8080");
+
+        ServerSettings server = Binder.of(ServerSettings.class).bind(configuration, "server");
+
+        assertThat(server.getHost(), is("example.com"));
+        assertThat(server.getPort(), is(8080));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedPropertyTest() {
+        Binder.of(Unsupported.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noConstructorTest() {
+        Binder.of(NoConstructor.class);
+    }
+
+    @Test
+    public void recordTest() throws Exception {
+        Class<?> endpoint = compileRecord();
+
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("endpoint.host", "example.com");
+        configuration.setProperty("endpoint.port", "8080");
+        configuration.addProperty("endpoint.tags", "a");
+        configuration.addProperty("endpoint.tags", "b");
+
+        Object bound = Binder.of(endpoint).bind(configuration, "endpoint");
+
+        assertThat(accessor(bound, "host"), is("example.com"));
+        assertThat(accessor(bound, "port"), is(8080));
+        assertThat(accessor(bound, "tags"), is(Arrays.asList("a", "b")));
+
+        // Components of a reference type may be left unset.
+        configuration.clearProperty("endpoint.host");
+        configuration.clearProperty("endpoint.tags");
+        bound = Binder.of(endpoint).bind(configuration, "endpoint");
+        assertThat(accessor(bound, "host"), is(nullValue()));
+        assertThat(accessor(bound, "tags"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordMissingPrimitiveComponentTest() throws Exception {
+        Class<?> endpoint = compileRecord();
+
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("endpoint.host", "example.com");
+
+        Binder.of(endpoint).bind(configuration, "endpoint");
+    }
+
+    /**
+     * Compile a record at runtime, because this module is built for a Java version without records. Tests that use
+     * it are skipped when not running on Java 16 or later.
+     */
+    Class<?> compileRecord() throws IOException, ClassNotFoundException {
+        assumeThat(Runtime.version().feature(), is(greaterThanOrEqualTo(16)));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeThat(compiler, is(notNullValue()));
+
+        File source = folder.newFile("Endpoint.java");
+        Files.write(source.toPath(),
+                "public record Endpoint(String host, int port, java.util.List<String> tags) {}"
+                        .getBytes(StandardCharsets.UTF_8));
+        assertThat(compiler.run(null, null, null, source.getPath()), is(0));
+
+        URLClassLoader loader = new URLClassLoader(
+                new URL[]{folder.getRoot().toURI().toURL()}, BinderTest.class.getClassLoader());
+        return loader.loadClass("Endpoint");
+    }
+
+    static Object accessor(Object record, String name) throws ReflectiveOperationException {
+        Method method = record.getClass().getMethod(name);
+        return method.invoke(record);
+    }
+
+    static class DbConfig {
+        int poolSize;
+        Duration timeout;
+        List<String> hosts;
+        String name = "default";
+        transient int ignored;
+
+        private DbConfig() {
+        }
+    }
+
+    static class Unsupported {
+        Thread thread;
+    }
+
+    static class NoConstructor {
+        String name;
+
+        NoConstructor(String name) {
+            this.name = name;
+        }
+    }
+}
+
+// Top-level classes are not nestmates, so the private field of the superclass is not accessible from the subclass.
+class HostSettings {
+    private String host;
+
+    String getHost() {
+        return host;
+    }
+}
+
+class ServerSettings extends HostSettings {
+    private int port;
+
+    int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BindingTest {
+    @Test
+    public void rebindOnlyWhenChangedTest() {
+        AtomicReference<CompactConfiguration> current = new AtomicReference<>(snapshot("a", "x"));
+        Binding<Server> binding = Binding.of(current::get, "server", Server.class);
+
+        Server first = binding.get();
+        assertThat(first.host, is("a"));
+        assertThat(binding.get(), is(sameInstance(first)));
+
+        // A change outside the prefix keeps the bound object.
+        current.set(snapshot("a", "y"));
+        assertThat(binding.get(), is(sameInstance(first)));
+
+        current.set(snapshot("b", "y"));
+        Server second = binding.get();
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(second.host, is("b"));
+    }
+
+    private static CompactConfiguration snapshot(String host, String other) {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("server.host", host);
+        configuration.setProperty("other", other);
+        return CompactConfiguration.of(configuration);
+    }
+
+    static class Server {
+        String host;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+
+import java.lang.annotation.RetentionPolicy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ValueReadersTest {
+    @Test
+    public void forTypeTest() throws Exception {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("int", "42");
+        configuration.setProperty("bool", "true");
+        configuration.setProperty("decimal", "1.25");
+        configuration.setProperty("millis", 1500L);
+        configuration.setProperty("iso", "PT1M");
+        configuration.setProperty("enum", "RUNTIME");
+        configuration.setProperty("list", Arrays.asList("a", "b"));
+
+        assertThat(ValueReaders.forType(Integer.class).read(configuration, "int"), is(42));
+        assertThat(ValueReaders.forType(int.class).read(configuration, "int"), is(42));
+        assertThat(ValueReaders.forType(Long.class).read(configuration, "int"), is(42L));
+        assertThat(ValueReaders.forType(String.class).read(configuration, "int"), is("42"));
+        assertThat(ValueReaders.forType(Boolean.class).read(configuration, "bool"), is(true));
+        assertThat(ValueReaders.forType(BigDecimal.class).read(configuration, "decimal"),
+                is(new BigDecimal("1.25")));
+        assertThat(ValueReaders.forType(Duration.class).read(configuration, "millis"), is(Duration.ofMillis(1500)));
+        assertThat(ValueReaders.forType(Duration.class).read(configuration, "iso"), is(Duration.ofMinutes(1)));
+        assertThat(ValueReaders.forType(RetentionPolicy.class).read(configuration, "enum"),
+                is(RetentionPolicy.RUNTIME));
+
+        Object list = ValueReaders.forType(ValueReadersTest.class.getDeclaredField("stringList").getGenericType())
+                .read(configuration, "list");
+        assertThat(list, is(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void missingTest() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+
+        assertThat(ValueReaders.forType(Integer.class).read(configuration, "x"), is(nullValue()));
+        assertThat(ValueReaders.forType(Duration.class).read(configuration, "x"), is(nullValue()));
+        assertThat(ValueReaders.forType(List.class).read(configuration, "x"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedTypeTest() {
+        ValueReaders.forType(Thread.class);
+    }
+
+    @SuppressWarnings("unused")
+    private List<String> stringList;
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.core.value;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ValueTest {
+    @Test
+    public void convertOncePerSnapshotTest() {
+        AtomicReference<CompactConfiguration> current = new AtomicReference<>(snapshot("10"));
+        AtomicInteger conversions = new AtomicInteger();
+        Value<Integer> value = Value.of(current::get, "a.b", (configuration, key) -> {
+            conversions.incrementAndGet();
+            return configuration.getInteger(key, null);
+        });
+
+        assertThat(value.get(), is(10));
+        assertThat(value.get(), is(10));
+        assertThat(conversions.get(), is(1));
+
+        current.set(snapshot("20"));
+        assertThat(value.get(), is(20));
+        assertThat(value.get(), is(20));
+        assertThat(conversions.get(), is(2));
+    }
+
+    @Test
+    public void typedTest() {
+        AtomicReference<CompactConfiguration> current = new AtomicReference<>(snapshot("PT5S"));
+        Value<Duration> value = Value.of(current::get, "a.b", Duration.class);
+
+        assertThat(value.get(), is(Duration.ofSeconds(5)));
+        assertThat(value.getKey(), is("a.b"));
+
+        Value<String> missing = Value.of(current::get, "a.x", String.class);
+        assertThat(missing.get(), is(nullValue()));
+    }
+
+    private static CompactConfiguration snapshot(String value) {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("a.b", value);
+        return CompactConfiguration.of(configuration);
+    }
+}
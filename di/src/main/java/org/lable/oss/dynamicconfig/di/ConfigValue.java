@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Injects a live configuration value into a field of type {@link org.lable.oss.dynamicconfig.core.value.Value},
+ * {@link javax.inject.Provider}, or {@link com.google.inject.Provider}:
+ * <pre>{@code
+ * @ConfigValue("http.timeout")
+ * Value<Duration> timeout;
+ * }</pre>
+ * The value is converted to the field's type argument once per version of the configuration; see
+ * {@link org.lable.oss.dynamicconfig.core.value.ValueReaders} for the supported types. All fields injected for the
+ * same key and type share one value.
+ */
+@Retention(RUNTIME)
+@Target({FIELD})
+public @interface ConfigValue {
+    /**
+     * @return Configuration key.
+     */
+    String value();
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import com.google.inject.MembersInjector;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+import org.lable.oss.dynamicconfig.core.ConfigurationManager;
+import org.lable.oss.dynamicconfig.core.value.Value;
+import org.lable.oss.dynamicconfig.core.value.ValueReaders;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Injects fields annotated with {@link ConfigValue}.
+ */
+class ConfigValueListener implements TypeListener {
+    // Values shared by all fields injected with the same key and value type.
+    private final ConcurrentMap<List<Object>, Value<?>> values = new ConcurrentHashMap<>();
+
+    @Override
+    public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+        Provider<ConfigurationManager> configurationManager = null;
+        Class<?> clazz = type.getRawType();
+        for (; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                ConfigValue annotation = field.getAnnotation(ConfigValue.class);
+                if (annotation == null) continue;
+
+                Type valueType = valueType(field);
+                if (valueType == null) {
+                    encounter.addError("Field %s annotated with @ConfigValue must be a Value<T> or Provider<T>.",
+                            field);
+                    continue;
+                }
+                try {
+                    ValueReaders.forType(valueType);
+                } catch (IllegalArgumentException e) {
+                    encounter.addError("Field %s annotated with @ConfigValue: %s", field, e.getMessage());
+                    continue;
+                }
+
+                if (configurationManager == null) {
+                    configurationManager = encounter.getProvider(ConfigurationManager.class);
+                }
+                Provider<ConfigurationManager> managerProvider = configurationManager;
+                String key = annotation.value();
+                boolean asValue = field.getType() == Value.class;
+                field.setAccessible(true);
+                encounter.register((MembersInjector<I>) instance -> {
+                    Value<?> value = values.computeIfAbsent(Arrays.asList(key, valueType),
+                            k -> Value.of(managerProvider.get(), key, valueType));
+                    try {
+                        field.set(instance, asValue ? value : (Provider<Object>) value::get);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Failed to inject field " + field + ".", e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Get the type argument of a field of type {@code Value<T>} or {@code Provider<T>}.
+     *
+     * @param field Field.
+     * @return The type argument, or {@code null} if the field has a different type.
+     */
+    static Type valueType(Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType != Value.class && fieldType != Provider.class && fieldType != javax.inject.Provider.class) {
+            return null;
+        }
+        if (!(field.getGenericType() instanceof ParameterizedType)) return null;
+
+        return ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+    }
+}
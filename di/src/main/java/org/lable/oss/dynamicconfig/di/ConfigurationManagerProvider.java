@@ -24,6 +24,7 @@ import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserialize
 
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.util.Set;
 
 /**
  * Provides a singleton, thread-safe configuration manager instance by invoking {@link
@@ -32,13 +33,15 @@ import javax.inject.Singleton;
  * properties that configure it.
  * <p>
  * A default configuration can be specified by binding {@link ConfigurationDefaults} to an instance of
- * {@link HierarchicalConfiguration}.
+ * {@link HierarchicalConfiguration}. The configuration keys loaded can be limited by binding a set of prefixes annotated
+ * with {@link ConfigurationPrefixes}.
  */
 @Singleton
 public class ConfigurationManagerProvider implements Provider<ConfigurationManager> {
     final HierarchicalConfigurationDeserializer deserializer;
     HierarchicalConfiguration defaults;
     String sourceType;
+    Set<String> prefixes;
     ConfigurationManagerCloser closer;
 
     @Inject
@@ -56,6 +59,11 @@ public class ConfigurationManagerProvider implements Provider<ConfigurationManag
         this.sourceType = sourceType;
     }
 
+    @Inject(optional = true)
+    public void setPrefixes(@ConfigurationPrefixes Set<String> prefixes) {
+        this.prefixes = prefixes;
+    }
+
     @Inject(optional = true)
     public void setCloser(ConfigurationManagerCloser closer) {
         this.closer = closer;
@@ -65,7 +73,7 @@ public class ConfigurationManagerProvider implements Provider<ConfigurationManag
     public ConfigurationManager get() {
         try {
             ConfigurationManager configurationManager = ConfigurationLoader.configureFromProperties(
-                    sourceType, defaults, deserializer
+                    sourceType, defaults, deserializer, prefixes
             );
             if (closer != null) {
                 closer.register(configurationManager);
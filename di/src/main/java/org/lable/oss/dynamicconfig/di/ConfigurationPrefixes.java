@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import javax.inject.Qualifier;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Dependency injection annotation for a set of Strings holding the configuration key prefixes the application reads.
+ * When bound, only the configuration keys under these prefixes are loaded. This takes precedence over the system
+ * property {@code org.lable.oss.dynamicconfig.prefixes}.
+ * <p>
+ * Because this is a set, modules can each contribute their own prefixes through a multibinder:
+ * <pre>{@code
+ * Multibinder.newSetBinder(binder(), String.class, ConfigurationPrefixes.class).addBinding().toInstance("db");
+ * }</pre>
+ */
+@Retention(RUNTIME)
+@Target({PARAMETER})
+@Qualifier
+public @interface ConfigurationPrefixes {
+}
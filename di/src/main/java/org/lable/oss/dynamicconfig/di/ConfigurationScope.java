@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Guice scope for bindings annotated with {@link ConfigurationScoped}. Objects are shared within a unit of work on the
+ * current thread, and discarded when it ends:
+ * <pre>{@code
+ * try (ConfigurationScope.UnitOfWork ignored = configurationScope.enter()) {
+ *     // All @ConfigurationSnapshot Configuration instances injected here are the same snapshot.
+ * }
+ * }</pre>
+ * An instance is bound by {@link DynamicConfigModule}, and can be injected to enter units of work.
+ */
+public class ConfigurationScope implements Scope {
+    private final ThreadLocal<Map<Key<?>, Object>> values = new ThreadLocal<>();
+
+    /**
+     * Start a unit of work on the current thread.
+     *
+     * @return A handle that ends the unit of work when closed.
+     * @throws IllegalStateException Thrown when the current thread is already in a unit of work.
+     */
+    public UnitOfWork enter() {
+        if (values.get() != null) {
+            throw new IllegalStateException("A unit of work is already in progress on this thread.");
+        }
+        values.set(new HashMap<>());
+        return values::remove;
+    }
+
+    /**
+     * @return True if the current thread is in a unit of work.
+     */
+    public boolean inScope() {
+        return values.get() != null;
+    }
+
+    @Override
+    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+        return () -> {
+            Map<Key<?>, Object> scopedObjects = values.get();
+            if (scopedObjects == null) {
+                throw new OutOfScopeException("Cannot access " + key + " outside of a unit of work.");
+            }
+
+            @SuppressWarnings("unchecked")
+            T current = (T) scopedObjects.get(key);
+            if (current == null && !scopedObjects.containsKey(key)) {
+                current = unscoped.get();
+                scopedObjects.put(key, current);
+            }
+            return current;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigurationScope";
+    }
+
+    /**
+     * A unit of work started by {@link #enter()}.
+     */
+    public interface UnitOfWork extends AutoCloseable {
+        /**
+         * End the unit of work.
+         */
+        @Override
+        void close();
+    }
+}
@@ -18,41 +18,52 @@ package org.lable.oss.dynamicconfig.di;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.matcher.Matchers;
 import org.apache.commons.configuration.Configuration;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationLoader;
 import org.lable.oss.dynamicconfig.core.ConfigurationManager;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
-import java.util.ServiceLoader;
-
 /**
  * Guice dependency injection module.
+ * <p>
+ * Besides the live {@link Configuration}, this binds a {@link ConfigurationSnapshot} qualified configuration in
+ * {@link ConfigurationScoped} scope: an immutable snapshot taken once per unit of work (see
+ * {@link ConfigurationScope}). Fields annotated with {@link ConfigValue} are injected with live values of a single
+ * configuration key.
  */
 public class DynamicConfigModule extends AbstractModule {
     private final Logger logger = LoggerFactory.getLogger(DynamicConfigModule.class);
 
+    private final ConfigurationScope configurationScope = new ConfigurationScope();
+
     @Override
     protected void configure() {
+        bindScope(ConfigurationScoped.class, configurationScope);
+        bindListener(Matchers.any(), new ConfigValueListener());
+        bind(ConfigurationScope.class).toInstance(configurationScope);
+
         bind(ConfigurationManager.class).toProvider(ConfigurationManagerProvider.class).in(Singleton.class);
         bind(Configuration.class).toProvider(ConfigurationProvider.class).in(Singleton.class);
+        bind(Configuration.class).annotatedWith(ConfigurationSnapshot.class)
+                .toProvider(ConfigurationSnapshotProvider.class).in(ConfigurationScoped.class);
     }
 
+    /**
+     * Provide the deserializer found on the classpath. When there is more than one, see
+     * {@link ConfigurationLoader#detectDeserializer()} for how one is chosen.
+     *
+     * @return The deserializer.
+     * @throws ConfigurationException Thrown when no deserializer is found, or when it is not clear which one to use.
+     */
     @Provides
     @Singleton
     public HierarchicalConfigurationDeserializer provideDeserializer() throws ConfigurationException {
-        ServiceLoader<HierarchicalConfigurationDeserializer> serviceLoader =
-                ServiceLoader.load(HierarchicalConfigurationDeserializer.class);
-
-        Iterator<HierarchicalConfigurationDeserializer> iterator = serviceLoader.iterator();
-        if (!iterator.hasNext()) {
-            throw new ConfigurationException("No HierarchicalConfigurationDeserializer found on the classpath. " +
-                    "You may need to load a module containing a suitable deserializer.");
-        }
-
-        HierarchicalConfigurationDeserializer hierarchicalConfigurationDeserializer = iterator.next();
+        HierarchicalConfigurationDeserializer hierarchicalConfigurationDeserializer =
+                ConfigurationLoader.detectDeserializer();
         logger.info("Found HierarchicalConfigurationDeserializer {}; providing it to the configuration system.",
                 hierarchicalConfigurationDeserializer.getClass().getName());
         return hierarchicalConfigurationDeserializer;
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.apache.commons.configuration.CombinedConfiguration;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.OverrideCombiner;
+import org.junit.Before;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationManager;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
+import org.lable.oss.dynamicconfig.core.value.Value;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ConfigValueListenerTest {
+    ConcurrentConfiguration configuration;
+    Injector injector;
+
+    @Before
+    public void setUp() {
+        configuration = new ConcurrentConfiguration(new CombinedConfiguration(new OverrideCombiner()));
+        update(1);
+        ConfigurationManager configurationManager = new ConfigurationManager(configuration, null, null);
+        injector = Guice.createInjector(Modules.override(new DynamicConfigModule())
+                .with(binder -> binder.bind(ConfigurationManager.class).toInstance(configurationManager)));
+    }
+
+    @Test
+    public void injectFieldsTest() {
+        Service service = injector.getInstance(Service.class);
+
+        assertThat(service.value.get(), is(1));
+        assertThat(service.provider.get(), is(1));
+        assertThat(service.guiceProvider.get(), is("1"));
+    }
+
+    @Test
+    public void sharedByKeyAndTypeTest() {
+        Service service = injector.getInstance(Service.class);
+        OtherService other = injector.getInstance(OtherService.class);
+
+        // Same key and type.
+        assertThat(other.value, is(sameInstance(service.value)));
+        // Same key, other type.
+        assertThat(other.asString, is(not(sameInstance((Object) other.value))));
+        // Other key, same type.
+        assertThat(other.otherKey, is(not(sameInstance(other.value))));
+    }
+
+    @Test
+    public void updateTest() {
+        Service service = injector.getInstance(Service.class);
+        OtherService other = injector.getInstance(OtherService.class);
+        assertThat(other.otherKey.get(), is(10));
+
+        update(2);
+
+        assertThat(service.value.get(), is(2));
+        assertThat(service.provider.get(), is(2));
+        assertThat(service.guiceProvider.get(), is("2"));
+        assertThat(other.asString.get(), is("2"));
+        assertThat(other.otherKey.get(), is(20));
+    }
+
+    void update(int a) {
+        configuration.withConfiguration(combinedConfiguration -> {
+            HierarchicalConfiguration part = new HierarchicalConfiguration();
+            // Strings, so they can be read as either type.
+            part.setProperty("a", String.valueOf(a));
+            part.setProperty("b", String.valueOf(a * 10));
+            combinedConfiguration.clear();
+            combinedConfiguration.addConfiguration(part, "part");
+        });
+    }
+
+    static class Service {
+        @ConfigValue("a")
+        Value<Integer> value;
+
+        @ConfigValue("a")
+        javax.inject.Provider<Integer> provider;
+
+        @ConfigValue("a")
+        com.google.inject.Provider<String> guiceProvider;
+    }
+
+    static class OtherService {
+        @ConfigValue("a")
+        Value<Integer> value;
+
+        @ConfigValue("a")
+        Value<String> asString;
+
+        @ConfigValue("b")
+        Value<Integer> otherKey;
+    }
+}
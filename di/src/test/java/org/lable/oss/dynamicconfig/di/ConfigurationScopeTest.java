@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.di;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.ProvisionException;
+import com.google.inject.util.Modules;
+import org.apache.commons.configuration.CombinedConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.OverrideCombiner;
+import org.junit.Before;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationManager;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class ConfigurationScopeTest {
+    static final Key<Configuration> SNAPSHOT = Key.get(Configuration.class, ConfigurationSnapshot.class);
+
+    ConcurrentConfiguration configuration;
+    Injector injector;
+    ConfigurationScope scope;
+
+    @Before
+    public void setUp() {
+        configuration = new ConcurrentConfiguration(new CombinedConfiguration(new OverrideCombiner()));
+        update(1);
+        ConfigurationManager configurationManager = new ConfigurationManager(configuration, null, null);
+        injector = Guice.createInjector(Modules.override(new DynamicConfigModule())
+                .with(binder -> binder.bind(ConfigurationManager.class).toInstance(configurationManager)));
+        scope = injector.getInstance(ConfigurationScope.class);
+    }
+
+    @Test
+    public void sameSnapshotWithinUnitOfWorkTest() {
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            Configuration snapshot = injector.getInstance(SNAPSHOT);
+            assertThat(injector.getInstance(SNAPSHOT), is(sameInstance(snapshot)));
+            assertThat(injector.getInstance(Client.class).snapshot, is(sameInstance(snapshot)));
+
+            // The unit of work keeps its snapshot when the configuration changes.
+            update(2);
+            assertThat(injector.getInstance(SNAPSHOT), is(sameInstance(snapshot)));
+            assertThat(snapshot.getInt("a"), is(1));
+            assertThat(injector.getInstance(Configuration.class).getInt("a"), is(2));
+        }
+    }
+
+    @Test
+    public void freshSnapshotAfterChangeTest() {
+        Configuration first;
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            first = injector.getInstance(SNAPSHOT);
+        }
+
+        update(2);
+
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            Configuration second = injector.getInstance(SNAPSHOT);
+            assertThat(second, is(not(sameInstance(first))));
+            assertThat(second.getInt("a"), is(2));
+            assertThat(first.getInt("a"), is(1));
+        }
+    }
+
+    @Test
+    public void outOfScopeTest() {
+        assertThat(scope.inScope(), is(false));
+        try {
+            injector.getInstance(SNAPSHOT);
+            fail("Expected the snapshot to be unavailable outside of a unit of work.");
+        } catch (ProvisionException e) {
+            assertThat(e.getCause(), is(instanceOf(OutOfScopeException.class)));
+        }
+
+        // The same applies after a unit of work has ended.
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            assertThat(scope.inScope(), is(true));
+            injector.getInstance(SNAPSHOT);
+        }
+        assertThat(scope.inScope(), is(false));
+        try {
+            injector.getInstance(SNAPSHOT);
+            fail("Expected the snapshot to be unavailable outside of a unit of work.");
+        } catch (ProvisionException e) {
+            assertThat(e.getCause(), is(instanceOf(OutOfScopeException.class)));
+        }
+    }
+
+    @Test
+    public void nestedEnterTest() {
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            Configuration snapshot = injector.getInstance(SNAPSHOT);
+            try {
+                scope.enter();
+                fail("Expected nested units of work to be rejected.");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+            // The unit of work in progress is unaffected.
+            assertThat(scope.inScope(), is(true));
+            assertThat(injector.getInstance(SNAPSHOT), is(sameInstance(snapshot)));
+        }
+
+        // A new unit of work can be started once the previous one has ended.
+        try (ConfigurationScope.UnitOfWork ignored = scope.enter()) {
+            assertThat(scope.inScope(), is(true));
+        }
+    }
+
+    void update(int a) {
+        configuration.withConfiguration(combinedConfiguration -> {
+            HierarchicalConfiguration part = new HierarchicalConfiguration();
+            part.setProperty("a", a);
+            combinedConfiguration.clear();
+            combinedConfiguration.addConfiguration(part, "part");
+        });
+    }
+
+    static class Client {
+        @Inject
+        @ConfigurationSnapshot
+        Configuration snapshot;
+    }
+}
@@ -21,17 +21,21 @@ import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.junit.Test;
 import org.lable.oss.dynamicconfig.core.ConfigurationComposition.ConfigReference;
 import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
+import org.lable.oss.dynamicconfig.core.spi.DeferredNode;
 import org.lable.oss.dynamicconfig.provider.FileBasedConfigSource;
 import org.lable.oss.dynamicconfig.serialization.yaml.YamlDeserializer;
 import org.lable.oss.dynamicconfig.serialization.yaml.YamlSerializer;
 import org.lable.oss.dynamicconfig.test.FileUtil;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.contains;
@@ -163,4 +167,63 @@ public class ConfigurationLoaderIT {
             }
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDeferredMappingsPerEngine() throws ConfigurationException {
+        String yaml = "small:\n  a: 1\n" +
+                "tenants:\n" +
+                "  acme:\n" +
+                "    plan: gold\n" +
+                "    seats: 40\n" +
+                "  globex:\n" +
+                "    plan: silver\n" +
+                "    seats: 5\n";
+
+        // Default engine: deferred mappings survive loading, and reads elsewhere in the configuration.
+        Configuration sourceConfiguration = new BaseConfiguration();
+        HierarchicalConfiguration parsed = parseDeferred(yaml);
+        DeferredNode tenants = (DeferredNode) parsed.getRootNode().getChildren("tenants").get(0);
+        assertThat(tenants.isMaterialized(), is(false));
+        Configuration configuration = assemble(parsed, sourceConfiguration);
+        assertThat(tenants.isMaterialized(), is(false));
+        assertThat(configuration.getInt("small.a"), is(1));
+        assertThat(tenants.isMaterialized(), is(false));
+        assertThat(configuration.getString("tenants.acme.plan"), is("gold"));
+        assertThat(tenants.isMaterialized(), is(true));
+
+        // Building a compact copy visits every node, so the compact read path builds deferred mappings on loading.
+        sourceConfiguration.setProperty(ConfigurationLoader.COMPACT_PROPERTY, true);
+        parsed = parseDeferred(yaml);
+        tenants = (DeferredNode) parsed.getRootNode().getChildren("tenants").get(0);
+        configuration = assemble(parsed, sourceConfiguration);
+        assertThat(tenants.isMaterialized(), is(true));
+        assertThat(configuration.getString("tenants.acme.plan"), is("gold"));
+
+        // As does the native engine.
+        sourceConfiguration = new BaseConfiguration();
+        sourceConfiguration.setProperty(ConfigurationLoader.ENGINE_PROPERTY, ConfigurationLoader.ENGINE_NATIVE);
+        parsed = parseDeferred(yaml);
+        tenants = (DeferredNode) parsed.getRootNode().getChildren("tenants").get(0);
+        configuration = assemble(parsed, sourceConfiguration);
+        assertThat(tenants.isMaterialized(), is(true));
+        assertThat(configuration.getInt("tenants.globex.seats"), is(5));
+    }
+
+    private static HierarchicalConfiguration parseDeferred(String yaml) throws ConfigurationException {
+        return new YamlDeserializer(40)
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .getConfiguration();
+    }
+
+    private static Configuration assemble(HierarchicalConfiguration configuration, Configuration sourceConfiguration)
+            throws ConfigurationException {
+        ConfigurationComposition composition = new ConfigurationComposition();
+        ConfigReference root = composition.updateReferences("root", new ArrayList<>());
+        composition.setRootReference(root);
+        composition.setConfigurationOnReference(root, configuration);
+
+        ConfigurationLoader.Assembler assembler = ConfigurationLoader.assemblerFor(sourceConfiguration);
+        assembler.assemble(composition);
+        return assembler.getConfiguration();
+    }
+}
@@ -18,17 +18,22 @@ package org.lable.oss.dynamicconfig.core;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.junit.Test;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
 import org.lable.oss.dynamicconfig.di.ConfigurationDefaults;
 import org.lable.oss.dynamicconfig.di.ConfigurationManagerProvider;
+import org.lable.oss.dynamicconfig.di.ConfigurationPrefixes;
 import org.lable.oss.dynamicconfig.di.ConfigurationProvider;
 import org.lable.oss.dynamicconfig.di.DynamicConfigModule;
 import org.lable.oss.dynamicconfig.serialization.yaml.YamlDeserializer;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -122,4 +127,30 @@ public class DependencyInjectionIT {
         // Overridden in this test:
         assertThat(configuration.getString("only.in.defaults"), is("XXX"));
     }
+
+    @Test
+    public void diModuleTestWithPrefixes() throws IOException {
+        System.setProperty(ConfigurationLoader.LIBRARY_PREFIX + ".type", "classpath");
+        System.setProperty(ConfigurationLoader.LIBRARY_PREFIX + ".rootconfig", "test.yml");
+        final Set<String> prefixes = new HashSet<>(Arrays.asList("type", "tree.branchL1a.branchL2b"));
+
+        final Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(new DynamicConfigModule());
+                bind(new TypeLiteral<Set<String>>() {}).annotatedWith(ConfigurationPrefixes.class).toInstance(prefixes);
+            }
+        });
+
+        Configuration configuration = injector.getInstance(Configuration.class);
+
+        // Under the prefixes:
+        assertThat(configuration.getString("type.string"), is("Okay"));
+        assertThat(configuration.getString("tree.branchL1a.branchL2b.branchL3h"), is("leaf_h"));
+        // Outside the prefixes:
+        assertThat(configuration.containsKey("tree.branchL1a.branchL2a.branchL3a"), is(false));
+        assertThat(configuration.containsKey("tables.table.name"), is(false));
+
+        injector.getInstance(ConfigurationManager.class).close();
+    }
 }
@@ -47,6 +47,7 @@ import static org.lable.oss.dynamicconfig.provider.etcd.EtcdTestUtil.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class EtcdAsConfigSourceIT {
@@ -121,6 +122,80 @@ public class EtcdAsConfigSourceIT {
         }
     }
 
+    @Test
+    public void testSharedClient() throws Exception {
+        put(client, "shared", "key: AAA\n");
+
+        ConfigChangeListener listenerA = mock(ConfigChangeListener.class);
+        ConfigChangeListener listenerB = mock(ConfigChangeListener.class);
+
+        EtcdAsConfigSource source = new EtcdAsConfigSource();
+        source.configure(testConfig, new BaseConfiguration());
+
+        ConfigurationConnection connectionA = source.connect(listenerA);
+        ConfigurationConnection connectionB = source.connect(listenerB);
+
+        // Both connections use the same client.
+        String registryKey = EtcdClientRegistry.registryKey(testConfig.getStringArray("cluster"));
+        SharedEtcdClient shared = EtcdClientRegistry.acquire(testConfig.getStringArray("cluster"));
+        assertThat(shared.getRegistryKey(), is(registryKey));
+        assertThat(shared.references, is(3));
+        shared.close();
+
+        connectionA.listen("shared");
+        connectionB.listen("shared");
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        put(client, "shared", "key: BBB\n");
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        verify(listenerA).changed(any(), eq("shared"));
+        verify(listenerB).changed(any(), eq("shared"));
+
+        // Closing one connection leaves the other one functional.
+        connectionA.close();
+        put(client, "shared", "key: CCC\n");
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        verify(listenerA, times(1)).changed(any(), eq("shared"));
+        verify(listenerB, times(2)).changed(any(), eq("shared"));
+
+        connectionB.close();
+        assertThat(shared.references, is(0));
+    }
+
+    @Test
+    public void keysModeTest() throws Exception {
+        put(client, "keys-test/db/pool-size", "5");
+        put(client, "keys-test/db/host", "db1");
+        put(client, "keys-test/hosts", "a,b");
+
+        Configuration sourceConfiguration = new BaseConfiguration();
+        sourceConfiguration.setProperty("cluster", testConfig.getProperty("cluster"));
+        sourceConfiguration.setProperty("namespace", "config/");
+        sourceConfiguration.setProperty("mode", "keys");
+
+        ConfigurationManager manager = ConfigurationLoader.fromTheseSettings(
+                "keys-test", "keys-test", new EtcdAsConfigSource(), new YamlDeserializer(), sourceConfiguration, null
+        );
+        Configuration configuration = manager.getConfiguration();
+
+        assertThat(configuration.getInt("db.pool-size"), is(5));
+        assertThat(configuration.getString("db.host"), is("db1"));
+        // Values are not split.
+        assertThat(configuration.getString("hosts"), is("a,b"));
+
+        put(client, "keys-test/db/pool-size", "10");
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(configuration.getInt("db.pool-size"), is(10));
+
+        delete(client, "keys-test/db/host");
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(configuration.containsKey("db.host"), is(false));
+
+        manager.close();
+    }
+
     @Test
     public void testListen() throws Exception {
         final String VALUE_A = "key: AAA\n";
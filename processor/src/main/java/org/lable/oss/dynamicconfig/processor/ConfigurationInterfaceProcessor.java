@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.processor;
+
+import org.lable.oss.dynamicconfig.core.typed.ConfigurationInterface;
+import org.lable.oss.dynamicconfig.core.typed.ConfigurationKey;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates implementations of interfaces annotated with {@link ConfigurationInterface}.
+ */
+public class ConfigurationInterfaceProcessor extends AbstractProcessor {
+    static final String IMPLEMENTATION_SUFFIX = "Impl";
+
+    // Reference types with a reader in ValueReaders, besides enums and List<String>.
+    static final Set<String> READABLE_TYPES = new HashSet<>(Arrays.asList(
+            "java.lang.Object",
+            "java.lang.String",
+            "java.lang.Boolean",
+            "java.lang.Byte",
+            "java.lang.Short",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Float",
+            "java.lang.Double",
+            "java.math.BigDecimal",
+            "java.math.BigInteger",
+            "java.time.Duration"
+    ));
+
+    static final Set<String> OBJECT_METHODS = new HashSet<>(Arrays.asList("toString", "hashCode", "getClass"));
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ConfigurationInterface.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(ConfigurationInterface.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@ConfigurationInterface can only be applied to interfaces.");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!type.getTypeParameters().isEmpty()) {
+                error(element, "Interfaces annotated with @ConfigurationInterface cannot have type parameters.");
+                continue;
+            }
+
+            List<Property> properties = properties(type);
+            if (properties == null) continue;
+
+            try {
+                write(type, properties);
+            } catch (IOException e) {
+                error(element, "Failed to write implementation: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collect the configuration properties of an interface.
+     *
+     * @param type Interface.
+     * @return The properties, or {@code null} if the interface cannot be implemented.
+     */
+    List<Property> properties(TypeElement type) {
+        String prefix = type.getAnnotation(ConfigurationInterface.class).value();
+        List<Property> properties = new ArrayList<>();
+        boolean valid = true;
+
+        List<ExecutableElement> methods =
+                ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        for (ExecutableElement method : methods) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) continue;
+            // Skip the methods inherited from Object, including those redeclared by the interface.
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE) continue;
+            if (OBJECT_METHODS.contains(method.getSimpleName().toString()) && method.getParameters().isEmpty()) {
+                continue;
+            }
+
+            boolean isDefault = modifiers.contains(Modifier.DEFAULT);
+            if (!method.getParameters().isEmpty() || !method.getTypeParameters().isEmpty()) {
+                if (isDefault) continue;
+                error(method, "Methods of a @ConfigurationInterface cannot have parameters.");
+                valid = false;
+                continue;
+            }
+
+            TypeMirror returnType = method.getReturnType();
+            if (!isReadable(returnType)) {
+                error(method, "Configuration values cannot be converted to " + returnType + ".");
+                valid = false;
+                continue;
+            }
+
+            ConfigurationKey key = method.getAnnotation(ConfigurationKey.class);
+            String name = method.getSimpleName().toString();
+            String relativeKey = key == null ? name : key.value();
+            properties.add(new Property(
+                    name,
+                    prefix.isEmpty() ? relativeKey : prefix + "." + relativeKey,
+                    returnType,
+                    isDefault
+            ));
+        }
+        return valid ? properties : null;
+    }
+
+    boolean isReadable(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return type.getKind() != TypeKind.CHAR;
+        if (type.getKind() != TypeKind.DECLARED) return false;
+
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeElement element = (TypeElement) declaredType.asElement();
+        if (element.getKind() == ElementKind.ENUM) return true;
+
+        String name = element.getQualifiedName().toString();
+        if (name.equals("java.util.List")) {
+            List<? extends TypeMirror> arguments = declaredType.getTypeArguments();
+            return arguments.size() == 1 && ImplementationWriter.typeName(arguments.get(0)).equals("java.lang.String");
+        }
+        return READABLE_TYPES.contains(name) && declaredType.getTypeArguments().isEmpty();
+    }
+
+    void write(TypeElement type, List<Property> properties) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = implementationName(type);
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(new ImplementationWriter(packageName, simpleName, type, properties).write());
+        }
+    }
+
+    /**
+     * Name of the generated implementation of an interface. Nested interfaces include the names of their enclosing
+     * types, separated by underscores.
+     *
+     * @param type Interface.
+     * @return The simple name of the implementation.
+     */
+    static String implementationName(TypeElement type) {
+        Deque<String> names = new ArrayDeque<>();
+        Element element = type;
+        while (element instanceof TypeElement) {
+            names.addFirst(element.getSimpleName().toString());
+            element = element.getEnclosingElement();
+        }
+        return String.join("_", names) + IMPLEMENTATION_SUFFIX;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * A configuration value read by a method of the interface.
+     */
+    static class Property {
+        final String name;
+        final String key;
+        final TypeMirror type;
+        // Whether a default method supplies the value if the key is not set.
+        final boolean hasDefault;
+
+        Property(String name, String key, TypeMirror type, boolean hasDefault) {
+            this.name = name;
+            this.key = key;
+            this.type = type;
+            this.hasDefault = hasDefault;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.processor;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Writes the source of the implementation of a configuration interface.
+ * <p>
+ * The implementation keeps an immutable holder with a final field for each property, converted from a single
+ * configuration snapshot. The holder is replaced when a method is called after the configuration has changed. Names
+ * used by the implementation itself end with {@code $}, so they cannot clash with the names of the properties.
+ * <p>
+ * A property that cannot be converted (for example a primitive without a default whose key is not set) does not
+ * affect the others: the holder keeps its exception, and only the method of that property throws it, until the
+ * configuration changes.
+ */
+class ImplementationWriter {
+    private final String packageName;
+    private final String simpleName;
+    private final String interfaceName;
+    private final List<ConfigurationInterfaceProcessor.Property> properties;
+    private final StringBuilder out = new StringBuilder();
+
+    ImplementationWriter(String packageName,
+                         String simpleName,
+                         TypeElement type,
+                         List<ConfigurationInterfaceProcessor.Property> properties) {
+        this.packageName = packageName;
+        this.simpleName = simpleName;
+        this.interfaceName = type.getQualifiedName().toString();
+        this.properties = properties;
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+            line(0, "");
+        }
+        line(0, "import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;");
+        line(0, "import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;");
+        line(0, "import org.lable.oss.dynamicconfig.core.value.ValueReader;");
+        line(0, "import org.lable.oss.dynamicconfig.core.value.ValueReaders;");
+        line(0, "");
+        line(0, "/**");
+        line(0, " * Implementation of {@link " + interfaceName + "}, generated by " +
+                ConfigurationInterfaceProcessor.class.getSimpleName() + ".");
+        line(0, " */");
+        line(0, "@javax.annotation.processing.Generated(\"" +
+                ConfigurationInterfaceProcessor.class.getName() + "\")");
+        line(0, "public final class " + simpleName + " implements " + interfaceName + " {");
+        writeReaders();
+        line(1, "private final SnapshotSource source;");
+        line(1, "private volatile Holder holder;");
+        line(0, "");
+        line(1, "public " + simpleName + "(SnapshotSource source) {");
+        line(2, "this.source = source;");
+        line(1, "}");
+        writeHolderAccess();
+        writeConversion();
+        for (int i = 0; i < properties.size(); i++) {
+            ConfigurationInterfaceProcessor.Property property = properties.get(i);
+            line(0, "");
+            line(1, "@Override");
+            line(1, "public " + typeName(property.type) + " " + property.name + "() {");
+            line(2, "Holder holder$ = holder$();");
+            line(2, "if (holder$.failures$ != null && holder$.failures$[" + i + "] != null) " +
+                    "throw holder$.failures$[" + i + "];");
+            line(2, "return holder$." + property.name + ";");
+            line(1, "}");
+        }
+        writeHolder();
+        line(0, "}");
+        return out.toString();
+    }
+
+    private void writeReaders() {
+        for (ConfigurationInterfaceProcessor.Property property : properties) {
+            if (property.type.getKind().isPrimitive()) continue;
+
+            String type = typeName(property.type);
+            String erasure = erasure(property.type);
+            if (type.equals(erasure)) {
+                line(1, "private static final ValueReader<" + type + "> " + readerName(property) +
+                        " = ValueReaders.forType(" + erasure + ".class);");
+            } else {
+                // Parameterized types such as List<String>.
+                line(1, "@SuppressWarnings(\"unchecked\")");
+                line(1, "private static final ValueReader<" + type + "> " + readerName(property) +
+                        " = (ValueReader<" + type + ">) ValueReaders.forType((java.lang.reflect.Type) " + erasure +
+                        ".class);");
+            }
+        }
+        line(0, "");
+    }
+
+    private void writeHolderAccess() {
+        line(0, "");
+        line(1, "private Holder holder$() {");
+        line(2, "CompactConfiguration snapshot$ = source.snapshot();");
+        line(2, "Holder holder = this.holder;");
+        line(2, "if (holder == null || holder.snapshot$ != snapshot$) {");
+        line(3, "holder = convert$(snapshot$);");
+        line(3, "this.holder = holder;");
+        line(2, "}");
+        line(2, "return holder;");
+        line(1, "}");
+    }
+
+    private void writeConversion() {
+        line(0, "");
+        line(1, "private Holder convert$(CompactConfiguration snapshot$) {");
+        line(2, "RuntimeException[] failures$ = null;");
+        for (int i = 0; i < properties.size(); i++) {
+            ConfigurationInterfaceProcessor.Property property = properties.get(i);
+            String key = literal(property.key);
+            String fallback = interfaceName + ".super." + property.name + "()";
+            boolean primitive = property.type.getKind().isPrimitive();
+            line(2, typeName(property.type) + " " + property.name + " = " +
+                    (!primitive ? "null" : property.type.getKind() == TypeKind.BOOLEAN ? "false" : "0") + ";");
+            line(2, "try {");
+            if (primitive) {
+                String read = "snapshot$." + getter(property.type.getKind()) + "(" + key + ")";
+                line(3, property.name + " = " + (property.hasDefault
+                        ? "snapshot$.containsKey(" + key + ") ? " + read + " : " + fallback
+                        : read) + ";");
+            } else {
+                line(3, property.name + " = " + readerName(property) + ".read(snapshot$, " + key + ");");
+                if (property.hasDefault) {
+                    line(3, "if (" + property.name + " == null) " + property.name + " = " + fallback + ";");
+                }
+            }
+            line(2, "} catch (RuntimeException e$) {");
+            line(3, "if (failures$ == null) failures$ = new RuntimeException[" + properties.size() + "];");
+            line(3, "failures$[" + i + "] = e$;");
+            line(2, "}");
+        }
+        StringBuilder arguments = new StringBuilder("snapshot$, failures$");
+        for (ConfigurationInterfaceProcessor.Property property : properties) {
+            arguments.append(", ").append(property.name);
+        }
+        line(2, "return new Holder(" + arguments + ");");
+        line(1, "}");
+    }
+
+    private void writeHolder() {
+        line(0, "");
+        line(1, "private static final class Holder {");
+        line(2, "final CompactConfiguration snapshot$;");
+        line(2, "// Conversion failures by property index; null when all properties were converted.");
+        line(2, "final RuntimeException[] failures$;");
+        StringBuilder parameters = new StringBuilder("CompactConfiguration snapshot$, RuntimeException[] failures$");
+        for (ConfigurationInterfaceProcessor.Property property : properties) {
+            line(2, "final " + typeName(property.type) + " " + property.name + ";");
+            parameters.append(", ").append(typeName(property.type)).append(" ").append(property.name);
+        }
+        line(0, "");
+        line(2, "Holder(" + parameters + ") {");
+        line(3, "this.snapshot$ = snapshot$;");
+        line(3, "this.failures$ = failures$;");
+        for (ConfigurationInterfaceProcessor.Property property : properties) {
+            line(3, "this." + property.name + " = " + property.name + ";");
+        }
+        line(2, "}");
+        line(1, "}");
+    }
+
+    static String getter(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return "getBoolean";
+            case BYTE:
+                return "getByte";
+            case SHORT:
+                return "getShort";
+            case INT:
+                return "getInt";
+            case LONG:
+                return "getLong";
+            case FLOAT:
+                return "getFloat";
+            case DOUBLE:
+                return "getDouble";
+            default:
+                throw new IllegalArgumentException("Unsupported primitive type " + kind + ".");
+        }
+    }
+
+    /**
+     * Name of a type as used in source code. Unlike {@link TypeMirror#toString()}, this leaves out type-use
+     * annotations, such as the {@code @Nullable} in {@code java.lang.@Nullable String}.
+     *
+     * @param type Type.
+     * @return Qualified name of the type, including any type arguments.
+     */
+    static String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return type.getKind().name().toLowerCase(Locale.ROOT);
+        if (type.getKind() != TypeKind.DECLARED) return type.toString();
+
+        DeclaredType declaredType = (DeclaredType) type;
+        StringBuilder name = new StringBuilder(erasure(type));
+        List<? extends TypeMirror> arguments = declaredType.getTypeArguments();
+        if (!arguments.isEmpty()) {
+            StringJoiner joiner = new StringJoiner(", ", "<", ">");
+            arguments.forEach(argument -> joiner.add(typeName(argument)));
+            name.append(joiner);
+        }
+        return name.toString();
+    }
+
+    static String erasure(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        String name = type.toString();
+        int typeArguments = name.indexOf('<');
+        return typeArguments < 0 ? name : name.substring(0, typeArguments);
+    }
+
+    static String readerName(ConfigurationInterfaceProcessor.Property property) {
+        return "READER_" + property.name;
+    }
+
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (Character.isISOControl(c)) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++) out.append("    ");
+        out.append(text).append('\n');
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.processor;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.SnapshotSource;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ConfigurationInterfaceProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generateTest() throws Exception {
+        File classes = compile("DbConfig",
+                "package demo;\n" +
+                "import org.lable.oss.dynamicconfig.core.typed.*;\n" +
+                "import java.time.Duration;\n" +
+                "import java.util.List;\n" +
+                "@ConfigurationInterface(\"db\")\n" +
+                "public interface DbConfig {\n" +
+                "    int poolSize();\n" +
+                "    Duration timeout();\n" +
+                "    @ConfigurationKey(\"host-names\") List<String> hosts();\n" +
+                "    default int retries() { return 3; }\n" +
+                "}\n");
+
+        AtomicReference<CompactConfiguration> current = new AtomicReference<>(snapshot(10));
+        SnapshotSource source = current::get;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()},
+                getClass().getClassLoader())) {
+            Class<?> implementation = loader.loadClass("demo.DbConfigImpl");
+            Object config = implementation.getConstructor(SnapshotSource.class).newInstance(source);
+            Class<?> iface = loader.loadClass("demo.DbConfig");
+            Method poolSize = iface.getMethod("poolSize");
+
+            assertThat(poolSize.invoke(config), is(10));
+            assertThat(iface.getMethod("timeout").invoke(config), is(Duration.ofSeconds(5)));
+            assertThat(iface.getMethod("hosts").invoke(config), is(Arrays.asList("a", "b")));
+            assertThat(iface.getMethod("retries").invoke(config), is(3));
+
+            current.set(snapshot(20));
+            assertThat(poolSize.invoke(config), is(20));
+        }
+    }
+
+    @Test
+    public void failingPropertyTest() throws Exception {
+        File classes = compile("PartialConfig",
+                "package demo;\n" +
+                "import org.lable.oss.dynamicconfig.core.typed.*;\n" +
+                "import java.time.Duration;\n" +
+                "@ConfigurationInterface(\"db\")\n" +
+                "public interface PartialConfig {\n" +
+                "    int poolSize();\n" +
+                "    int missing();\n" +
+                "    Duration timeout();\n" +
+                "}\n");
+
+        AtomicReference<CompactConfiguration> current = new AtomicReference<>(snapshot(10));
+        SnapshotSource source = current::get;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()},
+                getClass().getClassLoader())) {
+            Class<?> implementation = loader.loadClass("demo.PartialConfigImpl");
+            Object config = implementation.getConstructor(SnapshotSource.class).newInstance(source);
+            Class<?> iface = loader.loadClass("demo.PartialConfig");
+            Method missing = iface.getMethod("missing");
+
+            // Only the method of the property that cannot be converted fails.
+            Throwable failure = failure(missing, config);
+            assertThat(failure, is(notNullValue()));
+            assertThat(iface.getMethod("poolSize").invoke(config), is(10));
+            assertThat(iface.getMethod("timeout").invoke(config), is(Duration.ofSeconds(5)));
+
+            // The failure is kept until the configuration changes, rather than converted again on every call.
+            assertThat(failure(missing, config), is(sameInstance(failure)));
+            HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+            configuration.setProperty("db.missing", 7);
+            current.set(CompactConfiguration.of(configuration));
+            assertThat(missing.invoke(config), is(7));
+        }
+    }
+
+    @Test
+    public void keysAndTypesInSourceTest() throws Exception {
+        File classes = compile("EscapedConfig",
+                "package demo;\n" +
+                "import java.lang.annotation.*;\n" +
+                "import java.util.List;\n" +
+                "import org.lable.oss.dynamicconfig.core.typed.*;\n" +
+                "@ConfigurationInterface\n" +
+                "public interface EscapedConfig {\n" +
+                "    @Target(ElementType.TYPE_USE) @interface Nullable {}\n" +
+                "    @ConfigurationKey(\"line\\nbreak\\ttab\\u0001\\\"quote\\\\\") @Nullable String odd();\n" +
+                "    @ConfigurationKey(\"names\") List<@Nullable String> names();\n" +
+                "}\n");
+
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.getRootNode().addChild(new HierarchicalConfiguration.Node("line\nbreak\ttab\u0001\"quote\\", "x"));
+        configuration.addProperty("names", "a");
+        SnapshotSource source = () -> CompactConfiguration.of(configuration);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()},
+                getClass().getClassLoader())) {
+            Class<?> implementation = loader.loadClass("demo.EscapedConfigImpl");
+            Object config = implementation.getConstructor(SnapshotSource.class).newInstance(source);
+            Class<?> iface = loader.loadClass("demo.EscapedConfig");
+
+            assertThat(iface.getMethod("odd").invoke(config), is("x"));
+            assertThat(iface.getMethod("names").invoke(config), is(Collections.singletonList("a")));
+        }
+    }
+
+    @Test
+    public void unsupportedTypeTest() throws Exception {
+        List<String> errors = compileWithErrors("BadConfig",
+                "package demo;\n" +
+                "@org.lable.oss.dynamicconfig.core.typed.ConfigurationInterface\n" +
+                "public interface BadConfig {\n" +
+                "    Thread thread();\n" +
+                "}\n");
+
+        assertThat(errors.size(), is(1));
+        assertThat(errors.get(0), is("Configuration values cannot be converted to java.lang.Thread."));
+    }
+
+    @Test
+    public void notAnInterfaceTest() throws Exception {
+        List<String> errors = compileWithErrors("NotAnInterface",
+                "package demo;\n" +
+                "@org.lable.oss.dynamicconfig.core.typed.ConfigurationInterface\n" +
+                "public class NotAnInterface {\n" +
+                "}\n");
+
+        assertThat(errors, is(Collections.singletonList("@ConfigurationInterface can only be applied to interfaces.")));
+    }
+
+    @Test
+    public void implementationNameTest() throws Exception {
+        File classes = compile("Outer",
+                "package demo;\n" +
+                "public class Outer {\n" +
+                "    @org.lable.oss.dynamicconfig.core.typed.ConfigurationInterface\n" +
+                "    public interface Inner {\n" +
+                "        String name();\n" +
+                "    }\n" +
+                "}\n");
+
+        assertThat(new File(classes, "demo/Outer_InnerImpl.class").exists(), is(true));
+    }
+
+    private static Throwable failure(Method method, Object target) throws IllegalAccessException {
+        try {
+            method.invoke(target);
+            return null;
+        } catch (InvocationTargetException e) {
+            return e.getCause();
+        }
+    }
+
+    private static CompactConfiguration snapshot(int poolSize) {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("db.poolSize", poolSize);
+        configuration.setProperty("db.timeout", "PT5S");
+        configuration.addProperty("db.host-names", "a");
+        configuration.addProperty("db.host-names", "b");
+        return CompactConfiguration.of(configuration);
+    }
+
+    private File compile(String name, String source) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        File classes = run(name, source, diagnostics);
+        assertThat(diagnostics.getDiagnostics().toString(), diagnostics.getDiagnostics().stream()
+                .anyMatch(diagnostic -> diagnostic.getKind() == javax.tools.Diagnostic.Kind.ERROR), is(false));
+        return classes;
+    }
+
+    private List<String> compileWithErrors(String name, String source) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        run(name, source, diagnostics);
+        return Arrays.asList(diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == javax.tools.Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .toArray(String[]::new));
+    }
+
+    private File run(String name, String source, DiagnosticCollector<JavaFileObject> diagnostics) throws Exception {
+        File sources = folder.newFolder();
+        File classes = folder.newFolder();
+        File file = new File(sources, name + ".java");
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    // Match the release the modules are built for.
+                    Arrays.asList("--release", "11", "-d", classes.getPath(),
+                            "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjects(file));
+            task.setProcessors(Collections.singletonList(new ConfigurationInterfaceProcessor()));
+            task.call();
+        }
+        return classes;
+    }
+}
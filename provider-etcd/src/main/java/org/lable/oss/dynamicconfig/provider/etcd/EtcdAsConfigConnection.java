@@ -16,66 +16,76 @@
 package org.lable.oss.dynamicconfig.provider.etcd;
 
 import io.etcd.jetcd.ByteSequence;
-import io.etcd.jetcd.Client;
 import io.etcd.jetcd.KeyValue;
-import io.etcd.jetcd.Watch;
 import io.etcd.jetcd.kv.GetResponse;
 import io.etcd.jetcd.watch.WatchEvent;
 import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ReloadDelay;
+import org.lable.oss.dynamicconfig.core.ReloadScheduler;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Connection to an Etcd cluster. The underlying client and its watches are shared with all other connections to the
+ * same cluster that were loaded by the same class loader (see {@link EtcdClientRegistry}), as are the threads that
+ * run reloads. The reloads of a single connection run one at a time.
+ */
 public class EtcdAsConfigConnection implements ConfigurationConnection {
     private static final Logger logger = LoggerFactory.getLogger(EtcdAsConfigConnection.class);
 
-    private final Client etcd;
+    private final SharedEtcdClient etcd;
     private final String namespace;
-    private final ExecutorService executor;
     private final ConfigChangeListener changeListener;
-    private final Map<String, Watch.Watcher> watches = new HashMap<>();
+    // Runs this connection's reloads one at a time, on the threads shared by all connections to the cluster.
+    private final SerialExecutor executor;
+    private final ReloadScheduler reloads;
+    private final Map<String, Closeable> watches = new HashMap<>();
 
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
 
     public EtcdAsConfigConnection(String[] cluster, String namespace, ConfigChangeListener changeListener) {
+        this(cluster, namespace, changeListener, ReloadDelay.NONE);
+    }
+
+    public EtcdAsConfigConnection(String[] cluster, String namespace, ConfigChangeListener changeListener,
+                                  ReloadDelay reloadDelay) {
         this.namespace = namespace;
         this.changeListener = changeListener;
-        this.etcd = Client.builder()
-                .endpoints(cluster)
-                .loadBalancerPolicy("round_robin")
-                .namespace(ByteSequence.from(namespace, StandardCharsets.UTF_8))
-                .build();
-
-        this.executor = Executors.newSingleThreadExecutor();
+        this.etcd = EtcdClientRegistry.acquire(cluster);
+        this.executor = new SerialExecutor(etcd.getReloadExecutor());
+        this.reloads = new ReloadScheduler(reloadDelay, etcd.getReloadExecutor());
     }
 
     @Override
-    public void listen(String name) {
+    public synchronized void listen(String name) {
         if (stopped) return;
         if (watches.containsKey(name)) return;
 
         logger.info("Setting watcher on key {}.", name);
-        Watch.Watcher watcher = etcd.getWatchClient().watch(nameToByteSequence(name), watchResponse -> {
-            List<WatchEvent> events = watchResponse.getEvents();
+        final String key = namespace + name;
+        Closeable watch = etcd.watch(key, false, events -> {
             for (WatchEvent event : events) {
                 KeyValue kv = event.getKeyValue();
-                if (!kv.getKey().toString(StandardCharsets.UTF_8).equals(name)) continue;
+                if (!kv.getKey().toString(StandardCharsets.UTF_8).equals(key)) continue;
 
                 switch (event.getEventType()) {
                     case PUT:
-                        executor.submit(() -> this.changeListener.changed(this, name));
+                        reloads.schedule(name, () -> executor.execute(() -> {
+                            if (!stopped) this.changeListener.changed(this, name);
+                        }));
                         break;
                     case DELETE:
                         logger.error("Configuration key {} deleted. Waiting for it to be recreated…", name);
@@ -87,13 +97,16 @@ public class EtcdAsConfigConnection implements ConfigurationConnection {
                 }
             }
         });
-        watches.put(name, watcher);
+        watches.put(name, watch);
     }
 
     @Override
-    public void stopListening(String name) {
+    public synchronized void stopListening(String name) {
+        Closeable watch = watches.remove(name);
+        if (watch == null) return;
+
         logger.info("Removing watcher from key {}.", name);
-        watches.remove(name).close();
+        closeQuietly(watch);
     }
 
     @Override
@@ -102,7 +115,7 @@ public class EtcdAsConfigConnection implements ConfigurationConnection {
 
         GetResponse getResponse;
         try {
-            getResponse = etcd.getKVClient().get(nameToByteSequence(name)).get();
+            getResponse = etcd.getClient().getKVClient().get(nameToByteSequence(namespace + name)).get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new ConfigurationException(e);
@@ -119,19 +132,37 @@ public class EtcdAsConfigConnection implements ConfigurationConnection {
 
     @Override
     public void close() {
-        this.stopped = true;
+        synchronized (this) {
+            if (stopped) return;
+            this.stopped = true;
+            this.reloads.close();
+            this.watches.values().forEach(EtcdAsConfigConnection::closeQuietly);
+            this.watches.clear();
+        }
+        if (!executor.close(5000)) {
+            logger.error("Failed to terminate the change-listeners.");
+        }
+        etcd.close();
+    }
+
+    static void closeQuietly(Closeable closeable) {
         try {
-            this.watches.values().forEach(Watch.Watcher::close);
-            this.executor.shutdown();
+            closeable.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close Etcd watch.", e);
+        }
+    }
 
-            boolean terminated = this.executor.awaitTermination(5, TimeUnit.SECONDS);
+    static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            boolean terminated = executor.awaitTermination(5, TimeUnit.SECONDS);
             if (!terminated) {
                 logger.error("Failed to terminate the change-listeners.");
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        etcd.close();
     }
 
     static ByteSequence nameToByteSequence(String name) {
@@ -19,9 +19,11 @@ import org.apache.commons.configuration.Configuration;
 import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
 import org.lable.oss.dynamicconfig.core.ConfigurationLoader;
+import org.lable.oss.dynamicconfig.core.ReloadDelay;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
 import org.lable.oss.dynamicconfig.core.spi.ConfigurationSource;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,8 +31,13 @@ import java.util.List;
  * Retrieve configuration from an Etcd cluster, and maintain a watch for updates.
  */
 public class EtcdAsConfigSource implements ConfigurationSource {
+    static final String MODE_DOCUMENT = "document";
+    static final String MODE_KEYS = "keys";
+
     private String namespace;
     private String[] cluster;
+    private String mode;
+    private ReloadDelay reloadDelay;
 
     /**
      * {@inheritDoc}
@@ -45,7 +52,9 @@ public class EtcdAsConfigSource implements ConfigurationSource {
      */
     @Override
     public List<String> systemProperties() {
-        return Arrays.asList("cluster", "namespace", "copy.cluster.to");
+        List<String> properties = new ArrayList<>(Arrays.asList("cluster", "namespace", "copy.cluster.to", "mode"));
+        properties.addAll(ReloadDelay.PROPERTIES);
+        return properties;
     }
 
     /**
@@ -58,11 +67,18 @@ public class EtcdAsConfigSource implements ConfigurationSource {
      *     <dt>namespace
      *     <dd>Key namespace.
      * </dl>
-     * Additionally, the following optional parameter may be set:
+     * Additionally, the following optional parameters may be set:
      * <dl>
      *     <dt>copy.cluster.to
      *     <dd>Copy the Etcd cluster endpoints to this configuration parameter to make it available in the configuration
      *     object loaded by this class.
+     *     <dt>mode
+     *     <dd>Storage mode. Either {@code document} (the default), where each configuration part is a serialized
+     *     document stored in a single Etcd key, or {@code keys}, where each configuration value is stored in its own
+     *     Etcd key (see {@link EtcdKeysAsConfigConnection}).
+     *     <dt>reload.spread, reload.jitter, reload.spread.per-instance
+     *     <dd>Delay reloads after a change, to avoid all instances hitting the Etcd cluster at once (see
+     *     {@link ReloadDelay}).
      * </dl>
      */
     @Override
@@ -70,6 +86,7 @@ public class EtcdAsConfigSource implements ConfigurationSource {
         String namespace = configuration.getString("namespace");
         String[] cluster = configuration.getStringArray("cluster");
         String copyClusterTo = configuration.getString("copy.cluster.to");
+        String mode = configuration.getString("mode", MODE_DOCUMENT);
         String rootConfig = configuration.getString(ConfigurationLoader.ROOTCONFIG_PROPERTY);
 
         if (cluster.length == 0) {
@@ -84,16 +101,25 @@ public class EtcdAsConfigSource implements ConfigurationSource {
             throw new ConfigurationException(ConfigurationLoader.APPNAME_PROPERTY, "No application name found.");
         }
 
+        if (!mode.equals(MODE_DOCUMENT) && !mode.equals(MODE_KEYS)) {
+            throw new ConfigurationException("mode", "Unknown storage mode: " + mode + ".");
+        }
+
         if (copyClusterTo != null) {
             defaults.setProperty(copyClusterTo, cluster);
         }
 
         this.namespace = namespace;
         this.cluster = cluster;
+        this.mode = mode;
+        this.reloadDelay = ReloadDelay.fromConfiguration(configuration);
     }
 
     @Override
     public ConfigurationConnection connect(ConfigChangeListener changeListener) throws ConfigurationException {
-        return new EtcdAsConfigConnection(cluster, namespace, changeListener);
+        if (mode.equals(MODE_KEYS)) {
+            return new EtcdKeysAsConfigConnection(cluster, namespace, changeListener, reloadDelay);
+        }
+        return new EtcdAsConfigConnection(cluster, namespace, changeListener, reloadDelay);
     }
 }
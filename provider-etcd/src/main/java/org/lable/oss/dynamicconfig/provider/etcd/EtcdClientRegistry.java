@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import io.etcd.jetcd.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of Etcd clients, shared by every {@link EtcdAsConfigConnection} that connects to the same cluster.
+ * <p>
+ * Several configuration managers in one application, or a new connection opened on reload while the old one is still
+ * closing, would otherwise each open a gRPC channel, a watch stream, and reload threads. Clients are
+ * reference-counted; the underlying connection is closed when the last connection using it releases it.
+ * <p>
+ * The registry is a static field of this class, so clients are only shared between connections whose copy of this
+ * library was loaded by the same class loader. In a servlet container this means sharing happens within one web
+ * application; separate web applications do not share clients, even when they connect to the same cluster. Sharing
+ * one client per host is out of scope; the README explains why.
+ */
+final class EtcdClientRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(EtcdClientRegistry.class);
+
+    private static final Map<String, SharedEtcdClient> clients = new HashMap<>();
+
+    private EtcdClientRegistry() {
+        // Static utility class.
+    }
+
+    /**
+     * Acquire a shared client for an Etcd cluster. Every call to this method must be matched by a call to
+     * {@link SharedEtcdClient#close()} when the client is no longer needed.
+     *
+     * @param cluster Etcd cluster endpoints.
+     * @return A shared client.
+     */
+    static SharedEtcdClient acquire(String[] cluster) {
+        String registryKey = registryKey(cluster);
+        synchronized (clients) {
+            SharedEtcdClient shared = clients.get(registryKey);
+            if (shared == null) {
+                logger.info("Connecting to Etcd cluster {}.", registryKey);
+                Client client = Client.builder()
+                        .endpoints(cluster)
+                        .loadBalancerPolicy("round_robin")
+                        .build();
+                shared = new SharedEtcdClient(registryKey, client);
+                clients.put(registryKey, shared);
+            }
+            shared.references++;
+            return shared;
+        }
+    }
+
+    /**
+     * Release a reference to a shared client, closing it if no references remain.
+     *
+     * @param shared Shared client.
+     */
+    static void release(SharedEtcdClient shared) {
+        synchronized (clients) {
+            if (shared.references == 0) return;
+            shared.references--;
+            if (shared.references > 0) return;
+
+            clients.remove(shared.getRegistryKey());
+        }
+        logger.info("Closing connection to Etcd cluster {}; it is no longer in use.", shared.getRegistryKey());
+        shared.shutdown();
+    }
+
+    /**
+     * The order in which endpoints are listed is irrelevant for the client, so clients are keyed by the sorted list
+     * of endpoints.
+     */
+    static String registryKey(String[] cluster) {
+        String[] sorted = Arrays.stream(cluster).map(String::trim).sorted().toArray(String[]::new);
+        return String.join(",", sorted);
+    }
+}
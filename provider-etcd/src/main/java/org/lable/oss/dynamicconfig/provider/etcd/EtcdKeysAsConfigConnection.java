@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ReloadDelay;
+import org.lable.oss.dynamicconfig.core.ReloadScheduler;
+import org.lable.oss.dynamicconfig.core.ConfigurationResult;
+import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.spi.StructuredConfigurationConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.lable.oss.dynamicconfig.provider.etcd.EtcdAsConfigConnection.closeQuietly;
+import static org.lable.oss.dynamicconfig.provider.etcd.EtcdAsConfigConnection.nameToByteSequence;
+
+/**
+ * Connection to an Etcd cluster where each configuration value is stored in its own Etcd key.
+ * <p>
+ * A configuration part named {@code app} consists of all keys under {@code <namespace>app/}. The remainder of each
+ * key is the configuration key, with {@code /} as separator; e.g., Etcd key {@code config/app/db/pool-size} maps to
+ * {@code db.pool-size} in configuration part {@code app}. Values are stored as plain strings. Two special forms are
+ * recognized:
+ * <ul>
+ *     <li>A value of the form {@code !include other-part} includes another configuration part at that key, similar
+ *     to the {@code !include} tag in YAML.</li>
+ *     <li>The comma-separated value of the key {@code extends} lists the configuration parts this part extends.</li>
+ * </ul>
+ * A configuration part is loaded with a single range read. Changes to individual values are applied in place,
+ * without reloading the configuration part; changes to includes or extends cause the whole part to be reloaded.
+ * Changes to a configuration part that arrive together, or within the reload delay, are applied at once.
+ */
+public class EtcdKeysAsConfigConnection implements StructuredConfigurationConnection {
+    private static final Logger logger = LoggerFactory.getLogger(EtcdKeysAsConfigConnection.class);
+
+    static final String INCLUDE_PREFIX = "!include ";
+    static final String EXTENDS_KEY = "extends";
+
+    private final SharedEtcdClient etcd;
+    private final String namespace;
+    private final ConfigChangeListener changeListener;
+    // Runs this connection's reloads one at a time, on the threads shared by all connections to the cluster.
+    private final SerialExecutor executor;
+    private final ReloadScheduler reloads;
+    private final Map<String, Closeable> watches = new HashMap<>();
+    // Keys per configuration part that hold references to other parts. Changes to these require a full reload.
+    private final Map<String, Set<String>> referenceKeys = new ConcurrentHashMap<>();
+    // Changes per configuration part received, but not yet applied.
+    private final Map<String, PendingChanges> pendingChanges = new HashMap<>();
+
+    private volatile boolean stopped = false;
+
+    public EtcdKeysAsConfigConnection(String[] cluster, String namespace, ConfigChangeListener changeListener) {
+        this(cluster, namespace, changeListener, ReloadDelay.NONE);
+    }
+
+    public EtcdKeysAsConfigConnection(String[] cluster, String namespace, ConfigChangeListener changeListener,
+                                      ReloadDelay reloadDelay) {
+        this.namespace = namespace;
+        this.changeListener = changeListener;
+        this.etcd = EtcdClientRegistry.acquire(cluster);
+        this.executor = new SerialExecutor(etcd.getReloadExecutor());
+        this.reloads = new ReloadScheduler(reloadDelay, etcd.getReloadExecutor());
+    }
+
+    @Override
+    public synchronized void listen(String name) {
+        if (stopped) return;
+        if (watches.containsKey(name)) return;
+
+        logger.info("Setting watcher on keys under {}.", name);
+        final String prefix = partPrefix(name);
+        Closeable watch = etcd.watch(prefix, true, events -> {
+            boolean changed = false;
+            for (WatchEvent event : events) {
+                String relativeKey = event.getKeyValue().getKey().toString(StandardCharsets.UTF_8);
+                if (!relativeKey.startsWith(prefix)) continue;
+                relativeKey = relativeKey.substring(prefix.length());
+
+                final String value;
+                switch (event.getEventType()) {
+                    case PUT:
+                        value = event.getKeyValue().getValue().toString(StandardCharsets.UTF_8);
+                        break;
+                    case DELETE:
+                        value = null;
+                        break;
+                    case UNRECOGNIZED:
+                    default:
+                        continue;
+                }
+
+                boolean reference = isReference(relativeKey, value) ||
+                        referenceKeys.getOrDefault(name, Collections.emptySet()).contains(relativeKey);
+                addPendingChange(name, reference ? null : toConfigKey(relativeKey), value);
+                changed = true;
+            }
+            if (!changed) return;
+
+            // Coalesced per configuration part; all changes received before this runs are applied together.
+            reloads.schedule(name, () -> executor.execute(() -> applyPendingChanges(name)));
+        });
+        watches.put(name, watch);
+    }
+
+    /**
+     * Record a change to a configuration part, to be applied by {@link #applyPendingChanges(String)}.
+     *
+     * @param name  Configuration part.
+     * @param key   Configuration key of the changed value, or {@code null} if the whole part must be reloaded.
+     * @param value New value, or {@code null} if the value was removed.
+     */
+    void addPendingChange(String name, String key, String value) {
+        synchronized (pendingChanges) {
+            PendingChanges changes = pendingChanges.computeIfAbsent(name, n -> new PendingChanges());
+            if (key == null) {
+                changes.reload = true;
+            } else {
+                // If a key changes more than once, only its latest value is applied.
+                changes.values.put(key, value);
+            }
+        }
+    }
+
+    void applyPendingChanges(String name) {
+        PendingChanges changes;
+        synchronized (pendingChanges) {
+            changes = pendingChanges.remove(name);
+        }
+        if (changes == null || stopped) return;
+
+        if (changes.reload) {
+            // Reloading the part picks up the changed values as well.
+            changeListener.changed(this, name);
+        } else {
+            changeListener.valuesChanged(this, name, changes.values);
+        }
+    }
+
+    @Override
+    public synchronized void stopListening(String name) {
+        Closeable watch = watches.remove(name);
+        referenceKeys.remove(name);
+        if (watch == null) return;
+
+        logger.info("Removing watcher from keys under {}.", name);
+        closeQuietly(watch);
+    }
+
+    @Override
+    public ConfigurationResult loadStructured(String name) throws ConfigurationException {
+        if (stopped) throw new ConfigurationException("Refusing to load config because this class is being shut down.");
+
+        String prefix = partPrefix(name);
+        GetResponse getResponse;
+        try {
+            getResponse = etcd.getClient().getKVClient()
+                    .get(nameToByteSequence(prefix), GetOption.builder().isPrefix(true).build())
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfigurationException(e);
+        } catch (ExecutionException e) {
+            throw new ConfigurationException("Failed to load keys under " + prefix + ".", e);
+        }
+
+        if (getResponse.getCount() == 0) {
+            throw new ConfigurationException("No keys in etcd under: " + prefix + ".");
+        }
+
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        // Values are stored as-is; don't split them on commas.
+        configuration.setDelimiterParsingDisabled(true);
+        List<IncludeReference> includes = new ArrayList<>();
+        Set<String> references = new HashSet<>();
+
+        for (KeyValue kv : getResponse.getKvs()) {
+            String relativeKey = kv.getKey().toString(StandardCharsets.UTF_8).substring(prefix.length());
+            String value = kv.getValue().toString(StandardCharsets.UTF_8);
+            if (relativeKey.isEmpty()) continue;
+
+            if (relativeKey.equals(EXTENDS_KEY)) {
+                references.add(relativeKey);
+                for (String extended : value.split(",")) {
+                    if (!extended.trim().isEmpty()) includes.add(new IncludeReference(extended.trim()));
+                }
+            } else if (value.startsWith(INCLUDE_PREFIX)) {
+                references.add(relativeKey);
+                includes.add(new IncludeReference(
+                        toConfigKey(relativeKey),
+                        value.substring(INCLUDE_PREFIX.length()).trim()
+                ));
+            } else {
+                configuration.addProperty(toConfigKey(relativeKey), value);
+            }
+        }
+        referenceKeys.put(name, references);
+
+        return new ConfigurationResult(configuration, includes);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This connection does not store serialized configuration parts; use {@link #loadStructured(String)} instead.
+     */
+    @Override
+    public InputStream load(String name) throws ConfigurationException {
+        throw new ConfigurationException("Configuration part " + name + " is stored as individual keys in Etcd, " +
+                "and cannot be loaded as a serialized document.");
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (stopped) return;
+            this.stopped = true;
+            this.reloads.close();
+            this.watches.values().forEach(EtcdAsConfigConnection::closeQuietly);
+            this.watches.clear();
+        }
+        if (!executor.close(5000)) {
+            logger.error("Failed to terminate the change-listeners.");
+        }
+        etcd.close();
+    }
+
+    String partPrefix(String name) {
+        return namespace + name + "/";
+    }
+
+    static boolean isReference(String relativeKey, String value) {
+        return relativeKey.equals(EXTENDS_KEY) || (value != null && value.startsWith(INCLUDE_PREFIX));
+    }
+
+    /**
+     * Turn a {@code /}-separated Etcd key into a configuration key. Dots in a key segment are escaped, so they are
+     * not mistaken for key separators.
+     *
+     * @param relativeKey Etcd key, relative to its configuration part.
+     * @return Configuration key.
+     */
+    static String toConfigKey(String relativeKey) {
+        StringBuilder builder = new StringBuilder(relativeKey.length() + 4);
+        for (int i = 0; i < relativeKey.length(); i++) {
+            char c = relativeKey.charAt(i);
+            if (c == '/') {
+                builder.append('.');
+            } else if (c == '.') {
+                builder.append("..");
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    static class PendingChanges {
+        boolean reload = false;
+        // Values may be null, for removed keys.
+        final Map<String, Object> values = new LinkedHashMap<>();
+    }
+}
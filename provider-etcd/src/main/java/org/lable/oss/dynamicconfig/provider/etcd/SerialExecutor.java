@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on the threads of a shared executor.
+ * <p>
+ * Each connection has its own, so its reloads never overlap, while all connections to a cluster share the threads of
+ * their {@link SharedEtcdClient}.
+ */
+class SerialExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Executor executor;
+    // Guarded by itself, as are the two flags below.
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    // True while a thread of the shared executor is draining the queue.
+    private boolean running = false;
+    private boolean closed = false;
+    // Thread draining the queue, if any.
+    private Thread drainer = null;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (tasks) {
+            if (closed) return;
+            tasks.add(task);
+            if (running) return;
+            running = true;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Shared executor no longer accepts tasks; dropping them.", e);
+            synchronized (tasks) {
+                tasks.clear();
+                running = false;
+                tasks.notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (tasks) {
+                task = closed ? null : tasks.poll();
+                if (task == null) {
+                    running = false;
+                    drainer = null;
+                    tasks.notifyAll();
+                    return;
+                }
+                drainer = Thread.currentThread();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Failed to run configuration reload.", e);
+            }
+        }
+    }
+
+    /**
+     * Drop all tasks not yet started, and wait for the running task (if any) to finish.
+     *
+     * @param timeoutMillis Maximum time to wait, in milliseconds.
+     * @return True if no task is running anymore.
+     */
+    boolean close(long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        synchronized (tasks) {
+            closed = true;
+            tasks.clear();
+            // Closed by the running task itself; it cannot be waited for.
+            if (drainer == Thread.currentThread()) return true;
+            try {
+                while (running) {
+                    long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                    if (remaining <= 0) return false;
+                    tasks.wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+    }
+}
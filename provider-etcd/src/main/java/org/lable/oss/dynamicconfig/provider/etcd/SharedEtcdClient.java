@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An Etcd client shared by all connections to the same cluster, see {@link EtcdClientRegistry}.
+ * <p>
+ * Watches are multiplexed: only a single Etcd watch is maintained per key, and its events are fanned out to every
+ * listener registered for that key. Listeners are called from the gRPC thread, so connections hand change
+ * notifications off to the reload executor of this client. Its threads are shared by all connections; each connection
+ * runs its own reloads one at a time through a {@link SerialExecutor}.
+ */
+class SharedEtcdClient implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SharedEtcdClient.class);
+
+    // Enough threads that a slow reload of one connection does not hold up the reloads of the others.
+    static final int RELOAD_THREADS = 4;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final String registryKey;
+    private final Client client;
+    private final Map<WatchTarget, MultiplexedWatch> watches = new HashMap<>();
+    private final ScheduledExecutorService reloadExecutor;
+
+    // Guarded by the registry.
+    int references = 0;
+
+    SharedEtcdClient(String registryKey, Client client) {
+        this.registryKey = registryKey;
+        this.client = client;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(RELOAD_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "dynamicconfig-etcd-reload-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.reloadExecutor = executor;
+    }
+
+    String getRegistryKey() {
+        return registryKey;
+    }
+
+    Client getClient() {
+        return client;
+    }
+
+    /**
+     * @return Executor shared by all connections using this client, for running (delayed) reloads.
+     */
+    ScheduledExecutorService getReloadExecutor() {
+        return reloadExecutor;
+    }
+
+    /**
+     * Register a listener for changes to a key. If no other listener is registered for the same key, a new Etcd
+     * watch is created.
+     *
+     * @param key      Full key, including the namespace.
+     * @param prefix   If true, watch every key that starts with {@code key}.
+     * @param listener Listener for watch events, called with all events of a single watch response at once. Called
+     *                 from the gRPC thread; listeners should return quickly.
+     * @return A handle that stops this listener when closed.
+     */
+    synchronized Closeable watch(String key, boolean prefix, Consumer<List<WatchEvent>> listener) {
+        WatchTarget target = new WatchTarget(key, prefix);
+        MultiplexedWatch watch = watches.get(target);
+        if (watch == null) {
+            watch = new MultiplexedWatch();
+            ByteSequence keyBytes = ByteSequence.from(key, StandardCharsets.UTF_8);
+            final MultiplexedWatch listeners = watch;
+            Consumer<WatchResponse> onNext = response ->
+                    listeners.listeners.forEach(l -> l.accept(response.getEvents()));
+            watch.watcher = prefix
+                    ? client.getWatchClient().watch(keyBytes, WatchOption.builder().isPrefix(true).build(), onNext)
+                    : client.getWatchClient().watch(keyBytes, onNext);
+            watches.put(target, watch);
+            logger.debug("Etcd watch created for {}.", key);
+        }
+        watch.listeners.add(listener);
+
+        return () -> unwatch(target, listener);
+    }
+
+    synchronized void unwatch(WatchTarget target, Consumer<List<WatchEvent>> listener) {
+        MultiplexedWatch watch = watches.get(target);
+        if (watch == null) return;
+
+        watch.listeners.remove(listener);
+        if (watch.listeners.isEmpty()) {
+            watches.remove(target);
+            watch.watcher.close();
+            logger.debug("Etcd watch removed for {}.", target.key);
+        }
+    }
+
+    /**
+     * Release this connection's reference to the shared client.
+     */
+    @Override
+    public void close() {
+        EtcdClientRegistry.release(this);
+    }
+
+    /**
+     * Actually close the client. Called by the registry once no references remain.
+     */
+    void shutdown() {
+        synchronized (this) {
+            watches.values().forEach(watch -> watch.watcher.close());
+            watches.clear();
+        }
+        EtcdAsConfigConnection.shutdown(reloadExecutor);
+        client.close();
+    }
+
+    static class MultiplexedWatch {
+        Watch.Watcher watcher;
+        final List<Consumer<List<WatchEvent>>> listeners = new CopyOnWriteArrayList<>();
+    }
+
+    static class WatchTarget {
+        final String key;
+        final boolean prefix;
+
+        WatchTarget(String key, boolean prefix) {
+            this.key = key;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, prefix);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof WatchTarget)) return false;
+            WatchTarget that = (WatchTarget) other;
+            return this.prefix == that.prefix && Objects.equals(this.key, that.key);
+        }
+    }
+}
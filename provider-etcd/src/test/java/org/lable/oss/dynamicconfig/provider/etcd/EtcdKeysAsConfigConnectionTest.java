@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigChangeListener;
+import org.lable.oss.dynamicconfig.core.spi.ConfigurationConnection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.lable.oss.dynamicconfig.provider.etcd.EtcdKeysAsConfigConnection.isReference;
+import static org.lable.oss.dynamicconfig.provider.etcd.EtcdKeysAsConfigConnection.toConfigKey;
+
+public class EtcdKeysAsConfigConnectionTest {
+    private RecordingListener listener;
+    private EtcdKeysAsConfigConnection connection;
+
+    @Before
+    public void before() {
+        listener = new RecordingListener();
+        // The Etcd client only connects when it is first used, which these tests never do.
+        connection = new EtcdKeysAsConfigConnection(new String[]{"http://127.0.0.1:2379"}, "test/", listener);
+    }
+
+    @After
+    public void after() {
+        connection.close();
+    }
+
+    @Test
+    public void toConfigKeyTest() {
+        assertThat(toConfigKey("key"), is("key"));
+        assertThat(toConfigKey("tree/branch/leaf"), is("tree.branch.leaf"));
+        assertThat(toConfigKey("hosts/db.example.com/port"), is("hosts.db..example..com.port"));
+        assertThat(toConfigKey("trailing."), is("trailing.."));
+    }
+
+    @Test
+    public void isReferenceTest() {
+        assertThat(isReference("extends", "base"), is(true));
+        assertThat(isReference("tree/branch", "!include other"), is(true));
+        assertThat(isReference("tree/branch", "value"), is(false));
+        assertThat(isReference("tree/branch", null), is(false));
+    }
+
+    @Test
+    public void lastValuePerKeyTest() {
+        connection.addPendingChange("part", "a", "1");
+        connection.addPendingChange("part", "b", "2");
+        connection.addPendingChange("part", "a", "3");
+        connection.addPendingChange("part", "c", null);
+
+        connection.applyPendingChanges("part");
+
+        assertThat(listener.changed, is(empty()));
+        assertThat(listener.valuesChanged.size(), is(1));
+        Map<String, Object> values = listener.valuesChanged.get(0);
+        assertThat(values.keySet(), contains("a", "b", "c"));
+        assertThat(values.get("a"), is("3"));
+        assertThat(values.get("b"), is("2"));
+        assertThat(values.containsKey("c"), is(true));
+        assertThat(values.get("c"), is((Object) null));
+
+        // Applied changes are not applied again.
+        connection.applyPendingChanges("part");
+        assertThat(listener.valuesChanged.size(), is(1));
+    }
+
+    @Test
+    public void referenceChangeForcesReloadTest() {
+        connection.addPendingChange("part", "a", "1");
+        connection.addPendingChange("part", null, "!include other");
+        connection.addPendingChange("part", "b", "2");
+
+        connection.applyPendingChanges("part");
+
+        assertThat(listener.changed, contains("part"));
+        assertThat(listener.valuesChanged, is(empty()));
+    }
+
+    @Test
+    public void partsAreAppliedSeparatelyTest() {
+        connection.addPendingChange("part-a", "a", "1");
+        connection.addPendingChange("part-b", null, null);
+
+        connection.applyPendingChanges("part-a");
+
+        assertThat(listener.changed, is(empty()));
+        assertThat(listener.valuesChanged.size(), is(1));
+
+        connection.applyPendingChanges("part-b");
+
+        assertThat(listener.changed, contains("part-b"));
+        assertThat(listener.valuesChanged.size(), is(1));
+    }
+
+    @Test
+    public void noChangesAfterCloseTest() {
+        connection.addPendingChange("part", "a", "1");
+        connection.close();
+
+        connection.applyPendingChanges("part");
+
+        assertThat(listener.changed, is(empty()));
+        assertThat(listener.valuesChanged, is(empty()));
+    }
+
+    static class RecordingListener implements ConfigChangeListener {
+        final List<String> changed = new ArrayList<>();
+        final List<Map<String, Object>> valuesChanged = new ArrayList<>();
+
+        @Override
+        public void changed(ConfigurationConnection configurationConnection, String name) {
+            changed.add(name);
+        }
+
+        @Override
+        public void valuesChanged(ConfigurationConnection configurationConnection, String name,
+                                  Map<String, Object> values) {
+            valuesChanged.add(new LinkedHashMap<>(values));
+        }
+    }
+}
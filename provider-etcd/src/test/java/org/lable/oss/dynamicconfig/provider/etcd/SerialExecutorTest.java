@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.provider.etcd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+public class SerialExecutorTest {
+    private final ExecutorService shared = Executors.newFixedThreadPool(4);
+
+    @After
+    public void after() {
+        shared.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void runsTasksInOrderOneAtATimeTest() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(shared);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            int n = i;
+            executor.execute(() -> {
+                if (active.incrementAndGet() > 1) overlapped.set(true);
+                order.add(n);
+                active.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(overlapped.get(), is(false));
+        assertThat(order, contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19));
+    }
+
+    @Test(timeout = 10_000)
+    public void closeDropsQueuedTasksTest() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(shared);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.incrementAndGet();
+        });
+        executor.execute(ran::incrementAndGet);
+        started.await();
+
+        // The running task is still blocked.
+        assertThat(executor.close(50), is(false));
+        release.countDown();
+        assertThat(executor.close(5000), is(true));
+
+        executor.execute(ran::incrementAndGet);
+        shared.shutdown();
+        shared.awaitTermination(5, TimeUnit.SECONDS);
+        assertThat(ran.get(), is(1));
+    }
+
+    @Test(timeout = 10_000)
+    public void closeFromRunningTaskTest() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(shared);
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            closed.set(executor.close(5000));
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(closed.get(), is(true));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.cbor;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.serialization.yaml.JsonDeserializer;
+
+/**
+ * Deserialize {@link HierarchicalConfiguration} instances from their CBOR representation.
+ * <p>
+ * CBOR is a binary encoding of the JSON data model, so the structure and include conventions are those of
+ * {@link JsonDeserializer}: an include is a map with a single {@code "!include"} field, and the {@code extends} key
+ * lists the configuration parts extended. Intended for large, machine-generated configuration parts, which parse
+ * considerably faster in this form than as YAML.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class CborDeserializer extends JsonDeserializer {
+    /**
+     * Construct a new CborDeserializer.
+     */
+    public CborDeserializer() {
+        super(new CBORFactory());
+    }
+
+    @Override
+    public String defaultConfigName() {
+        return "config.cbor";
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.cbor;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.serialization.yaml.JsonSerializer;
+
+import java.io.OutputStream;
+
+/**
+ * Serialize {@link HierarchicalConfiguration} instances into a CBOR representation.
+ */
+public class CborSerializer extends JsonSerializer {
+    /**
+     * Construct a new CborSerializer.
+     */
+    public CborSerializer() {
+        super(new CBORFactory());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * CBOR is a binary format, so {@code humanReadable} is ignored.
+     */
+    @Override
+    public void serialize(HierarchicalConfiguration configuration, OutputStream output, boolean humanReadable)
+            throws ConfigurationException {
+        super.serialize(configuration, output, false);
+    }
+}
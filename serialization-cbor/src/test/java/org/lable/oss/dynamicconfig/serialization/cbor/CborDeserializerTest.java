@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.cbor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationLoader;
+import org.lable.oss.dynamicconfig.core.ConfigurationResult;
+import org.lable.oss.dynamicconfig.core.IncludeReference;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+
+public class CborDeserializerTest {
+    @Test
+    public void testRoundTrip() throws ConfigurationException {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("type.unicodeString", "€");
+        configuration.setProperty("type.booleanTrue", true);
+        configuration.setProperty("type.long", 1000000000000L);
+        configuration.setProperty("type.list", Arrays.asList("1", "2", "3"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new CborSerializer().serialize(configuration, output, false);
+
+        ConfigurationResult result =
+                new CborDeserializer().deserialize(new ByteArrayInputStream(output.toByteArray()));
+        HierarchicalConfiguration config = result.getConfiguration();
+
+        assertThat(config.getString("type.unicodeString"), is("€"));
+        assertThat(config.getBoolean("type.booleanTrue"), is(true));
+        assertThat(config.getLong("type.long"), is(1000000000000L));
+        assertThat(config.getList("type.list").size(), is(3));
+    }
+
+    @Test
+    public void testIncludes() throws ConfigurationException, IOException {
+        Map<String, Object> tree = new LinkedHashMap<>();
+        tree.put("extends", Collections.singletonList("base"));
+        tree.put("tree", Collections.singletonMap("branch-a", Collections.singletonMap("!include", "i1")));
+        byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(tree);
+
+        ConfigurationResult result = new CborDeserializer().deserialize(new ByteArrayInputStream(cbor));
+
+        assertThat(
+                result.getIncludeReferences(),
+                containsInAnyOrder(
+                        new IncludeReference("tree.branch-a", "i1"),
+                        new IncludeReference("base")
+                )
+        );
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testIncludeWithoutStringValue() throws ConfigurationException, IOException {
+        Map<String, Object> tree = Collections.singletonMap("tree", Collections.singletonMap("!include", 1));
+        byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(tree);
+
+        new CborDeserializer().deserialize(new ByteArrayInputStream(cbor));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testLoadBogusCbor() throws ConfigurationException {
+        new CborDeserializer().deserialize(new ByteArrayInputStream(new byte[]{(byte) 0xbf, 0x61}));
+    }
+
+    @Test
+    public void testDetectedByRootConfigExtension() throws ConfigurationException {
+        // The JSON deserializer this module depends on is on the classpath as well.
+        String property = ConfigurationLoader.LIBRARY_PREFIX + "." + ConfigurationLoader.ROOTCONFIG_PROPERTY;
+        String previous = System.getProperty(property);
+        try {
+            System.setProperty(property, "config.cbor");
+            assertThat(ConfigurationLoader.detectDeserializer(), is(instanceOf(CborDeserializer.class)));
+            System.setProperty(property, "config.json");
+            assertThat(ConfigurationLoader.detectDeserializer(), is(not(instanceOf(CborDeserializer.class))));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(property);
+            } else {
+                System.setProperty(property, previous);
+            }
+        }
+    }
+}
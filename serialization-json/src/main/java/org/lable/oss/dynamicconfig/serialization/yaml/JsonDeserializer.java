@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.yaml;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationResult;
+import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.StringPool;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Deserialize {@link HierarchicalConfiguration} instances from their JSON representation.
+ * <p>
+ * The configuration tree is built directly from the parser's token stream. The top level of the input must be an
+ * object. Includes are written as an object with a single {@code "!include"} field, similar to the {@code !include}
+ * tag in YAML:
+ * <pre>
+ * {
+ *   "extends": ["base.json"],
+ *   "tree": {
+ *     "branch": {"!include": "other.json"}
+ *   }
+ * }
+ * </pre>
+ * Includes can only take the place of an object field's value; an {@code "!include"} field anywhere else, such as
+ * within an array or next to other fields, is rejected. So is any content after the top-level object.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class JsonDeserializer implements HierarchicalConfigurationDeserializer {
+    /**
+     * Field name that marks an object as include reference.
+     */
+    public static final String INCLUDE_KEY = "!include";
+
+    private final JsonFactory factory;
+
+    /**
+     * Construct a new JsonDeserializer.
+     */
+    public JsonDeserializer() {
+        this(new JsonFactory());
+    }
+
+    /**
+     * Construct a new JsonDeserializer for a data format supported by a Jackson {@link JsonFactory} implementation.
+     *
+     * @param factory Factory used to create parsers. It must not be reconfigured after it is passed here.
+     */
+    protected JsonDeserializer(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConfigurationResult deserialize(InputStream input) throws ConfigurationException {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        List<IncludeReference> includes = new ArrayList<>();
+
+        try (JsonParser parser = factory.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new ConfigurationException("Configuration must be an object at the top level.");
+                }
+                parseObject(parser, configuration.getRootNode(), null, includes);
+                if (parser.nextToken() != null) {
+                    throw new ConfigurationException("Unexpected content after the top-level object.");
+                }
+            }
+        } catch (IOException e) {
+            throw new ConfigurationException("Failed to parse input as valid " + formatName() + ".", e);
+        }
+
+        // Get the references from the special 'extends' key.
+        for (String reference : configuration.getStringArray("extends")) {
+            includes.add(new IncludeReference(reference));
+        }
+
+        return new ConfigurationResult(configuration, includes);
+    }
+
+    @Override
+    public String defaultConfigName() {
+        return "config.json";
+    }
+
+    /**
+     * @return Name of the data format, for use in error messages.
+     */
+    protected String formatName() {
+        return factory.getFormatName();
+    }
+
+    /**
+     * Parse the fields of an object into configuration nodes. The parser must be positioned at the object's
+     * {@link JsonToken#START_OBJECT} token; when this method returns, it is positioned at the matching
+     * {@link JsonToken#END_OBJECT}.
+     *
+     * @param parser   Parser.
+     * @param parent   Node that receives the object's fields as children.
+     * @param path     Path of {@code parent}.
+     * @param includes Includes encountered.
+     */
+    static void parseObject(JsonParser parser,
+                            ConfigurationNode parent,
+                            String path,
+                            List<IncludeReference> includes) throws IOException, ConfigurationException {
+        boolean first = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = StringPool.intern(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+
+            if (key.equals(INCLUDE_KEY)) {
+                // Read the name before advancing, the parser's text then refers to the END_OBJECT token.
+                String name = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                if (!first || name == null || parser.nextToken() != JsonToken.END_OBJECT) {
+                    throw new ConfigurationException("An include must be an object with a single string field " +
+                            INCLUDE_KEY + " (at " + path + ").");
+                }
+                includes.add(new IncludeReference(path, name));
+                return;
+            }
+            first = false;
+
+            HierarchicalConfiguration.Node child = new HierarchicalConfiguration.Node(key);
+            String childPath = path == null ? key : path + "." + key;
+            if (token == JsonToken.START_OBJECT) {
+                parseObject(parser, child, childPath, includes);
+            } else {
+                child.setValue(readValue(parser, childPath));
+            }
+            parent.addChild(child);
+        }
+    }
+
+    /**
+     * Read the value at the parser's current token as plain Java object. Nested objects within arrays become maps.
+     *
+     * @param parser Parser.
+     * @param path   Path of the node that receives the value, for error messages.
+     * @return Value.
+     */
+    static Object readValue(JsonParser parser, String path) throws IOException, ConfigurationException {
+        switch (parser.currentToken()) {
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(parser, path));
+                }
+                return list;
+            case START_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = StringPool.intern(parser.getCurrentName());
+                    if (key.equals(INCLUDE_KEY)) {
+                        throw new ConfigurationException("Includes are not supported within arrays (at " + path +
+                                ").");
+                    }
+                    parser.nextToken();
+                    map.put(key, readValue(parser, path));
+                }
+                return map;
+            case VALUE_STRING:
+                // Look up short strings in the pool straight from the parser's buffer.
+                return StringPool.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.getEmbeddedObject();
+            case VALUE_NULL:
+            default:
+                return null;
+        }
+    }
+}
@@ -15,23 +15,50 @@
  */
 package org.lable.oss.dynamicconfig.serialization.yaml;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationSerializer;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-import static org.lable.oss.dynamicconfig.core.commonsconfiguration.Objectifier.traverseTreeAndEmit;
+import static org.lable.oss.dynamicconfig.core.commonsconfiguration.Objectifier.groupChildren;
 
 /**
  * Serialize {@link HierarchicalConfiguration} instances into a JSON representation.
+ * <p>
+ * The configuration node tree is walked directly, and written as UTF-8 straight to the output stream. Instances of
+ * this class are thread-safe.
  */
 public class JsonSerializer implements HierarchicalConfigurationSerializer {
-    final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory;
+
+    /**
+     * Construct a new JsonSerializer.
+     */
+    public JsonSerializer() {
+        this(new JsonFactory());
+    }
+
+    /**
+     * Construct a new JsonSerializer for a data format supported by a Jackson {@link JsonFactory} implementation.
+     *
+     * @param factory Factory used to create generators. It must not be reconfigured after it is passed here.
+     */
+    protected JsonSerializer(JsonFactory factory) {
+        // Leave closing the output stream to the caller.
+        this.factory = factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
 
     /**
      * {@inheritDoc}
@@ -39,21 +66,73 @@ public class JsonSerializer implements HierarchicalConfigurationSerializer {
     @Override
     public void serialize(HierarchicalConfiguration configuration, OutputStream output, boolean humanReadable)
             throws ConfigurationException {
-        StringWriter writer = new StringWriter();
-        if (humanReadable) {
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        try (JsonGenerator generator = factory.createGenerator(output, JsonEncoding.UTF8)) {
+            if (humanReadable) generator.useDefaultPrettyPrinter();
+            writeChildren(generator, configuration.getRootNode());
+        } catch (IOException e) {
+            throw new ConfigurationException("IOException caught.", e);
+        }
+    }
+
+    static void writeNode(JsonGenerator generator, ConfigurationNode node) throws IOException {
+        if (node.getChildrenCount() == 0) {
+            writeValue(generator, node.getValue());
         } else {
-            mapper.disable(SerializationFeature.INDENT_OUTPUT);
+            writeChildren(generator, node);
         }
+    }
 
-//        mapper.enable(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS);
-//        mapper.disable(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED);
+    static void writeChildren(JsonGenerator generator, ConfigurationNode node) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, List<ConfigurationNode>> group : groupChildren(node).entrySet()) {
+            generator.writeFieldName(group.getKey());
+            List<ConfigurationNode> children = group.getValue();
+            if (children.size() == 1) {
+                writeNode(generator, children.get(0));
+            } else {
+                generator.writeStartArray();
+                for (ConfigurationNode child : children) {
+                    writeNode(generator, child);
+                }
+                generator.writeEndArray();
+            }
+        }
+        generator.writeEndObject();
+    }
 
-        try {
-            mapper.writeValue(writer, traverseTreeAndEmit(configuration.getRootNode()));
-            output.write(writer.toString().getBytes());
-        } catch (IOException e) {
-            throw new ConfigurationException("IOException caught.", e);
+    static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            Collection<?> collection = value instanceof Collection
+                    ? (Collection<?>) value
+                    : Arrays.asList((Object[]) value);
+            generator.writeStartArray();
+            for (Object element : collection) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else {
+            generator.writeString(value.toString());
         }
     }
 }
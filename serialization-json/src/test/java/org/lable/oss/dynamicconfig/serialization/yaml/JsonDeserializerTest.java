@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.yaml;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationLoader;
+import org.lable.oss.dynamicconfig.core.ConfigurationResult;
+import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class JsonDeserializerTest {
+    @Test
+    public void testLoad() throws ConfigurationException {
+        HierarchicalConfigurationDeserializer deserializer = new JsonDeserializer();
+        ConfigurationResult result = deserializer.deserialize(json("{" +
+                "\"type\": {" +
+                "  \"string\": \"Okay\"," +
+                "  \"unicodeString\": \"€\"," +
+                "  \"booleanTrue\": true," +
+                "  \"long\": 1000000000000," +
+                "  \"double\": 1.5," +
+                "  \"listOfIntegers\": [1, 2, 3, 0, -1]" +
+                "}," +
+                "\"tree\": {\"branchL1a\": {\"branchL2a\": {\"branchL3a\": \"leaf_a\"}}}" +
+                "}"));
+        HierarchicalConfiguration config = result.getConfiguration();
+
+        assertThat(config.getString("type.string"), is("Okay"));
+        assertThat(config.getString("type.unicodeString"), is("€"));
+        assertThat(config.getBoolean("type.booleanTrue"), is(true));
+        assertThat(config.getLong("type.long"), is(1000000000000L));
+        assertThat(config.getDouble("type.double"), is(1.5));
+        List<?> list = config.getList("type.listOfIntegers");
+        assertThat(list.size(), is(5));
+        assertThat(list.get(0), is(1));
+        assertThat(list.get(4), is(-1));
+        assertThat(config.getString("tree.branchL1a.branchL2a.branchL3a"), is("leaf_a"));
+        assertThat(result.getIncludeReferences().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIncludes() throws ConfigurationException {
+        HierarchicalConfigurationDeserializer deserializer = new JsonDeserializer();
+        ConfigurationResult result = deserializer.deserialize(json("{" +
+                "\"extends\": [\"base\"]," +
+                "\"tree\": {\"branch-a\": {\"!include\": \"i1\"}, \"branch-b\": [1, 2]}" +
+                "}"));
+
+        assertThat(
+                result.getIncludeReferences(),
+                containsInAnyOrder(
+                        new IncludeReference("tree.branch-a", "i1"),
+                        new IncludeReference("base")
+                )
+        );
+    }
+
+    @Test
+    public void testEmptyInput() throws ConfigurationException {
+        ConfigurationResult result = new JsonDeserializer().deserialize(json(""));
+
+        assertThat(result.getConfiguration().isEmpty(), is(true));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testLoadBogusJson() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"BOGUS_JSON\": "));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testTopLevelArray() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("[1, 2]"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testInvalidInclude() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"a\": {\"!include\": \"i1\", \"b\": 1}}"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testIncludeAfterOtherFields() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"a\": {\"b\": 1, \"!include\": \"i1\"}}"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testIncludeInArray() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"a\": [{\"!include\": \"i1\"}]}"));
+    }
+
+    @Test
+    public void testObjectInArray() throws ConfigurationException {
+        ConfigurationResult result = new JsonDeserializer().deserialize(json("{\"a\": [{\"b\": 1}]}"));
+
+        assertThat(result.getConfiguration().getList("a").size(), is(1));
+        assertThat(result.getIncludeReferences().isEmpty(), is(true));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testTrailingObject() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"a\": 1} {\"b\": 2}"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testTrailingGarbage() throws ConfigurationException {
+        new JsonDeserializer().deserialize(json("{\"a\": 1} garbage"));
+    }
+
+    @Test
+    public void testDetectedAlongsideYaml() throws ConfigurationException {
+        // The YAML deserializer is on the test classpath as well.
+        String property = ConfigurationLoader.LIBRARY_PREFIX + "." + ConfigurationLoader.ROOTCONFIG_PROPERTY;
+        String previous = System.getProperty(property);
+        try {
+            System.setProperty(property, "config.json");
+            assertThat(ConfigurationLoader.detectDeserializer(), is(instanceOf(JsonDeserializer.class)));
+            System.setProperty(property, "config.yaml");
+            assertThat(ConfigurationLoader.detectDeserializer(), is(instanceOf(YamlDeserializer.class)));
+            // A root configuration named after the application has no extension; YAML remains the default.
+            System.setProperty(property, "my-application");
+            assertThat(ConfigurationLoader.detectDeserializer(), is(instanceOf(YamlDeserializer.class)));
+            System.clearProperty(property);
+            assertThat(ConfigurationLoader.detectDeserializer(), is(instanceOf(YamlDeserializer.class)));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(property);
+            } else {
+                System.setProperty(property, previous);
+            }
+        }
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
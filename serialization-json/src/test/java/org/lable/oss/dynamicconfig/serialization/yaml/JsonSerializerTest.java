@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationSerializer;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
@@ -79,4 +80,42 @@ public class JsonSerializerTest {
 
         assertThat(json.contains("\n"), is(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRoundTripAndStreamLeftOpen() throws ConfigurationException, IOException {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("type.long", 1000000000000L);
+        configuration.setProperty("type.double", 1.5);
+        configuration.addProperty("repeated.item", "a");
+        configuration.addProperty("repeated.item", "b");
+
+        CloseRecordingOutputStream output = new CloseRecordingOutputStream();
+        new JsonSerializer().serialize(configuration, output, false);
+        // The serializer must not close the stream.
+        assertThat(output.closed, is(false));
+
+        JsonNode tree = mapper.readTree(output.toString(StandardCharsets.UTF_8));
+        assertThat(tree.get("type").get("long").longValue(), is(1000000000000L));
+        assertThat(tree.get("type").get("double").doubleValue(), is(1.5));
+        assertThat(tree.get("repeated").get("item").size(), is(2));
+
+        HierarchicalConfiguration reloaded = new JsonDeserializer()
+                .deserialize(new ByteArrayInputStream(output.toByteArray()))
+                .getConfiguration();
+        assertThat(reloaded.getLong("type.long"), is(1000000000000L));
+        assertThat(reloaded.getList("repeated.item").size(), is(2));
+    }
+
+    /**
+     * Records whether the stream was closed; closing a {@link ByteArrayOutputStream} has no effect otherwise.
+     */
+    static class CloseRecordingOutputStream extends ByteArrayOutputStream {
+        boolean closed = false;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
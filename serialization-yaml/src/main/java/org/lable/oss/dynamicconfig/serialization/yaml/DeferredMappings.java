@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.yaml;
+
+import org.lable.oss.dynamicconfig.serialization.yaml.snake.CustomConstructor;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The mappings of a YAML document that can be deferred, found by a scan of the parser's events, and the document with
+ * those mappings left out.
+ * <p>
+ * Only the outermost mappings at least as large as the lazy threshold are deferred. A mapping can be deferred if its
+ * source can be composed on its own, and building it cannot yield includes: it must be the value of a key in a
+ * mapping that is itself built from the node graph (so not inside a sequence, and not a merge key's value), and
+ * neither the mapping nor anything in it may have an anchor, be an alias, or carry the include tag.
+ * <p>
+ * In the reduced document, each deferred mapping is replaced by an empty flow mapping ({@code {}}) padded with
+ * spaces, keeping its line breaks. Every other node therefore keeps its position, and the empty mapping starts where
+ * the deferred mapping did. Composing the reduced document builds a node graph without the deferred mappings.
+ */
+class DeferredMappings {
+    private static final String MERGE_KEY = "<<";
+
+    // Source of each deferred mapping, indented as it was in the document, by the index of its start mark.
+    final Map<Integer, String> sources;
+    // The document, with the deferred mappings replaced by empty ones.
+    final String reduced;
+
+    private DeferredMappings(Map<Integer, String> sources, String reduced) {
+        this.sources = sources;
+        this.reduced = reduced;
+    }
+
+    /**
+     * Find the mappings of a document that can be deferred.
+     *
+     * @param yaml          Used to parse the document.
+     * @param document      YAML document.
+     * @param lazyThreshold Minimum size in characters of a mapping for it to be deferred.
+     * @return The deferrable mappings.
+     */
+    static DeferredMappings scan(Yaml yaml, String document, int lazyThreshold) {
+        List<Mark[]> ranges = new ArrayList<>();
+        Deque<Frame> open = new ArrayDeque<>();
+        for (Event event : yaml.parse(new StringReader(document))) {
+            if (event instanceof CollectionStartEvent) {
+                Frame parent = open.peek();
+                boolean value = parent != null && parent.mapping && !parent.atKey;
+                boolean mapping = event instanceof MappingStartEvent;
+                // Only mappings reached through mappings alone are walked, and can have deferred values.
+                boolean walked = mapping && (parent == null || (parent.walked && value));
+                boolean candidate = walked && parent != null && !MERGE_KEY.equals(parent.key);
+                String tag = ((CollectionStartEvent) event).getTag();
+                if (parent != null) parent.next(null);
+                if (isReference((NodeEvent) event, tag)) unsafe(open);
+                open.push(new Frame(mapping, walked, candidate ? event.getStartMark() : null));
+                if (isReference((NodeEvent) event, tag)) open.peek().safe = false;
+            } else if (event instanceof CollectionEndEvent) {
+                Frame frame = open.pop();
+                if (frame.start != null && frame.safe) {
+                    Mark end = event.getEndMark();
+                    int size = end.getIndex() - frame.start.getIndex();
+                    if (size >= lazyThreshold && size >= 2) ranges.add(new Mark[]{frame.start, end});
+                }
+            } else if (event instanceof ScalarEvent) {
+                ScalarEvent scalar = (ScalarEvent) event;
+                if (isReference(scalar, scalar.getTag())) unsafe(open);
+                Frame parent = open.peek();
+                if (parent != null) parent.next(scalar.getValue());
+            } else if (event instanceof AliasEvent) {
+                unsafe(open);
+                Frame parent = open.peek();
+                if (parent != null) parent.next(null);
+            }
+        }
+        return reduce(document, ranges);
+    }
+
+    /**
+     * Cut the outermost of the ranges found from the document.
+     */
+    static DeferredMappings reduce(String document, List<Mark[]> ranges) {
+        if (ranges.isEmpty()) return new DeferredMappings(Collections.emptyMap(), document);
+
+        ranges.sort(Comparator.comparingInt(range -> range[0].getIndex()));
+        Map<Integer, String> sources = new HashMap<>();
+        StringBuilder reduced = new StringBuilder(document.length());
+        // SnakeYAML marks count code points, not chars; track both while moving through the document.
+        int codePoint = 0;
+        int position = 0;
+        int covered = 0;
+        for (Mark[] range : ranges) {
+            int start = range[0].getIndex();
+            int end = range[1].getIndex();
+            // Skip mappings nested in one that is deferred already.
+            if (start < covered) continue;
+
+            int from = document.offsetByCodePoints(position, start - codePoint);
+            int to = document.offsetByCodePoints(from, end - start);
+            String source = document.substring(from, to);
+            String blank = blank(source);
+            if (blank == null) continue;
+
+            reduced.append(document, position, from).append(blank);
+            sources.put(start, " ".repeat(range[0].getColumn()) + source);
+            codePoint = end;
+            position = to;
+            covered = end;
+        }
+        reduced.append(document, position, document.length());
+        return new DeferredMappings(sources, reduced.toString());
+    }
+
+    /**
+     * Replace the source of a mapping with an empty flow mapping, with one space for every other code point except
+     * line breaks.
+     *
+     * @param source YAML source of a mapping.
+     * @return The replacement, or {@code null} if the source is too short to hold an empty mapping.
+     */
+    static String blank(String source) {
+        StringBuilder blank = new StringBuilder(source.length());
+        int written = 0;
+        for (int i = 0; i < source.length(); i += Character.charCount(source.codePointAt(i))) {
+            char c = source.charAt(i);
+            if (isLineBreak(c)) {
+                blank.append(c);
+            } else {
+                blank.append(written == 0 ? '{' : written == 1 ? '}' : ' ');
+                written++;
+            }
+        }
+        return written < 2 ? null : blank.toString();
+    }
+
+    static boolean isLineBreak(char c) {
+        // Line breaks as recognized by SnakeYAML (YAML 1.1).
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    static boolean isReference(NodeEvent event, String tag) {
+        return event.getAnchor() != null || CustomConstructor.INCLUDE_TAG.getValue().equals(tag);
+    }
+
+    /**
+     * Mark every open collection as not deferrable.
+     */
+    static void unsafe(Deque<Frame> open) {
+        for (Frame frame : open) {
+            frame.safe = false;
+        }
+    }
+
+    /**
+     * A collection being scanned.
+     */
+    static class Frame {
+        final boolean mapping;
+        // Whether the collection is walked when building the configuration tree.
+        final boolean walked;
+        // Start of the collection if it may be deferred, otherwise null.
+        final Mark start;
+        boolean safe = true;
+        // For mappings, whether the next node is a key, and the last key seen (if it was a scalar).
+        boolean atKey = true;
+        String key = null;
+
+        Frame(boolean mapping, boolean walked, Mark start) {
+            this.mapping = mapping;
+            this.walked = walked;
+            this.start = start;
+        }
+
+        /**
+         * Move past a node in this collection.
+         *
+         * @param scalar Value of the node if it is a scalar, otherwise null.
+         */
+        void next(String scalar) {
+            if (!mapping) return;
+            if (atKey) key = scalar;
+            atKey = !atKey;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.serialization.yaml;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
+import org.apache.commons.configuration.tree.ConfigurationNodeVisitor;
+import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.spi.DeferredNode;
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration tree node for a YAML mapping whose children are only built when they are first accessed.
+ * <p>
+ * Until then, only the YAML source of the mapping is kept. Mappings containing includes, anchors, or aliases are
+ * never deferred (see {@link DeferredMappings}), so the source of the mapping can be composed on its own. See
+ * {@link DeferredNode} for what builds the children of a deferred node.
+ */
+class LazyNode extends HierarchicalConfiguration.Node implements DeferredNode {
+    private final Yaml yaml;
+    private final int lazyThreshold;
+    private final String path;
+    private String source;
+    private volatile boolean materialized = false;
+
+    /**
+     * Construct a new LazyNode.
+     *
+     * @param name          Name of the node.
+     * @param path          Full path of the node, used in error messages.
+     * @param source        YAML source of the mapping, indented as it was in the original document.
+     * @param yaml          Used to compose the source.
+     * @param lazyThreshold Threshold for deferring mappings nested in this one.
+     */
+    LazyNode(String name, String path, String source, Yaml yaml, int lazyThreshold) {
+        super(name);
+        this.path = path;
+        this.source = source;
+        this.yaml = yaml;
+        this.lazyThreshold = lazyThreshold;
+    }
+
+    @Override
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    @Override
+    public ConfigurationNode deferredCopy() {
+        synchronized (this) {
+            return materialized ? null : new LazyNode(getName(), path, source, yaml, lazyThreshold);
+        }
+    }
+
+    private void materialize() {
+        if (materialized) return;
+        synchronized (this) {
+            if (materialized) return;
+
+            List<ConfigurationNode> children = new ArrayList<>();
+            try {
+                HierarchicalConfiguration.Node holder = new HierarchicalConfiguration.Node();
+                // Mappings containing includes are never deferred, so this remains empty.
+                List<IncludeReference> includes = new ArrayList<>();
+                // Large mappings nested in this one are deferred in turn.
+                YamlDeserializer.build(holder, path, source, yaml, lazyThreshold, includes);
+                children.addAll(holder.getChildren());
+            } catch (ConfigurationException | RuntimeException e) {
+                // The same source was composed without trouble when the document was deserialized.
+                throw new IllegalStateException("Failed to build deferred YAML mapping at " + path + ".", e);
+            }
+
+            for (ConfigurationNode child : children) {
+                super.addChild(child);
+            }
+            source = null;
+            materialized = true;
+        }
+    }
+
+    @Override
+    public List<ConfigurationNode> getChildren() {
+        materialize();
+        return super.getChildren();
+    }
+
+    @Override
+    public List<ConfigurationNode> getChildren(String name) {
+        materialize();
+        return super.getChildren(name);
+    }
+
+    @Override
+    public ConfigurationNode getChild(int index) {
+        materialize();
+        return super.getChild(index);
+    }
+
+    @Override
+    public int getChildrenCount() {
+        materialize();
+        return super.getChildrenCount();
+    }
+
+    @Override
+    public int getChildrenCount(String name) {
+        materialize();
+        return super.getChildrenCount(name);
+    }
+
+    @Override
+    public void addChild(ConfigurationNode child) {
+        materialize();
+        super.addChild(child);
+    }
+
+    @Override
+    public boolean removeChild(ConfigurationNode child) {
+        materialize();
+        return super.removeChild(child);
+    }
+
+    @Override
+    public boolean removeChild(String childName) {
+        materialize();
+        return super.removeChild(childName);
+    }
+
+    @Override
+    public void removeChildren() {
+        materialize();
+        super.removeChildren();
+    }
+
+    @Override
+    public void visit(ConfigurationNodeVisitor visitor) {
+        materialize();
+        super.visit(visitor);
+    }
+}
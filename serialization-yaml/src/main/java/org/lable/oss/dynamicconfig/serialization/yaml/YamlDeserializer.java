@@ -18,36 +18,74 @@ package org.lable.oss.dynamicconfig.serialization.yaml;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
+import org.lable.oss.dynamicconfig.core.ConfigurationLoader;
 import org.lable.oss.dynamicconfig.core.ConfigurationResult;
 import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.StringPool;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
 import org.lable.oss.dynamicconfig.serialization.yaml.snake.CustomConstructor;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.reader.UnicodeReader;
 import org.yaml.snakeyaml.representer.Representer;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.*;
 
 /**
- * Serialize and deserialize {@link HierarchicalConfiguration} instances to and from their YAML representation.
+ * Deserialize {@link HierarchicalConfiguration} instances from their YAML representation.
+ * <p>
+ * The input is composed into a YAML node graph straight from the stream, which is then walked once to build the
+ * configuration tree. Instances of this class are thread-safe.
+ * <p>
+ * Optionally, large mappings can be deferred: when a lazy threshold is set, any mapping whose YAML source spans at
+ * least that many characters is kept as source text, and its part of the configuration tree is only built when
+ * something below it is first read. The threshold defaults to the value of the system property
+ * {@value #LAZY_THRESHOLD_PROPERTY}; zero (the default) disables this. The mappings to defer are found by a scan of
+ * the parser's events, before any node graph is composed, and left out of the node graph (see
+ * {@link DeferredMappings}); each is composed once, when it is first read.
+ * <p>
+ * Deferred mappings are only left unbuilt on the default read path of the {@code commons} engine, as long as the
+ * application takes no snapshots. Building a compact copy of the configuration visits every node, so the compact read
+ * path, the {@code native} engine, and an application that takes snapshots build all deferred mappings when the
+ * configuration is loaded (see {@link org.lable.oss.dynamicconfig.core.spi.DeferredNode}). When deferral is enabled, the document is held in
+ * memory as a string while it is parsed, because deferred mappings keep their part of it.
  */
 public class YamlDeserializer implements HierarchicalConfigurationDeserializer {
+    /**
+     * System property holding the default lazy threshold, in characters.
+     */
+    public static final String LAZY_THRESHOLD_PROPERTY = ConfigurationLoader.LIBRARY_PREFIX + ".yaml.lazy.threshold";
+
     private final Yaml yaml;
+    private final int lazyThreshold;
+
     /**
-     * Construct a new YamlSerializerDeserializer.
+     * Construct a new YamlDeserializer.
      */
     public YamlDeserializer() {
-        DumperOptions yamlOptions = new DumperOptions();
-        Representer representer = new Representer();
-        CustomConstructor customConstructor = new CustomConstructor();
+        this(Integer.getInteger(LAZY_THRESHOLD_PROPERTY, 0));
+    }
 
-        yaml = new Yaml(customConstructor, representer, yamlOptions);
+    /**
+     * Construct a new YamlDeserializer that defers building large mappings.
+     *
+     * @param lazyThreshold Minimum size in characters of the YAML source of a mapping for it to be deferred. Zero
+     *                      disables deferral.
+     */
+    public YamlDeserializer(int lazyThreshold) {
+        if (lazyThreshold < 0) throw new IllegalArgumentException("Lazy threshold cannot be negative.");
+
+        // Only used for composing node graphs, which does not touch the (stateful) constructor.
+        this.yaml = new Yaml(new CustomConstructor(), new Representer(), new DumperOptions());
+        this.lazyThreshold = lazyThreshold;
     }
 
     /**
@@ -55,25 +93,33 @@ public class YamlDeserializer implements HierarchicalConfigurationDeserializer {
      */
     @Override
     public ConfigurationResult deserialize(InputStream input) throws ConfigurationException {
-        String content = new Scanner(input, StandardCharsets.UTF_8).useDelimiter("\\A").next();
-
         HierarchicalConfiguration configuration = new HierarchicalConfiguration();
         List<IncludeReference> includes = new ArrayList<>();
-        if (!content.isEmpty()) {
-            Object tree;
-            try {
-                tree = yaml.load(content);
-            } catch (Throwable e) {
-                // SnakeYaml throws a number of exceptions on encountering invalid YAML.
-                // This catch is overly broad on purpose.
-                throw new ConfigurationException("Failed to parse input as valid YAML.", e);
-            }
-            traverseTreeAndLoad(configuration.getRootNode(), null, includes, tree);
 
-            // Get the references from the special 'extends' key.
-            for (String reference : configuration.getStringArray("extends")) {
-                includes.add(new IncludeReference(reference));
+        try {
+            Reader reader = new UnicodeReader(input);
+            if (lazyThreshold > 0) {
+                // Keep the document around, so the source of deferred mappings can be sliced from it.
+                build(configuration.getRootNode(), null, readFully(reader), yaml, lazyThreshold, includes);
+            } else {
+                Node root = yaml.compose(reader);
+                if (root != null) {
+                    // Constructors are stateful, so use a fresh one for each document.
+                    new NodeWalker(new CustomConstructor(), includes)
+                            .walk(configuration.getRootNode(), null, root);
+                }
             }
+        } catch (ConfigurationException e) {
+            throw e;
+        } catch (Throwable e) {
+            // SnakeYaml throws a number of exceptions on encountering invalid YAML.
+            // This catch is overly broad on purpose.
+            throw new ConfigurationException("Failed to parse input as valid YAML.", e);
+        }
+
+        // Get the references from the special 'extends' key.
+        for (String reference : configuration.getStringArray("extends")) {
+            includes.add(new IncludeReference(reference));
         }
 
         return new ConfigurationResult(configuration, includes);
@@ -84,42 +130,152 @@ public class YamlDeserializer implements HierarchicalConfigurationDeserializer {
         return "config.yaml";
     }
 
+    @Override
+    public boolean handles(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".yaml") || lowerCase.endsWith(".yml");
+    }
+
+    static String combineConfigKeyPath(String prefix, String name) {
+        return prefix == null ? name : prefix + "." + name;
+    }
+
     /**
-     * Process a node in the object tree, and store it with its parent node in the Config tree.
-     * <p>
-     * This method recursively calls itself to walk an object tree.
+     * Build the configuration tree of a document, deferring its large mappings.
      *
-     * @param parent   Parent of the current node, as represented in the Config tree.
-     * @param path     Path.
-     * @param includes Includes encountered.
-     * @param node     Node to process.
+     * @param parent        Node that receives the children of the document's root mapping.
+     * @param path          Path of {@code parent}.
+     * @param document      YAML document.
+     * @param yaml          Used to parse and compose the document.
+     * @param lazyThreshold Minimum size in characters of a mapping for it to be deferred.
+     * @param includes      Includes encountered.
+     * @throws ConfigurationException Thrown when the YAML cannot be represented as configuration tree.
      */
-    void traverseTreeAndLoad(ConfigurationNode parent, String path, List<IncludeReference> includes, Object node) {
-        if (node instanceof IncludeReference) {
-            IncludeReference include = (IncludeReference) node;
-            include.setConfigPath(path);
-            includes.add(include);
-        } else if (node instanceof Map<?, ?>) {
-            // It is not feasible for this class to check this cast, but it is guaranteed by the
-            // yaml.load() call that it is a Map<String, Object>.
-            @SuppressWarnings("unchecked")
-            Map<String, Object> map = (Map<String, Object>) node;
-
-            for (Map.Entry<String, Object> entry : map.entrySet()) {
-                String key = entry.getKey();
-                HierarchicalConfiguration.Node child = new HierarchicalConfiguration.Node(key);
-                child.setReference(entry);
-                // Walk the complete tree.
-                traverseTreeAndLoad(child, combineConfigKeyPath(path, key), includes, entry.getValue());
-                parent.addChild(child);
-            }
-        } else {
-            // This works for both primitives and lists.
-            parent.setValue(node);
+    static void build(ConfigurationNode parent,
+                      String path,
+                      String document,
+                      Yaml yaml,
+                      int lazyThreshold,
+                      List<IncludeReference> includes) throws ConfigurationException {
+        DeferredMappings deferred = DeferredMappings.scan(yaml, document, lazyThreshold);
+        Node root = yaml.compose(new StringReader(deferred.reduced));
+        if (root == null) return;
+        new NodeWalker(new CustomConstructor(), includes, yaml, lazyThreshold, deferred.sources)
+                .walk(parent, path, root);
+    }
+
+    static String readFully(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
         }
+        return builder.toString();
     }
 
-    static String combineConfigKeyPath(String prefix, String name) {
-        return prefix == null ? name : prefix + "." + name;
+    /**
+     * Walks a YAML node graph and builds the configuration tree from it.
+     */
+    static class NodeWalker {
+        private final CustomConstructor constructor;
+        private final List<IncludeReference> includes;
+        private final Yaml yaml;
+        private final int lazyThreshold;
+        // Source of the deferred mappings, by the index of their start mark (see DeferredMappings).
+        private final Map<Integer, String> deferred;
+        // Mappings currently being walked, to detect recursive aliases.
+        private final Set<Node> ancestors = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        NodeWalker(CustomConstructor constructor, List<IncludeReference> includes) {
+            this(constructor, includes, null, 0, Collections.emptyMap());
+        }
+
+        NodeWalker(CustomConstructor constructor,
+                   List<IncludeReference> includes,
+                   Yaml yaml,
+                   int lazyThreshold,
+                   Map<Integer, String> deferred) {
+            this.constructor = constructor;
+            this.includes = includes;
+            this.yaml = yaml;
+            this.lazyThreshold = lazyThreshold;
+            this.deferred = deferred;
+        }
+
+        /**
+         * Process a node in the YAML node graph, and store it with its parent node in the Config tree.
+         * <p>
+         * This method recursively calls itself to walk the node graph.
+         *
+         * @param parent Parent of the current node, as represented in the Config tree.
+         * @param path   Path.
+         * @param node   Node to process.
+         * @throws ConfigurationException Thrown when the YAML cannot be represented as configuration tree.
+         */
+        void walk(ConfigurationNode parent, String path, Node node) throws ConfigurationException {
+            if (node instanceof MappingNode) {
+                if (!ancestors.add(node)) {
+                    throw new ConfigurationException("Recursive YAML alias at " + path + ".");
+                }
+                MappingNode mapping = (MappingNode) node;
+                constructor.flatten(mapping);
+                for (NodeTuple tuple : mapping.getValue()) {
+                    String key = keyOf(tuple.getKeyNode());
+                    String childPath = combineConfigKeyPath(path, key);
+                    HierarchicalConfiguration.Node child = defer(key, childPath, tuple.getValueNode());
+                    if (child == null) {
+                        child = new HierarchicalConfiguration.Node(key);
+                        walk(child, childPath, tuple.getValueNode());
+                    }
+                    parent.addChild(child);
+                }
+                ancestors.remove(node);
+            } else {
+                // Scalars and sequences.
+                Object value = constructor.constructNode(node);
+                if (value instanceof IncludeReference) {
+                    IncludeReference include = (IncludeReference) value;
+                    include.setConfigPath(path);
+                    includes.add(include);
+                } else {
+                    parent.setValue(pooled(value));
+                }
+            }
+        }
+
+        /**
+         * Create a {@link LazyNode} for a mapping that was left out of the node graph.
+         *
+         * @param key  Name of the node.
+         * @param path Path of the node.
+         * @param node Value of the node.
+         * @return The deferred node, or {@code null} if the mapping should be walked now.
+         */
+        HierarchicalConfiguration.Node defer(String key, String path, Node node) {
+            if (deferred.isEmpty() || !(node instanceof MappingNode) || node.getStartMark() == null) return null;
+
+            String source = deferred.get(node.getStartMark().getIndex());
+            return source == null ? null : new LazyNode(key, path, source, yaml, lazyThreshold);
+        }
+
+        String keyOf(Node keyNode) throws ConfigurationException {
+            if (!(keyNode instanceof ScalarNode)) {
+                throw new ConfigurationException("Only scalar keys are supported in YAML mappings.");
+            }
+            return StringPool.intern(((ScalarNode) keyNode).getValue());
+        }
+
+        /**
+         * Share strings, and strings in lists, through the {@link StringPool}.
+         */
+        @SuppressWarnings("unchecked")
+        static Object pooled(Object value) {
+            if (value instanceof List) {
+                ((List<Object>) value).replaceAll(StringPool::internValue);
+                return value;
+            }
+            return StringPool.internValue(value);
+        }
     }
 }
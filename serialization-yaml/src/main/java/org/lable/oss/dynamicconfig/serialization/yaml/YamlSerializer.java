@@ -16,34 +16,48 @@
 package org.lable.oss.dynamicconfig.serialization.yaml;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationSerializer;
 import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.StringWriter;
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-import static org.lable.oss.dynamicconfig.core.commonsconfiguration.Objectifier.traverseTreeAndEmit;
+import static org.lable.oss.dynamicconfig.core.commonsconfiguration.Objectifier.groupChildren;
 
 
 /**
- * Serialize {@link org.apache.commons.configuration.HierarchicalConfiguration} instances to and from their YAML
+ * Serialize {@link org.apache.commons.configuration.HierarchicalConfiguration} instances to their YAML
  * representation.
+ * <p>
+ * The configuration node tree is walked directly, and emitted as a stream of YAML events written as UTF-8 straight to
+ * the output stream. Instances of this class are thread-safe.
  */
 public class YamlSerializer implements HierarchicalConfigurationSerializer {
-    private final Yaml yaml;
+    private final DumperOptions yamlOptions;
+    // Read-only after construction.
+    private final Resolver resolver = new Resolver();
 
     /**
-     * Construct a new YamlSerializerDeserializer.
+     * Construct a new YamlSerializer.
      */
     public YamlSerializer() {
-        DumperOptions yamlOptions = new DumperOptions();
+        yamlOptions = new DumperOptions();
         yamlOptions.setIndent(4);
         // Improves readability by omitting {} where possible, and using indented blocks instead.
         yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        yaml = new Yaml(yamlOptions);
     }
 
     /**
@@ -53,12 +67,96 @@ public class YamlSerializer implements HierarchicalConfigurationSerializer {
     public void serialize(HierarchicalConfiguration configuration, OutputStream output, boolean humanReadable)
             throws ConfigurationException {
         // Ignore the humanReadable flag; YAML is human-readable by default. :)
-        StringWriter writer = new StringWriter();
-        yaml.dump(traverseTreeAndEmit(configuration.getRootNode()), writer);
         try {
-            output.write(writer.toString().getBytes());
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            // Emitters are stateful; use one per document.
+            Emitter emitter = new Emitter(writer, yamlOptions);
+            emitter.emit(new StreamStartEvent(null, null));
+            emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+            writeChildren(emitter, configuration.getRootNode());
+            emitter.emit(new DocumentEndEvent(null, null, false));
+            emitter.emit(new StreamEndEvent(null, null));
+            writer.flush();
         } catch (IOException e) {
             throw new ConfigurationException("IOException caught.", e);
         }
     }
+
+    void writeNode(Emitter emitter, ConfigurationNode node) throws IOException {
+        if (node.getChildrenCount() == 0) {
+            writeValue(emitter, node.getValue());
+        } else {
+            writeChildren(emitter, node);
+        }
+    }
+
+    void writeChildren(Emitter emitter, ConfigurationNode node) throws IOException {
+        emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        for (Map.Entry<String, List<ConfigurationNode>> group : groupChildren(node).entrySet()) {
+            writeScalar(emitter, Tag.STR, group.getKey());
+            List<ConfigurationNode> children = group.getValue();
+            if (children.size() == 1) {
+                writeNode(emitter, children.get(0));
+            } else {
+                emitter.emit(new SequenceStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+                for (ConfigurationNode child : children) {
+                    writeNode(emitter, child);
+                }
+                emitter.emit(new SequenceEndEvent(null, null));
+            }
+        }
+        emitter.emit(new MappingEndEvent(null, null));
+    }
+
+    void writeValue(Emitter emitter, Object value) throws IOException {
+        if (value == null) {
+            writeScalar(emitter, Tag.NULL, "null");
+        } else if (value instanceof String) {
+            writeScalar(emitter, Tag.STR, (String) value);
+        } else if (value instanceof Boolean) {
+            writeScalar(emitter, Tag.BOOL, value.toString());
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            writeScalar(emitter, Tag.INT, value.toString());
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            writeScalar(emitter, Tag.FLOAT, floatToString((Number) value));
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            Collection<?> collection = value instanceof Collection
+                    ? (Collection<?>) value
+                    : Arrays.asList((Object[]) value);
+            emitter.emit(new SequenceStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+            for (Object element : collection) {
+                writeValue(emitter, element);
+            }
+            emitter.emit(new SequenceEndEvent(null, null));
+        } else if (value instanceof Map) {
+            emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeScalar(emitter, Tag.STR, String.valueOf(entry.getKey()));
+                writeValue(emitter, entry.getValue());
+            }
+            emitter.emit(new MappingEndEvent(null, null));
+        } else {
+            writeScalar(emitter, Tag.STR, value.toString());
+        }
+    }
+
+    /**
+     * Emit a scalar. Its tag is left implicit when the scalar resolves to the intended type without it; strings that
+     * would otherwise be read as another type (e.g., {@code "1"} or {@code "true"}) are quoted.
+     */
+    void writeScalar(Emitter emitter, Tag tag, String value) throws IOException {
+        Tag detectedTag = resolver.resolve(NodeId.scalar, value, true);
+        Tag defaultTag = resolver.resolve(NodeId.scalar, value, false);
+        ImplicitTuple implicit = new ImplicitTuple(tag.equals(detectedTag), tag.equals(defaultTag));
+        emitter.emit(new ScalarEvent(null, tag.getValue(), implicit, value, null, null,
+                DumperOptions.ScalarStyle.PLAIN));
+    }
+
+    static String floatToString(Number value) {
+        double number = value.doubleValue();
+        if (Double.isNaN(number)) return ".NaN";
+        if (Double.isInfinite(number)) return number > 0 ? ".inf" : "-.inf";
+        return value.toString();
+    }
 }
@@ -18,16 +18,40 @@ package org.lable.oss.dynamicconfig.serialization.yaml.snake;
 import org.lable.oss.dynamicconfig.core.IncludeReference;
 import org.yaml.snakeyaml.constructor.AbstractConstruct;
 import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
 import org.yaml.snakeyaml.nodes.Node;
 import org.yaml.snakeyaml.nodes.ScalarNode;
 import org.yaml.snakeyaml.nodes.Tag;
 
 /**
  * Extend SnakeYAML by handling our custom {@code !include} tag.
+ * <p>
+ * Like all SnakeYAML constructors, instances of this class keep state while constructing and are not thread-safe.
  */
 public class CustomConstructor extends Constructor {
+    public static final Tag INCLUDE_TAG = new Tag("!include");
+
     public CustomConstructor() {
-        this.yamlConstructors.put(new Tag("!include"), new ConstructInclude());
+        this.yamlConstructors.put(INCLUDE_TAG, new ConstructInclude());
+    }
+
+    /**
+     * Construct the Java object for a single node of a composed YAML node graph.
+     *
+     * @param node YAML node.
+     * @return The constructed object.
+     */
+    public Object constructNode(Node node) {
+        return constructObject(node);
+    }
+
+    /**
+     * Apply merge keys ({@code <<}) of a mapping node to the node itself.
+     *
+     * @param node YAML mapping node.
+     */
+    public void flatten(MappingNode node) {
+        flattenMapping(node);
     }
 
     public static class ConstructInclude extends AbstractConstruct {
@@ -15,23 +15,34 @@
  */
 package org.lable.oss.dynamicconfig.serialization.yaml;
 
+import org.apache.commons.configuration.CombinedConfiguration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.tree.OverrideCombiner;
 import org.junit.Test;
 import org.lable.oss.dynamicconfig.core.ConfigurationException;
 import org.lable.oss.dynamicconfig.core.ConfigurationResult;
 import org.lable.oss.dynamicconfig.core.IncludeReference;
+import org.lable.oss.dynamicconfig.core.commonsconfiguration.ConcurrentConfiguration;
 import org.lable.oss.dynamicconfig.core.spi.HierarchicalConfigurationDeserializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 
 public class YamlDeserializerTest {
     @Test
@@ -89,10 +100,211 @@ public class YamlDeserializerTest {
         );
     }
 
+    @Test
+    public void testHandles() {
+        YamlDeserializer deserializer = new YamlDeserializer();
+        assertThat(deserializer.handles("config.yaml"), is(true));
+        assertThat(deserializer.handles("/etc/app/settings.YML"), is(true));
+        assertThat(deserializer.handles("config.json"), is(false));
+        assertThat(deserializer.handles("my-application"), is(false));
+    }
+
     @Test(expected = ConfigurationException.class)
     public void testLoadBogusYaml() throws ConfigurationException, IOException, ClassNotFoundException {
         HierarchicalConfigurationDeserializer deserializer = new YamlDeserializer();
         // This won't parse.
         deserializer.deserialize(new ByteArrayInputStream("{BOGUS_YAML".getBytes(StandardCharsets.UTF_8)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMergeKeysAndAliases() throws ConfigurationException {
+        String yaml = "defaults: &defaults\n" +
+                "  host: localhost\n" +
+                "  port: 8080\n" +
+                "service:\n" +
+                "  <<: *defaults\n" +
+                "  port: 9090\n" +
+                "copy: *defaults\n";
+
+        HierarchicalConfiguration config = new YamlDeserializer()
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .getConfiguration();
+
+        assertThat(config.getString("service.host"), is("localhost"));
+        assertThat(config.getInt("service.port"), is(9090));
+        assertThat(config.getInt("copy.port"), is(8080));
+        assertThat(config.getProperty("service.<<"), is(nullValue()));
+    }
+
+    @Test
+    public void testNestedIncludePath() throws ConfigurationException {
+        String yaml = "a:\n  b:\n    c: !include part.yaml\n  d: [1, 2]\n";
+
+        ConfigurationResult result = new YamlDeserializer()
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(result.getIncludeReferences(), contains(new IncludeReference("a.b.c", "part.yaml")));
+        assertThat(result.getConfiguration().getList("a.d").size(), is(2));
+    }
+
+    @Test
+    public void testEmptyInput() throws ConfigurationException {
+        ConfigurationResult result = new YamlDeserializer().deserialize(new ByteArrayInputStream(new byte[0]));
+
+        assertThat(result.getConfiguration().isEmpty(), is(true));
+        assertThat(result.getIncludeReferences().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testConcurrentUse() throws InterruptedException, ExecutionException {
+        HierarchicalConfigurationDeserializer deserializer = new YamlDeserializer();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final String yaml = "value: " + i + "\ninclude: !include part-" + i + ".yaml\n";
+            results.add(executor.submit(() -> {
+                ConfigurationResult result =
+                        deserializer.deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+                return result.getConfiguration().getInt("value") + "/" +
+                        result.getIncludeReferences().get(0).getName();
+            }));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(results.get(i).get(), is(i + "/part-" + i + ".yaml"));
+        }
+    }
+
+    @Test
+    public void testLazyMappings() throws ConfigurationException {
+        String yaml = "small:\n  a: 1\n" +
+                "tenants:\n" +
+                "  acme:\n" +
+                "    plan: gold\n" +
+                "    seats: 40\n" +
+                "    regions: {eu: true, us: false}\n" +
+                "  globex:\n" +
+                "    plan: silver\n" +
+                "    seats: 5\n" +
+                "shared: &shared\n  x: 1\n  y: 2\n  z: 3\n  w: 4\n" +
+                "included:\n  part: !include part.yaml\n  padding: 0123456789\n";
+
+        ConfigurationResult result = new YamlDeserializer(40)
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+        HierarchicalConfiguration config = result.getConfiguration();
+
+        LazyNode tenants = (LazyNode) config.getRootNode().getChildren("tenants").get(0);
+        assertThat(tenants.isMaterialized(), is(false));
+        assertThat(config.getRootNode().getChildren("small").get(0), not(instanceOf(LazyNode.class)));
+        // Mappings with anchors or includes are not deferred.
+        assertThat(config.getRootNode().getChildren("shared").get(0), not(instanceOf(LazyNode.class)));
+        assertThat(config.getRootNode().getChildren("included").get(0), not(instanceOf(LazyNode.class)));
+        assertThat(result.getIncludeReferences(), contains(new IncludeReference("included.part", "part.yaml")));
+
+        assertThat(config.getString("tenants.acme.plan"), is("gold"));
+        assertThat(tenants.isMaterialized(), is(true));
+        assertThat(config.getInt("tenants.acme.seats"), is(40));
+        assertThat(config.getBoolean("tenants.acme.regions.eu"), is(true));
+        assertThat(config.getString("tenants.globex.plan"), is("silver"));
+        assertThat(config.getInt("small.a"), is(1));
+        assertThat(config.getInt("shared.w"), is(4));
+    }
+
+    @Test
+    public void testLazyMappingsOnDefaultReadPath() throws ConfigurationException {
+        String yaml = "small:\n  a: 1\n" +
+                "tenants:\n" +
+                "  acme:\n" +
+                "    plan: gold\n" +
+                "    seats: 40\n";
+        HierarchicalConfiguration part = new YamlDeserializer(20)
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .getConfiguration();
+        LazyNode tenants = (LazyNode) part.getRootNode().getChildren("tenants").get(0);
+
+        ConcurrentConfiguration configuration =
+                new ConcurrentConfiguration(new CombinedConfiguration(new OverrideCombiner()));
+        configuration.withConfiguration(cc -> cc.addConfiguration(part, "part"));
+
+        // Applying the configuration does not build the deferred mapping; reading from it does.
+        assertThat(configuration.getInt("small.a"), is(1));
+        assertThat(tenants.isMaterialized(), is(false));
+        assertThat(configuration.getString("tenants.acme.plan"), is("gold"));
+        assertThat(tenants.isMaterialized(), is(true));
+    }
+
+    @Test
+    public void testLazyMappingsWithSupplementaryCharacters() throws ConfigurationException {
+        // SnakeYAML marks count code points, so the characters outside the BMP shift the source of later mappings.
+        String yaml = "emoji: \uD83D\uDE00\uD83D\uDE00\n" +
+                "tenants:\n" +
+                "  acme:\n" +
+                "    plan: \uD83D\uDE80 gold\n" +
+                "    seats: 40\n";
+
+        HierarchicalConfiguration config = new YamlDeserializer(20)
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .getConfiguration();
+
+        LazyNode tenants = (LazyNode) config.getRootNode().getChildren("tenants").get(0);
+        LazyNode copy = (LazyNode) tenants.deferredCopy();
+        assertThat(copy.isMaterialized(), is(false));
+        assertThat(config.getString("tenants.acme.plan"), is("\uD83D\uDE80 gold"));
+        assertThat(config.getInt("tenants.acme.seats"), is(40));
+        assertThat(tenants.deferredCopy(), is(nullValue()));
+
+        HierarchicalConfiguration copied = new HierarchicalConfiguration();
+        copied.getRootNode().addChild(copy);
+        assertThat(copied.getString("tenants.acme.plan"), is("\uD83D\uDE80 gold"));
+    }
+
+    @Test
+    public void testLazyMappingsFromParserEvents() throws ConfigurationException {
+        String yaml = "quoted:\n  pattern: \"*.yaml & *.yml\"\n  note: '&ref'\n" +
+                "aliased:\n  first: &one 1\n  second: *one\n  padding: 0123456789\n" +
+                "merged:\n  <<: {a: 1, b: 2, c: 3}\n  d: 4\n" +
+                "text:\n  body: |\n    line one\n    line two\n  after: 5\n" +
+                "flow: {x: 1, y: 2, z: 3, w: 4}\n";
+
+        HierarchicalConfiguration config = new YamlDeserializer(20)
+                .deserialize(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .getConfiguration();
+
+        // Only anchors and aliases prevent deferral, not the characters that introduce them in quoted values.
+        assertThat(config.getRootNode().getChildren("quoted").get(0), instanceOf(LazyNode.class));
+        assertThat(config.getRootNode().getChildren("aliased").get(0), not(instanceOf(LazyNode.class)));
+        assertThat(config.getRootNode().getChildren("merged").get(0), instanceOf(LazyNode.class));
+        assertThat(config.getRootNode().getChildren("text").get(0), instanceOf(LazyNode.class));
+        assertThat(config.getRootNode().getChildren("flow").get(0), instanceOf(LazyNode.class));
+
+        assertThat(config.getString("quoted.pattern"), is("*.yaml & *.yml"));
+        assertThat(config.getString("quoted.note"), is("&ref"));
+        assertThat(config.getInt("aliased.second"), is(1));
+        assertThat(config.getInt("merged.b"), is(2));
+        assertThat(config.getInt("merged.d"), is(4));
+        assertThat(config.getString("text.body"), is("line one\nline two\n"));
+        assertThat(config.getInt("text.after"), is(5));
+        assertThat(config.getInt("flow.w"), is(4));
+    }
+
+    @Test
+    public void testLazyMappingsMatchEagerResult() throws ConfigurationException {
+        HierarchicalConfiguration eager = new YamlDeserializer(0)
+                .deserialize(getClass().getResourceAsStream("/test.yml"))
+                .getConfiguration();
+        HierarchicalConfiguration lazy = new YamlDeserializer(1)
+                .deserialize(getClass().getResourceAsStream("/test.yml"))
+                .getConfiguration();
+
+        List<String> eagerKeys = new ArrayList<>();
+        eager.getKeys().forEachRemaining(eagerKeys::add);
+        List<String> lazyKeys = new ArrayList<>();
+        lazy.getKeys().forEachRemaining(lazyKeys::add);
+
+        assertThat(lazyKeys, is(eagerKeys));
+        for (String key : eagerKeys) {
+            assertThat(lazy.getProperty(key), is(eager.getProperty(key)));
+        }
+    }
+}
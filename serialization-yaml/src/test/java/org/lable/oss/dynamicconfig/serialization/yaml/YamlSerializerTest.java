@@ -72,4 +72,33 @@ public class YamlSerializerTest {
         // Verify that the data was imported correctly again on the second pass.
         assertThat(configuration1.getString("type.string"), is(configuration2.getString("type.string")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamLeftOpen() throws ConfigurationException, IOException {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.setProperty("type.string", "value");
+
+        CloseRecordingOutputStream output = new CloseRecordingOutputStream();
+        new YamlSerializer().serialize(configuration, output);
+
+        // The serializer must not close the stream, but must flush everything it wrote.
+        assertThat(output.closed, is(false));
+        HierarchicalConfiguration reloaded = new YamlDeserializer()
+                .deserialize(new ByteArrayInputStream(output.toByteArray()))
+                .getConfiguration();
+        assertThat(reloaded.getString("type.string"), is("value"));
+    }
+
+    /**
+     * Records whether the stream was closed; closing a {@link ByteArrayOutputStream} has no effect otherwise.
+     */
+    static class CloseRecordingOutputStream extends ByteArrayOutputStream {
+        boolean closed = false;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.servletutil;
+
+import org.lable.oss.dynamicconfig.core.ConfigurationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Servlet filter that takes a snapshot of the configuration when a request comes in (see
+ * {@link ConfigurationManager#snapshot()}). Code handling the request reads the same version of the configuration
+ * throughout, without any locking, even if the configuration is updated in the meantime.
+ * <p>
+ * The snapshot is available as a {@link RequestConfiguration} stored in the request attribute
+ * {@link #CONFIGURATION_ATTRIBUTE}, and through {@link #current()} on the thread handling the request. When the
+ * request completes, the number of configuration lookups it made is passed to
+ * {@link #recordLookups(ServletRequest, RequestConfiguration)}, which logs it at debug level.
+ * <p>
+ * When this filter is created by the servlet container, it expects the {@link ConfigurationManager} to be stored in
+ * the servlet context attribute {@link #MANAGER_ATTRIBUTE}.
+ */
+public class ConfigurationSnapshotFilter implements Filter {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationSnapshotFilter.class);
+
+    public static final String MANAGER_ATTRIBUTE = ConfigurationManager.class.getName();
+    public static final String CONFIGURATION_ATTRIBUTE = RequestConfiguration.class.getName();
+
+    private static final ThreadLocal<RequestConfiguration> currentConfiguration = new ThreadLocal<>();
+
+    private ConfigurationManager configurationManager;
+
+    /**
+     * Construct a new ConfigurationSnapshotFilter. The {@link ConfigurationManager} is read from the servlet context
+     * when the filter is initialized.
+     */
+    public ConfigurationSnapshotFilter() {
+        this(null);
+    }
+
+    /**
+     * Construct a new ConfigurationSnapshotFilter.
+     *
+     * @param configurationManager Configuration manager.
+     */
+    public ConfigurationSnapshotFilter(ConfigurationManager configurationManager) {
+        this.configurationManager = configurationManager;
+    }
+
+    /**
+     * Get the configuration of the request handled by the current thread.
+     *
+     * @return The request configuration, or {@code null} if the current thread is not handling a request passed
+     * through this filter.
+     */
+    public static RequestConfiguration current() {
+        return currentConfiguration.get();
+    }
+
+    /**
+     * Get the configuration of a request.
+     *
+     * @param request Request.
+     * @return The request configuration, or {@code null} if the request was not passed through this filter.
+     */
+    public static RequestConfiguration fromRequest(ServletRequest request) {
+        return (RequestConfiguration) request.getAttribute(CONFIGURATION_ATTRIBUTE);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        if (configurationManager != null) return;
+
+        Object manager = filterConfig.getServletContext().getAttribute(MANAGER_ATTRIBUTE);
+        if (!(manager instanceof ConfigurationManager)) {
+            throw new ServletException("No ConfigurationManager found in servlet context attribute " +
+                    MANAGER_ATTRIBUTE + ".");
+        }
+        configurationManager = (ConfigurationManager) manager;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestConfiguration configuration = fromRequest(request);
+        // Forwards and includes keep the snapshot taken when the request first passed this filter.
+        boolean outermost = configuration == null;
+        if (outermost) {
+            configuration = new RequestConfiguration(configurationManager.snapshot());
+            request.setAttribute(CONFIGURATION_ATTRIBUTE, configuration);
+        }
+
+        RequestConfiguration previous = currentConfiguration.get();
+        currentConfiguration.set(configuration);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (previous == null) {
+                currentConfiguration.remove();
+            } else {
+                currentConfiguration.set(previous);
+            }
+            if (outermost) recordLookups(request, configuration);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to clean up.
+    }
+
+    /**
+     * Called when a request completes. Override to collect lookup counts elsewhere.
+     *
+     * @param request       Request.
+     * @param configuration Configuration used by the request.
+     */
+    protected void recordLookups(ServletRequest request, RequestConfiguration configuration) {
+        if (!logger.isDebugEnabled()) return;
+
+        if (request instanceof HttpServletRequest) {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
+            logger.debug("{} {} made {} configuration lookup(s).",
+                    httpRequest.getMethod(), httpRequest.getRequestURI(), configuration.getLookups());
+        } else {
+            logger.debug("Request made {} configuration lookup(s).", configuration.getLookups());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.servletutil;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+
+import java.util.Iterator;
+
+/**
+ * Read-only configuration for the duration of a single request, backed by a configuration snapshot. It counts the
+ * number of lookups made through it; key listings count as one lookup each.
+ * <p>
+ * The count is not synchronized; a request is expected to be handled by one thread at a time.
+ */
+public class RequestConfiguration extends AbstractConfiguration {
+    static final String NO_MODIFICATION_MESSAGE = "This configuration class does not permit modification.";
+
+    private final CompactConfiguration snapshot;
+    private int lookups = 0;
+
+    /**
+     * Construct a new RequestConfiguration.
+     *
+     * @param snapshot Configuration snapshot.
+     */
+    public RequestConfiguration(CompactConfiguration snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The configuration snapshot read by this request.
+     */
+    public CompactConfiguration getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return The number of configuration lookups made so far.
+     */
+    public int getLookups() {
+        return lookups;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        lookups++;
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        lookups++;
+        return snapshot.getProperty(key);
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        lookups++;
+        return snapshot.getKeys();
+    }
+
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        lookups++;
+        return snapshot.getKeys(prefix);
+    }
+
+    @Override
+    protected void addPropertyDirect(String key, Object value) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+
+    @Override
+    protected void clearPropertyDirect(String key) {
+        throw new UnsupportedOperationException(NO_MODIFICATION_MESSAGE);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2015 Lable (info@lable.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lable.oss.dynamicconfig.servletutil;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+import org.lable.oss.dynamicconfig.core.ConfigurationManager;
+import org.lable.oss.dynamicconfig.core.compact.CompactConfiguration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ConfigurationSnapshotFilterTest {
+    @Test
+    public void doFilterTest() throws Exception {
+        HierarchicalConfiguration source = new HierarchicalConfiguration();
+        source.setProperty("a.b", 1);
+        source.setProperty("a.c", "x");
+        CompactConfiguration snapshot = CompactConfiguration.of(source);
+        ConfigurationManager manager = mock(ConfigurationManager.class);
+        when(manager.snapshot()).thenReturn(snapshot);
+
+        AtomicReference<RequestConfiguration> recorded = new AtomicReference<>();
+        ConfigurationSnapshotFilter filter = new ConfigurationSnapshotFilter(manager) {
+            @Override
+            protected void recordLookups(ServletRequest request, RequestConfiguration configuration) {
+                recorded.set(configuration);
+            }
+        };
+
+        ServletRequest request = mockRequest();
+        FilterChain chain = (req, res) -> {
+            RequestConfiguration configuration = ConfigurationSnapshotFilter.current();
+            assertThat(ConfigurationSnapshotFilter.fromRequest(req), is(sameInstance(configuration)));
+            assertThat(configuration.getSnapshot(), is(sameInstance(snapshot)));
+            assertThat(configuration.getInt("a.b"), is(1));
+            assertThat(configuration.getString("a.c"), is("x"));
+            assertThat(configuration.getKeys("a").hasNext(), is(true));
+        };
+        filter.doFilter(request, mock(ServletResponse.class), chain);
+
+        assertThat(ConfigurationSnapshotFilter.current(), is(nullValue()));
+        assertThat(recorded.get().getLookups(), is(3));
+        verify(manager, times(1)).snapshot();
+    }
+
+    @Test
+    public void doFilterForwardTest() throws Exception {
+        ConfigurationManager manager = mock(ConfigurationManager.class);
+        when(manager.snapshot()).thenReturn(CompactConfiguration.of(new HierarchicalConfiguration()));
+        ConfigurationSnapshotFilter filter = new ConfigurationSnapshotFilter(manager);
+
+        ServletRequest request = mockRequest();
+        ServletResponse response = mock(ServletResponse.class);
+        filter.doFilter(request, response, (req, res) -> {
+            RequestConfiguration outer = ConfigurationSnapshotFilter.current();
+            // A forwarded request passes the filter again, but keeps its snapshot.
+            filter.doFilter(req, res, (req2, res2) ->
+                    assertThat(ConfigurationSnapshotFilter.current(), is(sameInstance(outer))));
+        });
+
+        verify(manager, times(1)).snapshot();
+    }
+
+    @Test
+    public void initTest() throws Exception {
+        ConfigurationManager manager = mock(ConfigurationManager.class);
+        ServletContext context = mock(ServletContext.class);
+        when(context.getAttribute(ConfigurationSnapshotFilter.MANAGER_ATTRIBUTE)).thenReturn(manager);
+        FilterConfig filterConfig = mock(FilterConfig.class);
+        when(filterConfig.getServletContext()).thenReturn(context);
+        when(manager.snapshot()).thenReturn(CompactConfiguration.of(new HierarchicalConfiguration()));
+
+        ConfigurationSnapshotFilter filter = new ConfigurationSnapshotFilter();
+        filter.init(filterConfig);
+        filter.doFilter(mockRequest(), mock(ServletResponse.class), mock(FilterChain.class));
+
+        verify(manager, times(1)).snapshot();
+    }
+
+    @Test(expected = ServletException.class)
+    public void initWithoutManagerTest() throws Exception {
+        FilterConfig filterConfig = mock(FilterConfig.class);
+        when(filterConfig.getServletContext()).thenReturn(mock(ServletContext.class));
+
+        new ConfigurationSnapshotFilter().init(filterConfig);
+    }
+
+    private static ServletRequest mockRequest() {
+        Map<String, Object> attributes = new HashMap<>();
+        ServletRequest request = mock(ServletRequest.class);
+        when(request.getAttribute(anyString())).then(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        return request;
+    }
+}